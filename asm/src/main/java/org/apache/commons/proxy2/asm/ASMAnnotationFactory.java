@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.reflect.TypeUtils;
+import org.apache.commons.proxy2.exception.ProxyFactoryException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Creates annotation instances backed by a class generated once per annotation type, as an alternative to the
+ * {@link java.lang.reflect.Proxy}-based annotations of {@link org.apache.commons.proxy2.stub.AnnotationBuilder}. The
+ * generated class extends {@link AnnotationImplementation}, stores each member value in a final field and reads that
+ * field when the member is accessed; array-valued members return a copy, as the {@link Annotation} contract requires.
+ * Generated classes are cached by the factory instance. A generated class is placed in the package of its annotation
+ * type (or in this factory's package for {@code java.*} annotations) and defined by the annotation's class loader when
+ * that loader sees {@link AnnotationImplementation}; otherwise by a child loader that sees both.
+ */
+public class ASMAnnotationFactory
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final AtomicInteger CLASS_NUMBER = new AtomicInteger(0);
+    private static final String CLASSNAME_PREFIX = "CommonsProxyASMAnnotation_";
+
+    private final ConcurrentMap<Class<?>, AnnotationClass> annotationClasses
+        = new ConcurrentHashMap<Class<?>, AnnotationClass>();
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Create an instance of {@code annotationType} with the specified member values. Members missing from
+     * {@code members} take their default values.
+     *
+     * @param annotationType
+     * @param members
+     * @return A
+     * @throws IllegalArgumentException
+     *             if {@code members} names an unknown member, lacks a member without default, or holds a value not
+     *             assignable to its member
+     */
+    public <A extends Annotation> A create(Class<A> annotationType, Map<String, ?> members)
+    {
+        Validate.notNull(members, "members");
+        final AnnotationClass annotationClass = getAnnotationClass(annotationType);
+        final Set<String> unknown = new HashSet<String>(members.keySet());
+        final Object[] values = new Object[annotationClass.members.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            final Method member = annotationClass.members[i];
+            unknown.remove(member.getName());
+            Object value = members.get(member.getName());
+            if (value == null)
+            {
+                value = member.getDefaultValue();
+                Validate.isTrue(value != null, "No value specified for annotation member %s", member.getName());
+            }
+            Validate.isTrue(TypeUtils.isInstance(value, member.getReturnType()), "Value %s can not be assigned to %s",
+                    value, member.getReturnType());
+            values[i] = copy(value);
+        }
+        Validate.isTrue(unknown.isEmpty(), "Could not detect annotation members %s", unknown);
+        return annotationType.cast(annotationClass.newInstance(values));
+    }
+
+    /**
+     * Create an instance of the generated implementation class equal to {@code annotation}, which may be any
+     * implementation of its annotation type (for instance one built by
+     * {@link org.apache.commons.proxy2.stub.AnnotationBuilder}).
+     *
+     * @param annotation
+     * @return A
+     */
+    public <A extends Annotation> A copy(A annotation)
+    {
+        @SuppressWarnings("unchecked") // annotationType() of an A is Class<A>
+        final Class<A> annotationType = (Class<A>) Validate.notNull(annotation, "annotation").annotationType();
+        final AnnotationClass annotationClass = getAnnotationClass(annotationType);
+        final Object[] values = new Object[annotationClass.members.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            try
+            {
+                values[i] = copy(annotationClass.members[i].invoke(annotation));
+            }
+            catch (InvocationTargetException e)
+            {
+                throw new IllegalArgumentException(e.getTargetException());
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return annotationType.cast(annotationClass.newInstance(values));
+    }
+
+    private AnnotationClass getAnnotationClass(Class<? extends Annotation> annotationType)
+    {
+        Validate.isTrue(Validate.notNull(annotationType, "annotationType").isAnnotation(), "%s is not an annotation",
+                annotationType);
+        AnnotationClass result = annotationClasses.get(annotationType);
+        if (result == null)
+        {
+            result = new AnnotationClass(annotationType);
+            final AnnotationClass existing = annotationClasses.putIfAbsent(annotationType, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    private static Object copy(Object value)
+    {
+        if (!value.getClass().isArray())
+        {
+            return value;
+        }
+        final int length = Array.getLength(value);
+        final Object result = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, result, 0, length);
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static final class AnnotationClass implements Opcodes
+    {
+        private static final Type BASE_TYPE = Type.getType(AnnotationImplementation.class);
+        private static final Type CLASS_TYPE = Type.getType(Class.class);
+        private static final Type MEMBERS_TYPE = Type.getType(Method[].class);
+        private static final Type VALUES_TYPE = Type.getType(Object[].class);
+        private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+        private final Method[] members;
+        private final Constructor<?> constructor;
+
+        AnnotationClass(Class<? extends Annotation> annotationType)
+        {
+            this.members = getMembers(annotationType);
+            final ClassLoader annotationLoader = annotationType.getClassLoader();
+            // the generated class lives beside its annotation type, except that no class may be defined in java.*:
+            String packageName = ClassUtils.getPackageName(annotationType);
+            if (packageName.startsWith("java."))
+            {
+                packageName = ClassUtils.getPackageName(ASMAnnotationFactory.class);
+            }
+            final String className = (packageName.length() == 0 ? "" : packageName + ".") + CLASSNAME_PREFIX
+                    + CLASS_NUMBER.incrementAndGet();
+            // a non-public annotation type can only be implemented from within its own runtime package, that is
+            // by a class of its own loader, which must then see AnnotationImplementation as well:
+            final boolean sameLoader = isVisible(annotationLoader, AnnotationImplementation.class);
+            if (!sameLoader && !Modifier.isPublic(annotationType.getModifiers()))
+            {
+                throw new ProxyFactoryException(String.format(
+                        "Non-public annotation type %s can not be implemented: its class loader does not see %s.",
+                        annotationType.getName(), AnnotationImplementation.class.getName()));
+            }
+            try
+            {
+                final byte[] classBytes = generate(annotationType, className.replace('.', '/'), members);
+                final Class<?> implementationClass = sameLoader ? ASMProxyFactory.loadClass(annotationLoader,
+                        className, classBytes) : new BridgeClassLoader(annotationLoader, annotationType,
+                        AnnotationImplementation.class).define(className, classBytes);
+                this.constructor = implementationClass.getConstructor(Method[].class, Object[].class);
+            }
+            catch (final Exception e)
+            {
+                throw new ProxyFactoryException(e);
+            }
+        }
+
+        private static boolean isVisible(ClassLoader classLoader, Class<?> type)
+        {
+            if (classLoader == null)
+            {
+                return type.getClassLoader() == null;
+            }
+            try
+            {
+                return Class.forName(type.getName(), false, classLoader) == type;
+            }
+            catch (ClassNotFoundException e)
+            {
+                return false;
+            }
+        }
+
+        Object newInstance(Object[] values)
+        {
+            try
+            {
+                return constructor.newInstance(members, values);
+            }
+            catch (Exception e)
+            {
+                throw new ProxyFactoryException("Unable to instantiate generated annotation class.", e);
+            }
+        }
+
+        private static Method[] getMembers(Class<? extends Annotation> annotationType)
+        {
+            final List<Method> result = new ArrayList<Method>();
+            for (Method method : annotationType.getDeclaredMethods())
+            {
+                if (!Modifier.isStatic(method.getModifiers()) && method.getParameterTypes().length == 0)
+                {
+                    if (!method.isAccessible())
+                    {
+                        method.setAccessible(true);
+                    }
+                    result.add(method);
+                }
+            }
+            Collections.sort(result, new Comparator<Method>()
+            {
+                @Override
+                public int compare(Method o1, Method o2)
+                {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            return result.toArray(new Method[result.size()]);
+        }
+
+        private static byte[] generate(Class<? extends Annotation> annotationType, String internalName,
+                Method[] members)
+        {
+            final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            final Type implType = Type.getObjectType(internalName);
+            final Type annotationTypeType = Type.getType(annotationType);
+
+            cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, internalName, null, BASE_TYPE.getInternalName(),
+                    new String[] { annotationTypeType.getInternalName() });
+
+            for (Method member : members)
+            {
+                cw.visitField(ACC_PRIVATE + ACC_FINAL, member.getName(),
+                        Type.getDescriptor(member.getReturnType()), null, null).visitEnd();
+            }
+
+            // constructor: pass everything to the superclass, then unbox each value into its field:
+            final GeneratorAdapter init = new GeneratorAdapter(ACC_PUBLIC, new org.objectweb.asm.commons.Method(
+                    "<init>", Type.VOID_TYPE, new Type[] { MEMBERS_TYPE, VALUES_TYPE }), null, null, cw);
+            init.loadThis();
+            init.push(annotationTypeType);
+            init.loadArg(0);
+            init.loadArg(1);
+            init.invokeConstructor(BASE_TYPE, new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE,
+                    new Type[] { CLASS_TYPE, MEMBERS_TYPE, VALUES_TYPE }));
+            for (int i = 0; i < members.length; i++)
+            {
+                final Type fieldType = Type.getType(members[i].getReturnType());
+                init.loadThis();
+                init.loadArg(1);
+                init.push(i);
+                init.arrayLoad(OBJECT_TYPE);
+                init.unbox(fieldType);
+                init.putField(implType, members[i].getName(), fieldType);
+            }
+            init.returnValue();
+            init.endMethod();
+
+            // member accessors:
+            for (Method member : members)
+            {
+                final Type fieldType = Type.getType(member.getReturnType());
+                final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC,
+                        org.objectweb.asm.commons.Method.getMethod(member), null, null, cw);
+                mg.loadThis();
+                mg.getField(implType, member.getName(), fieldType);
+                if (member.getReturnType().isArray())
+                {
+                    mg.invokeVirtual(fieldType, new org.objectweb.asm.commons.Method("clone", OBJECT_TYPE,
+                            new Type[0]));
+                    mg.checkCast(fieldType);
+                }
+                mg.returnValue();
+                mg.endMethod();
+            }
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.asm;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.exception.ProxyFactoryException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Creates duck-typing adapters: generated classes implementing an interface by calling the matching public methods
+ * of a target class directly, as the compiled counterpart of
+ * {@link org.apache.commons.proxy2.invoker.DuckTypingInvoker}, so that a call through an adapter costs the same as a
+ * direct call once inlined. As with the invoker, a target method matches if it has the name and parameter types of the
+ * interface method and a compatible return type; interface methods without match throw
+ * {@link UnsupportedOperationException}. {@code equals}, {@code hashCode} and {@code toString} are delegated to the
+ * target as well.
+ * <p>
+ * The adapter class is defined in a class loader that sees both the interface and the target class, so the two may
+ * come from isolated class loaders (e.g. plugins); both must be public. Generated classes are cached by the factory
+ * instance, per interface and target class; the cache references all three weakly, so that it keeps no class loader
+ * reachable, and a generated class lives as long as adapters of it do.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class ASMDuckTypingFactory
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final AtomicInteger CLASS_NUMBER = new AtomicInteger(0);
+    private static final String CLASSNAME_PREFIX = "CommonsProxyASMDuckTyping_";
+    private static final String TARGET_NAME = "__target";
+
+    // guarded by itself:
+    private final Map<Class<?>, Map<Class<?>, Reference<Class<?>>>> adapterClasses
+        = new WeakHashMap<Class<?>, Map<Class<?>, Reference<Class<?>>>>();
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Create an adapter implementing {@code interfaceType} by calling the methods of {@code target}.
+     * 
+     * @param interfaceType
+     * @param target
+     * @return T
+     * @throws IllegalArgumentException
+     *             if {@code interfaceType} is not a public interface or the class of {@code target} is not public
+     */
+    public <T> T createAdapter(Class<T> interfaceType, Object target)
+    {
+        Validate.notNull(interfaceType, "interfaceType");
+        Validate.notNull(target, "target");
+        final Class<?> adapterClass = getAdapterClass(interfaceType, target.getClass());
+        try
+        {
+            return interfaceType.cast(adapterClass.getConstructor(Object.class).newInstance(target));
+        }
+        catch (Exception e)
+        {
+            throw new ProxyFactoryException("Unable to instantiate duck-typing adapter.", e);
+        }
+    }
+
+    private Class<?> getAdapterClass(Class<?> interfaceType, Class<?> targetClass)
+    {
+        synchronized (adapterClasses)
+        {
+            Map<Class<?>, Reference<Class<?>>> byInterface = adapterClasses.get(targetClass);
+            if (byInterface == null)
+            {
+                byInterface = new WeakHashMap<Class<?>, Reference<Class<?>>>();
+                adapterClasses.put(targetClass, byInterface);
+            }
+            final Reference<Class<?>> reference = byInterface.get(interfaceType);
+            Class<?> result = reference == null ? null : reference.get();
+            if (result == null)
+            {
+                result = generateAdapterClass(interfaceType, targetClass);
+                byInterface.put(interfaceType, new WeakReference<Class<?>>(result));
+            }
+            return result;
+        }
+    }
+
+    private static Class<?> generateAdapterClass(Class<?> interfaceType, Class<?> targetClass)
+    {
+        Validate.isTrue(interfaceType.isInterface() && Modifier.isPublic(interfaceType.getModifiers()),
+                "%s is not a public interface", interfaceType);
+        Validate.isTrue(Modifier.isPublic(targetClass.getModifiers()), "%s is not public", targetClass);
+        final String className = CLASSNAME_PREFIX + CLASS_NUMBER.incrementAndGet();
+        try
+        {
+            return new BridgeClassLoader(interfaceType.getClassLoader(), targetClass).define(className,
+                    generate(interfaceType, targetClass, className));
+        }
+        catch (final Exception e)
+        {
+            throw new ProxyFactoryException(e);
+        }
+    }
+
+    private static byte[] generate(Class<?> interfaceType, Class<?> targetClass, String className)
+        throws NoSuchMethodException
+    {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        final Type adapterType = Type.getObjectType(className);
+        final Type targetType = Type.getType(targetClass);
+        final Type objectType = Type.getType(Object.class);
+
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER, className, null,
+                objectType.getInternalName(), new String[] { Type.getInternalName(interfaceType) });
+        cw.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, TARGET_NAME, targetType.getDescriptor(), null, null)
+                .visitEnd();
+
+        // constructor: cast and store the target
+        final org.objectweb.asm.commons.Method constructor = new org.objectweb.asm.commons.Method("<init>",
+                Type.VOID_TYPE, new Type[] { objectType });
+        final GeneratorAdapter init = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, cw);
+        init.loadThis();
+        init.invokeConstructor(objectType, new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE,
+                new Type[0]));
+        init.loadThis();
+        init.loadArg(0);
+        init.checkCast(targetType);
+        init.putField(adapterType, TARGET_NAME, targetType);
+        init.returnValue();
+        init.endMethod();
+
+        for (Method method : getMethods(interfaceType).values())
+        {
+            final org.objectweb.asm.commons.Method asmMethod = org.objectweb.asm.commons.Method.getMethod(method);
+            final GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, asmMethod, null, null, cw);
+            final Method targetMethod = getTargetMethod(targetClass, method);
+            if (targetMethod == null)
+            {
+                mg.throwException(Type.getType(UnsupportedOperationException.class), "Target type "
+                        + targetClass.getName() + " does not have a method compatible with " + method + ".");
+            }
+            else
+            {
+                mg.loadThis();
+                mg.getField(adapterType, TARGET_NAME, targetType);
+                mg.loadArgs();
+                mg.invokeVirtual(targetType, org.objectweb.asm.commons.Method.getMethod(targetMethod));
+                mg.returnValue();
+            }
+            mg.endMethod();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Get the methods to implement, by descriptor, so that methods inherited from several interfaces are implemented
+     * once.
+     */
+    private static Map<String, Method> getMethods(Class<?> interfaceType) throws NoSuchMethodException
+    {
+        final Map<String, Method> result = new LinkedHashMap<String, Method>();
+        for (Method method : new Method[] { Object.class.getMethod("equals", Object.class),
+                Object.class.getMethod("hashCode"), Object.class.getMethod("toString") })
+        {
+            result.put(method.getName() + Type.getMethodDescriptor(method), method);
+        }
+        for (Method method : interfaceType.getMethods())
+        {
+            final String key = method.getName() + Type.getMethodDescriptor(method);
+            if (!result.containsKey(key))
+            {
+                result.put(key, method);
+            }
+        }
+        return result;
+    }
+
+    private static Method getTargetMethod(Class<?> targetClass, Method method)
+    {
+        try
+        {
+            final Method result = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            return !Modifier.isStatic(result.getModifiers())
+                    && method.getReturnType().isAssignableFrom(result.getReturnType()) ? result : null;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -33,13 +33,15 @@ import org.apache.commons.proxy2.exception.ProxyFactoryException;
 import org.apache.commons.proxy2.impl.AbstractProxyClassGenerator;
 import org.apache.commons.proxy2.impl.AbstractSubclassingProxyFactory;
 import org.apache.commons.proxy2.impl.ProxyClassCache;
+import org.apache.commons.proxy2.stub.StubCompiler;
+import org.apache.commons.proxy2.stub.StubDefinition;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 
-public class ASMProxyFactory extends AbstractSubclassingProxyFactory
+public class ASMProxyFactory extends AbstractSubclassingProxyFactory implements StubCompiler
 {
     private static final ProxyClassCache PROXY_CLASS_CACHE = new ProxyClassCache(new ProxyGenerator());
 
@@ -64,6 +66,21 @@ public class ASMProxyFactory extends AbstractSubclassingProxyFactory
         return createProxy(classLoader, new InvokerInvoker(invoker), proxyClasses);
     }
 
+    /**
+     * {@inheritDoc} Stubs of public interfaces compile to a generated class.
+     */
+    @Override
+    public boolean canCompile(Class<?>... proxyTypes)
+    {
+        return ASMStubCompiler.canCompile(proxyTypes);
+    }
+
+    @Override
+    public Object compile(StubDefinition definition)
+    {
+        return ASMStubCompiler.compile(definition);
+    }
+
     private <T> T createProxy(final ClassLoader classLoader, final AbstractInvoker invoker,
             final Class<?>... proxyClasses)
     {
@@ -80,6 +97,45 @@ public class ASMProxyFactory extends AbstractSubclassingProxyFactory
         }
     }
 
+    /**
+     * Adapted from http://asm.ow2.org/doc/faq.html#Q5
+     * 
+     * @param b
+     * @return Class<?>
+     */
+    static Class<?> loadClass(final ClassLoader loader, String className, byte[] b)
+    {
+        // override classDefine (as it is protected) and define the class.
+        try
+        {
+            final Method method = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class,
+                    int.class, int.class);
+
+            // protected method invocation
+            final boolean accessible = method.isAccessible();
+            if (!accessible)
+            {
+                method.setAccessible(true);
+            }
+            try
+            {
+                return (Class<?>) method
+                        .invoke(loader, className, b, Integer.valueOf(0), Integer.valueOf(b.length));
+            }
+            finally
+            {
+                if (!accessible)
+                {
+                    method.setAccessible(false);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            throw e instanceof RuntimeException ? ((RuntimeException) e) : new RuntimeException(e);
+        }
+    }
+
     private static class ProxyGenerator extends AbstractProxyClassGenerator implements Opcodes
     {
         private static final AtomicInteger CLASS_NUMBER = new AtomicInteger(0);
@@ -295,45 +351,6 @@ public class ASMProxyFactory extends AbstractSubclassingProxyFactory
             }
             return result;
         }
-
-        /**
-         * Adapted from http://asm.ow2.org/doc/faq.html#Q5
-         * 
-         * @param b
-         * @return Class<?>
-         */
-        private static Class<?> loadClass(final ClassLoader loader, String className, byte[] b)
-        {
-            // override classDefine (as it is protected) and define the class.
-            try
-            {
-                final Method method = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class,
-                        int.class, int.class);
-
-                // protected method invocation
-                final boolean accessible = method.isAccessible();
-                if (!accessible)
-                {
-                    method.setAccessible(true);
-                }
-                try
-                {
-                    return (Class<?>) method
-                            .invoke(loader, className, b, Integer.valueOf(0), Integer.valueOf(b.length));
-                }
-                finally
-                {
-                    if (!accessible)
-                    {
-                        method.setAccessible(false);
-                    }
-                }
-            }
-            catch (Exception e)
-            {
-                throw e instanceof RuntimeException ? ((RuntimeException) e) : new RuntimeException(e);
-            }
-        }
     }
 
     @SuppressWarnings("serial")
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ProxyUtils;
+import org.apache.commons.proxy2.exception.ProxyFactoryException;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+import org.apache.commons.proxy2.invoker.NullInvoker;
+import org.apache.commons.proxy2.stub.StubDefinition;
+import org.apache.commons.proxy2.stub.TrainedCase;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Compiles a {@link StubDefinition} into a subclass of {@link CompiledStub} implementing its proxy types. Each
+ * generated method tests the cases trained for it in training order: exact cases compare primitive and
+ * {@link String} arguments inline and other arguments by {@link CompiledStub#argumentEquals(Object, Object)}; the
+ * first case that matches returns its constant, inline where it is a primitive or a {@link String}, or the result of
+ * its {@link Interceptor}. Untrained invocations return the default value if the fallback is the {@link NullInvoker},
+ * and call the fallback {@link Invoker} otherwise. Each stub gets its own class, so compile a stub once and reuse it.
+ * <p>
+ * Inline comparisons grow a method's code with every case, and a JVM method may hold at most 64KB of it; a method with
+ * more than 64 cases is therefore generated as a call to {@link CompiledStub#dispatch(int, Object[])}, which finds
+ * its exact cases by hash, as {@link org.apache.commons.proxy2.stub.StubBuilder}'s uncompiled stubs do.
+ * </p>
+ */
+final class ASMStubCompiler implements Opcodes
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final AtomicInteger CLASS_NUMBER = new AtomicInteger(0);
+    private static final String CLASSNAME_PREFIX = "CommonsProxyASMStub_";
+
+    /**
+     * Maximum number of cases a generated method compares inline.
+     */
+    static final int INLINE_LIMIT = 64;
+
+    private static final Type BASE_TYPE = Type.getType(CompiledStub.class);
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+    private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+    private static final Type[] CONSTRUCTOR_TYPES = { Type.getType(Method[].class), Type.getType(Object[][].class),
+            OBJECT_ARRAY_TYPE, Type.getType(Interceptor[].class), Type.getType(InvocationMatcher[].class),
+            Type.getType(int[][].class), Type.getType(Invoker.class) };
+
+    private static final org.objectweb.asm.commons.Method ARGUMENT_EQUALS = org.objectweb.asm.commons.Method
+            .getMethod("boolean argumentEquals(Object, Object)");
+    private static final org.objectweb.asm.commons.Method ARGUMENT = org.objectweb.asm.commons.Method
+            .getMethod("Object argument(int, int)");
+    private static final org.objectweb.asm.commons.Method CONSTANT = org.objectweb.asm.commons.Method
+            .getMethod("Object constant(int)");
+    private static final org.objectweb.asm.commons.Method MATCHES = org.objectweb.asm.commons.Method
+            .getMethod("boolean matches(int, int, Object[])");
+    private static final org.objectweb.asm.commons.Method INTERCEPT = org.objectweb.asm.commons.Method
+            .getMethod("Object intercept(int, int, Object[])");
+    private static final org.objectweb.asm.commons.Method FALLBACK = org.objectweb.asm.commons.Method
+            .getMethod("Object fallback(int, Object[])");
+    private static final org.objectweb.asm.commons.Method DISPATCH = org.objectweb.asm.commons.Method
+            .getMethod("Object dispatch(int, Object[])");
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    private ASMStubCompiler()
+    {
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    static boolean canCompile(Class<?>... proxyTypes)
+    {
+        if (proxyTypes.length == 0)
+        {
+            return false;
+        }
+        for (Class<?> proxyType : proxyTypes)
+        {
+            if (!proxyType.isInterface() || !Modifier.isPublic(proxyType.getModifiers()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Object compile(StubDefinition definition)
+    {
+        final Class<?>[] proxyTypes = definition.getProxyTypes();
+        final List<TrainedCase> cases = definition.getTrainedCases();
+        final Method[] methods = getMethods(proxyTypes);
+        final int caseCount = cases.size();
+        final Object[][] arguments = new Object[caseCount][];
+        final Object[] constants = new Object[caseCount];
+        final Interceptor[] interceptors = new Interceptor[caseCount];
+        final InvocationMatcher[] matchers = new InvocationMatcher[caseCount];
+        for (int i = 0; i < caseCount; i++)
+        {
+            final TrainedCase trainedCase = cases.get(i);
+            arguments[i] = trainedCase.getArguments();
+            constants[i] = trainedCase.isConstant() ? trainedCase.getConstant() : null;
+            interceptors[i] = trainedCase.getInterceptor();
+            matchers[i] = trainedCase.getMatcher();
+        }
+        final int[][] indexedCases = getIndexedCases(methods, cases);
+        final String className = CLASSNAME_PREFIX + CLASS_NUMBER.incrementAndGet();
+        final Class<?>[] visible = new Class<?>[proxyTypes.length + 1];
+        System.arraycopy(proxyTypes, 0, visible, 0, proxyTypes.length);
+        visible[proxyTypes.length] = CompiledStub.class;
+        try
+        {
+            final byte[] classBytes = generate(className, proxyTypes, methods, cases, indexedCases,
+                    definition.getFallback() == NullInvoker.INSTANCE);
+            final Constructor<?> constructor = new BridgeClassLoader(proxyTypes[0].getClassLoader(), visible).define(
+                    className, classBytes).getConstructor(Method[].class, Object[][].class, Object[].class,
+                    Interceptor[].class, InvocationMatcher[].class, int[][].class, Invoker.class);
+            return constructor.newInstance(methods, arguments, constants, interceptors, matchers, indexedCases,
+                    definition.getFallback());
+        }
+        catch (Exception e)
+        {
+            throw new ProxyFactoryException("Unable to compile stub.", e);
+        }
+    }
+
+    /**
+     * Get the methods to implement: those of {@link Object} a proxy dispatches, then those of the proxy types, each
+     * signature once.
+     */
+    private static Method[] getMethods(Class<?>[] proxyTypes)
+    {
+        final Map<String, Method> result = new LinkedHashMap<String, Method>();
+        try
+        {
+            for (Method method : new Method[] { Object.class.getMethod("equals", Object.class),
+                    Object.class.getMethod("hashCode"), Object.class.getMethod("toString") })
+            {
+                result.put(method.getName() + Type.getMethodDescriptor(method), method);
+            }
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        for (Class<?> proxyType : proxyTypes)
+        {
+            for (Method method : proxyType.getMethods())
+            {
+                final String key = method.getName() + Type.getMethodDescriptor(method);
+                if (!result.containsKey(key))
+                {
+                    result.put(key, method);
+                }
+            }
+        }
+        return new ArrayList<Method>(result.values()).toArray(new Method[result.size()]);
+    }
+
+    /**
+     * Get, by method, the indexes of the cases applying to it in training order where there are more than
+     * {@link #INLINE_LIMIT} of them, and {@code null} where they are compared inline.
+     */
+    private static int[][] getIndexedCases(Method[] methods, List<TrainedCase> cases)
+    {
+        final int[][] result = new int[methods.length][];
+        final int[] applying = new int[cases.size()];
+        for (int methodIndex = 0; methodIndex < methods.length; methodIndex++)
+        {
+            int count = 0;
+            for (int caseIndex = 0; caseIndex < cases.size(); caseIndex++)
+            {
+                if (appliesTo(cases.get(caseIndex), methods[methodIndex]))
+                {
+                    applying[count++] = caseIndex;
+                }
+            }
+            if (count > INLINE_LIMIT)
+            {
+                result[methodIndex] = Arrays.copyOf(applying, count);
+            }
+        }
+        return result;
+    }
+
+    private static boolean appliesTo(TrainedCase trainedCase, Method method)
+    {
+        return trainedCase.getMethod() == null || sameSignature(trainedCase.getMethod(), method);
+    }
+
+    private static byte[] generate(String className, Class<?>[] proxyTypes, Method[] methods,
+            List<TrainedCase> cases, int[][] indexedCases, boolean nullFallback)
+    {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        final String[] interfaceNames = new String[proxyTypes.length];
+        for (int i = 0; i < proxyTypes.length; i++)
+        {
+            interfaceNames[i] = Type.getInternalName(proxyTypes[i]);
+        }
+        cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, BASE_TYPE.getInternalName(),
+                interfaceNames);
+
+        final org.objectweb.asm.commons.Method constructor = new org.objectweb.asm.commons.Method("<init>",
+                Type.VOID_TYPE, CONSTRUCTOR_TYPES);
+        final GeneratorAdapter init = new GeneratorAdapter(ACC_PUBLIC, constructor, null, null, cw);
+        init.loadThis();
+        init.loadArgs();
+        init.invokeConstructor(BASE_TYPE, constructor);
+        init.returnValue();
+        init.endMethod();
+
+        for (int methodIndex = 0; methodIndex < methods.length; methodIndex++)
+        {
+            final Method method = methods[methodIndex];
+            final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC,
+                    org.objectweb.asm.commons.Method.getMethod(method), null, null, cw);
+            if (indexedCases[methodIndex] != null)
+            {
+                mg.loadThis();
+                mg.push(methodIndex);
+                mg.loadArgArray();
+                mg.invokeVirtual(BASE_TYPE, DISPATCH);
+                returnObject(mg, method.getReturnType());
+                mg.endMethod();
+                continue;
+            }
+            for (int caseIndex = 0; caseIndex < cases.size(); caseIndex++)
+            {
+                final TrainedCase trainedCase = cases.get(caseIndex);
+                if (!appliesTo(trainedCase, method))
+                {
+                    continue;
+                }
+                final Label next = mg.newLabel();
+                if (trainedCase.isExact())
+                {
+                    final Object[] expected = trainedCase.getArguments();
+                    for (int i = 0; i < expected.length; i++)
+                    {
+                        compareArgument(mg, caseIndex, i, method.getParameterTypes()[i], expected[i], next);
+                    }
+                }
+                else
+                {
+                    mg.loadThis();
+                    mg.push(caseIndex);
+                    mg.push(methodIndex);
+                    mg.loadArgArray();
+                    mg.invokeVirtual(BASE_TYPE, MATCHES);
+                    mg.ifZCmp(GeneratorAdapter.EQ, next);
+                }
+                returnResult(mg, trainedCase, caseIndex, methodIndex, method.getReturnType());
+                mg.mark(next);
+            }
+            returnFallback(mg, methodIndex, method.getReturnType(), nullFallback);
+            mg.endMethod();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static boolean sameSignature(Method method, Method other)
+    {
+        return method.getName().equals(other.getName())
+                && Type.getMethodDescriptor(method).equals(Type.getMethodDescriptor(other));
+    }
+
+    /**
+     * Jump to {@code next} unless argument {@code index} equals {@code expected}.
+     */
+    private static void compareArgument(GeneratorAdapter mg, int caseIndex, int index, Class<?> parameterType,
+            Object expected, Label next)
+    {
+        if (parameterType.isPrimitive())
+        {
+            if (isInlineable(parameterType, expected))
+            {
+                final Type type = Type.getType(parameterType);
+                mg.loadArg(index);
+                if (parameterType == Float.TYPE)
+                {
+                    mg.invokeStatic(Type.getType(Float.class),
+                            org.objectweb.asm.commons.Method.getMethod("int floatToIntBits(float)"));
+                    mg.push(Float.floatToIntBits(((Float) expected).floatValue()));
+                    mg.ifICmp(GeneratorAdapter.NE, next);
+                }
+                else if (parameterType == Double.TYPE)
+                {
+                    mg.invokeStatic(Type.getType(Double.class),
+                            org.objectweb.asm.commons.Method.getMethod("long doubleToLongBits(double)"));
+                    mg.push(Double.doubleToLongBits(((Double) expected).doubleValue()));
+                    mg.ifCmp(Type.LONG_TYPE, GeneratorAdapter.NE, next);
+                }
+                else if (parameterType == Long.TYPE)
+                {
+                    mg.push(((Long) expected).longValue());
+                    mg.ifCmp(type, GeneratorAdapter.NE, next);
+                }
+                else
+                {
+                    mg.push(intValue(expected));
+                    mg.ifICmp(GeneratorAdapter.NE, next);
+                }
+                return;
+            }
+            mg.loadThis();
+            mg.push(caseIndex);
+            mg.push(index);
+            mg.invokeVirtual(BASE_TYPE, ARGUMENT);
+            mg.loadArg(index);
+            mg.box(Type.getType(parameterType));
+        }
+        else if (expected == null)
+        {
+            mg.loadArg(index);
+            mg.ifNonNull(next);
+            return;
+        }
+        else if (expected instanceof String)
+        {
+            mg.push((String) expected);
+            mg.loadArg(index);
+        }
+        else
+        {
+            mg.loadThis();
+            mg.push(caseIndex);
+            mg.push(index);
+            mg.invokeVirtual(BASE_TYPE, ARGUMENT);
+            mg.loadArg(index);
+        }
+        mg.invokeStatic(BASE_TYPE, ARGUMENT_EQUALS);
+        mg.ifZCmp(GeneratorAdapter.EQ, next);
+    }
+
+    private static void returnResult(GeneratorAdapter mg, TrainedCase trainedCase, int caseIndex, int methodIndex,
+            Class<?> returnType)
+    {
+        if (trainedCase.isConstant())
+        {
+            final Object constant = trainedCase.getConstant();
+            if (returnType == Void.TYPE)
+            {
+                mg.returnValue();
+                return;
+            }
+            if (returnType.isPrimitive() ? isInlineable(returnType, constant) : (constant == null
+                    || constant instanceof String && returnType.isAssignableFrom(String.class)))
+            {
+                pushInline(mg, returnType, constant);
+                mg.returnValue();
+                return;
+            }
+            mg.loadThis();
+            mg.push(caseIndex);
+            mg.invokeVirtual(BASE_TYPE, CONSTANT);
+        }
+        else
+        {
+            mg.loadThis();
+            mg.push(caseIndex);
+            mg.push(methodIndex);
+            mg.loadArgArray();
+            mg.invokeVirtual(BASE_TYPE, INTERCEPT);
+        }
+        returnObject(mg, returnType);
+    }
+
+    private static void returnFallback(GeneratorAdapter mg, int methodIndex, Class<?> returnType,
+            boolean nullFallback)
+    {
+        if (nullFallback)
+        {
+            // NullInvoker returns the default value of the return type:
+            if (returnType != Void.TYPE)
+            {
+                pushInline(mg, returnType, ProxyUtils.nullValue(returnType));
+            }
+            mg.returnValue();
+            return;
+        }
+        mg.loadThis();
+        mg.push(methodIndex);
+        mg.loadArgArray();
+        mg.invokeVirtual(BASE_TYPE, FALLBACK);
+        returnObject(mg, returnType);
+    }
+
+    private static void returnObject(GeneratorAdapter mg, Class<?> returnType)
+    {
+        if (returnType == Void.TYPE)
+        {
+            mg.pop();
+        }
+        else
+        {
+            mg.unbox(Type.getType(returnType));
+        }
+        mg.returnValue();
+    }
+
+    /**
+     * Learn whether {@code value} is the wrapper of primitive {@code type}, so that it can be pushed as a literal.
+     */
+    private static boolean isInlineable(Class<?> type, Object value)
+    {
+        return value != null && ClassUtils.primitiveToWrapper(type) == value.getClass();
+    }
+
+    private static void pushInline(GeneratorAdapter mg, Class<?> type, Object value)
+    {
+        if (value == null)
+        {
+            mg.visitInsn(ACONST_NULL);
+        }
+        else if (value instanceof String)
+        {
+            mg.push((String) value);
+        }
+        else if (type == Long.TYPE)
+        {
+            mg.push(((Long) value).longValue());
+        }
+        else if (type == Float.TYPE)
+        {
+            mg.push(((Float) value).floatValue());
+        }
+        else if (type == Double.TYPE)
+        {
+            mg.push(((Double) value).doubleValue());
+        }
+        else
+        {
+            mg.push(intValue(value));
+        }
+    }
+
+    private static int intValue(Object value)
+    {
+        if (value instanceof Boolean)
+        {
+            return ((Boolean) value).booleanValue() ? 1 : 0;
+        }
+        if (value instanceof Character)
+        {
+            return ((Character) value).charValue();
+        }
+        return ((Number) value).intValue();
+    }
+}
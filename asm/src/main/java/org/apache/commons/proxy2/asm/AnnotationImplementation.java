@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.AnnotationUtils;
+
+/**
+ * Superclass of the annotation implementation classes generated by {@link ASMAnnotationFactory}. Generated subclasses
+ * hold each member value in a final field of the member's type; this class keeps the boxed member values in order to
+ * implement {@link #equals(Object)}, {@link #hashCode()} and {@link #toString()} as specified by {@link Annotation},
+ * with the hash code computed once at construction.
+ */
+public abstract class AnnotationImplementation implements Annotation
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Class<? extends Annotation> annotationType;
+    private final Method[] members;
+    private final Object[] values;
+    private final int hashCode;
+    private volatile String toString;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new AnnotationImplementation instance.
+     *
+     * @param annotationType
+     * @param members
+     *            annotation members, in the same order as {@code values}
+     * @param values
+     *            member values, already validated and defensively copied
+     */
+    protected AnnotationImplementation(Class<? extends Annotation> annotationType, Method[] members, Object[] values)
+    {
+        this.annotationType = annotationType;
+        this.members = members;
+        this.values = values;
+        int result = 0;
+        for (int i = 0; i < members.length; i++)
+        {
+            result += (127 * members[i].getName().hashCode()) ^ memberHashCode(values[i]);
+        }
+        this.hashCode = result;
+    }
+
+    //******************************************************************************************************************
+    // Annotation Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Class<? extends Annotation> annotationType()
+    {
+        return annotationType;
+    }
+
+    //******************************************************************************************************************
+    // Canonical Methods
+    //******************************************************************************************************************
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this)
+        {
+            return true;
+        }
+        if (!annotationType.isInstance(o))
+        {
+            return false;
+        }
+        if (o instanceof AnnotationImplementation)
+        {
+            final AnnotationImplementation other = (AnnotationImplementation) o;
+            if (hashCode != other.hashCode)
+            {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++)
+            {
+                if (!memberEquals(values[i], other.values[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < members.length; i++)
+        {
+            if (!memberEquals(values[i], invoke(members[i], o)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        String result = toString;
+        if (result == null)
+        {
+            result = AnnotationUtils.toString(this);
+            toString = result;
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    private static Object invoke(Method member, Object annotation)
+    {
+        try
+        {
+            return member.invoke(annotation);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new IllegalStateException(e.getTargetException());
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int memberHashCode(Object value)
+    {
+        if (!value.getClass().isArray())
+        {
+            return value.hashCode();
+        }
+        if (value instanceof Object[])
+        {
+            return Arrays.hashCode((Object[]) value);
+        }
+        if (value instanceof int[])
+        {
+            return Arrays.hashCode((int[]) value);
+        }
+        if (value instanceof long[])
+        {
+            return Arrays.hashCode((long[]) value);
+        }
+        if (value instanceof boolean[])
+        {
+            return Arrays.hashCode((boolean[]) value);
+        }
+        if (value instanceof byte[])
+        {
+            return Arrays.hashCode((byte[]) value);
+        }
+        if (value instanceof char[])
+        {
+            return Arrays.hashCode((char[]) value);
+        }
+        if (value instanceof short[])
+        {
+            return Arrays.hashCode((short[]) value);
+        }
+        if (value instanceof float[])
+        {
+            return Arrays.hashCode((float[]) value);
+        }
+        return Arrays.hashCode((double[]) value);
+    }
+
+    private static boolean memberEquals(Object value, Object other)
+    {
+        if (!value.getClass().isArray())
+        {
+            return value.equals(other);
+        }
+        if (value instanceof Object[])
+        {
+            return other instanceof Object[] && Arrays.equals((Object[]) value, (Object[]) other);
+        }
+        if (value instanceof int[])
+        {
+            return other instanceof int[] && Arrays.equals((int[]) value, (int[]) other);
+        }
+        if (value instanceof long[])
+        {
+            return other instanceof long[] && Arrays.equals((long[]) value, (long[]) other);
+        }
+        if (value instanceof boolean[])
+        {
+            return other instanceof boolean[] && Arrays.equals((boolean[]) value, (boolean[]) other);
+        }
+        if (value instanceof byte[])
+        {
+            return other instanceof byte[] && Arrays.equals((byte[]) value, (byte[]) other);
+        }
+        if (value instanceof char[])
+        {
+            return other instanceof char[] && Arrays.equals((char[]) value, (char[]) other);
+        }
+        if (value instanceof short[])
+        {
+            return other instanceof short[] && Arrays.equals((short[]) value, (short[]) other);
+        }
+        if (value instanceof float[])
+        {
+            return other instanceof float[] && Arrays.equals((float[]) value, (float[]) other);
+        }
+        return other instanceof double[] && Arrays.equals((double[]) value, (double[]) other);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+/**
+ * Class loader of generated classes that must see classes of several class loaders: the specified classes themselves,
+ * even where the parent sees other classes of the same names, then the classes of the parent, then those of the
+ * loaders of the specified classes.
+ */
+final class BridgeClassLoader extends ClassLoader
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Class<?>[] classes;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    BridgeClassLoader(ClassLoader parent, Class<?>... classes)
+    {
+        super(parent);
+        this.classes = classes;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+    {
+        for (Class<?> type : classes)
+        {
+            if (type.getName().equals(name))
+            {
+                return type;
+            }
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+        for (Class<?> type : classes)
+        {
+            final ClassLoader loader = type.getClassLoader();
+            if (loader != null && loader != getParent())
+            {
+                try
+                {
+                    return Class.forName(name, false, loader);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    // try the next one
+                }
+            }
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    Class<?> define(String name, byte[] classBytes)
+    {
+        return defineClass(name, classBytes, 0, classBytes.length);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ProxyUtils;
+import org.apache.commons.proxy2.interceptor.InvocationKey;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * Superclass of the stub classes generated by {@link ASMStubCompiler}. Generated methods compare their arguments with
+ * the trained ones and return trained primitive and {@link String} constants inline; they call back into this class
+ * for other constants, for cases handled by an {@link Interceptor} or selected by an {@link InvocationMatcher}, and
+ * for the fallback {@link Invoker}. Methods with too many cases to compare inline leave the search to
+ * {@link #dispatch(int, Object[])}, which looks up consecutive exact cases in a hash index and evaluates the matcher
+ * cases in between, in training order. All arrays are indexed by trained case, in training order, except for
+ * {@code methods} and {@code indexedCases}, indexed by generated method.
+ */
+public abstract class CompiledStub
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Method[] methods;
+    private final Object[][] arguments;
+    private final Object[] constants;
+    private final Interceptor[] interceptors;
+    private final InvocationMatcher[] matchers;
+    private final Invoker fallback;
+    private final Segment[][] segments;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new CompiledStub instance.
+     * 
+     * @param methods
+     * @param arguments
+     * @param constants
+     * @param interceptors
+     * @param matchers
+     * @param indexedCases
+     *            by method, the cases applying to it, in training order, where {@link #dispatch(int, Object[])}
+     *            searches them; {@code null} elsewhere
+     * @param fallback
+     */
+    protected CompiledStub(Method[] methods, Object[][] arguments, Object[] constants, Interceptor[] interceptors,
+            InvocationMatcher[] matchers, int[][] indexedCases, Invoker fallback)
+    {
+        this.methods = methods;
+        this.arguments = arguments;
+        this.constants = constants;
+        this.interceptors = interceptors;
+        this.matchers = matchers;
+        this.fallback = fallback;
+        this.segments = new Segment[methods.length][];
+        for (int methodIndex = 0; methodIndex < methods.length; methodIndex++)
+        {
+            if (indexedCases[methodIndex] != null)
+            {
+                segments[methodIndex] = index(methods[methodIndex], indexedCases[methodIndex]);
+            }
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Learn whether {@code actual} is deeply equal to {@code expected}.
+     * 
+     * @param expected
+     * @param actual
+     * @return boolean
+     */
+    protected static boolean argumentEquals(Object expected, Object actual)
+    {
+        if (expected == null || !expected.getClass().isArray())
+        {
+            return expected == null ? actual == null : expected.equals(actual);
+        }
+        return Arrays.deepEquals(new Object[] { expected }, new Object[] { actual });
+    }
+
+    /**
+     * Get a trained argument.
+     * 
+     * @param caseIndex
+     * @param argumentIndex
+     * @return Object
+     */
+    protected final Object argument(int caseIndex, int argumentIndex)
+    {
+        return arguments[caseIndex][argumentIndex];
+    }
+
+    /**
+     * Get a trained constant.
+     * 
+     * @param caseIndex
+     * @return Object
+     */
+    protected final Object constant(int caseIndex)
+    {
+        return constants[caseIndex];
+    }
+
+    /**
+     * Learn whether the matcher of a case accepts an invocation.
+     * 
+     * @param caseIndex
+     * @param methodIndex
+     * @param args
+     * @return boolean
+     */
+    protected final boolean matches(int caseIndex, int methodIndex, Object[] args)
+    {
+        return matchers[caseIndex].matches(new StubInvocation(methods[methodIndex], args));
+    }
+
+    /**
+     * Handle an invocation with the interceptor of a case.
+     * 
+     * @param caseIndex
+     * @param methodIndex
+     * @param args
+     * @return Object
+     * @throws Throwable
+     */
+    protected final Object intercept(int caseIndex, int methodIndex, Object[] args) throws Throwable
+    {
+        try
+        {
+            return interceptors[caseIndex].intercept(new StubInvocation(methods[methodIndex], args));
+        }
+        catch (Exception e)
+        {
+            throw checkDeclared(methods[methodIndex], e);
+        }
+    }
+
+    /**
+     * Handle an invocation matched by no case.
+     * 
+     * @param methodIndex
+     * @param args
+     * @return Object
+     * @throws Throwable
+     */
+    protected final Object fallback(int methodIndex, Object[] args) throws Throwable
+    {
+        try
+        {
+            return fallback.invoke(this, methods[methodIndex], args);
+        }
+        catch (Exception e)
+        {
+            throw checkDeclared(methods[methodIndex], e);
+        }
+    }
+
+    /**
+     * Handle an invocation of a method whose cases are searched rather than compared inline.
+     * 
+     * @param methodIndex
+     * @param args
+     * @return Object
+     * @throws Throwable
+     */
+    protected final Object dispatch(int methodIndex, Object[] args) throws Throwable
+    {
+        InvocationKey key = null;
+        for (Segment segment : segments[methodIndex])
+        {
+            final int caseIndex;
+            if (segment.exactCases == null)
+            {
+                caseIndex = matches(segment.matcherCase, methodIndex, args) ? segment.matcherCase : -1;
+            }
+            else
+            {
+                if (key == null)
+                {
+                    key = InvocationKey.forLookup(methods[methodIndex], args);
+                }
+                final Integer found = segment.exactCases.get(key);
+                caseIndex = found == null ? -1 : found.intValue();
+            }
+            if (caseIndex >= 0)
+            {
+                return intercept(caseIndex, methodIndex, args);
+            }
+        }
+        return fallback(methodIndex, args);
+    }
+
+    private Segment[] index(Method method, int[] caseIndexes)
+    {
+        final List<Segment> result = new ArrayList<Segment>();
+        Segment exact = null;
+        for (int caseIndex : caseIndexes)
+        {
+            if (matchers[caseIndex] != null)
+            {
+                result.add(new Segment(null, caseIndex));
+                exact = null;
+                continue;
+            }
+            if (exact == null)
+            {
+                exact = new Segment(new HashMap<InvocationKey, Integer>(), -1);
+                result.add(exact);
+            }
+            final InvocationKey key = new InvocationKey(method, arguments[caseIndex]);
+            // first match wins, as with sequential comparison:
+            if (!exact.exactCases.containsKey(key))
+            {
+                exact.exactCases.put(key, Integer.valueOf(caseIndex));
+            }
+        }
+        return result.toArray(new Segment[result.size()]);
+    }
+
+    private static Exception checkDeclared(Method method, Exception e)
+    {
+        if (e instanceof RuntimeException)
+        {
+            return e;
+        }
+        for (Class<?> exceptionType : method.getExceptionTypes())
+        {
+            if (exceptionType.isInstance(e))
+            {
+                return e;
+            }
+        }
+        return new UndeclaredThrowableException(e);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Run of consecutive exact cases, or a single matcher case.
+     */
+    private static final class Segment
+    {
+        private final Map<InvocationKey, Integer> exactCases;
+        private final int matcherCase;
+
+        Segment(Map<InvocationKey, Integer> exactCases, int matcherCase)
+        {
+            this.exactCases = exactCases;
+            this.matcherCase = matcherCase;
+        }
+    }
+
+    private final class StubInvocation implements Invocation
+    {
+        private final Method method;
+        private final Object[] args;
+
+        StubInvocation(Method method, Object[] args)
+        {
+            this.method = method;
+            this.args = ArrayUtils.isEmpty(args) ? ProxyUtils.EMPTY_ARGUMENTS : args;
+        }
+
+        @Override
+        public Object[] getArguments()
+        {
+            return args;
+        }
+
+        @Override
+        public Method getMethod()
+        {
+            return method;
+        }
+
+        @Override
+        public Object getProxy()
+        {
+            return CompiledStub.this;
+        }
+
+        @Override
+        public Object proceed() throws Throwable
+        {
+            return fallback.invoke(CompiledStub.this, method, args);
+        }
+    }
+}
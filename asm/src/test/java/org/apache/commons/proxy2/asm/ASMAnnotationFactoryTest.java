@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.asm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.proxy2.stub.AnnotationBuilder;
+import org.junit.Test;
+
+public class ASMAnnotationFactoryTest
+{
+    private final ASMAnnotationFactory factory = new ASMAnnotationFactory();
+
+    @Test
+    public void testDefaults()
+    {
+        final Annotated annotated = Annotated.class.getAnnotation(Annotated.class);
+        final Map<String, Object> members = Collections.<String, Object> singletonMap("name", "annotated");
+        final Annotated generated = factory.create(Annotated.class, members);
+        assertEquals(Annotated.class, generated.annotationType());
+        assertEquals("annotated", generated.name());
+        assertEquals(7, generated.count());
+        assertEquals('x', generated.letter());
+        assertEquals(1.5d, generated.ratio(), 0d);
+        assertArrayEquals(new int[] { 1, 2 }, generated.numbers());
+        assertArrayEquals(new ElementType[] { ElementType.TYPE }, generated.targets());
+        assertEquals(Object.class, generated.type());
+        assertEquals(annotated, generated);
+        assertEquals(generated, annotated);
+        assertEquals(annotated.hashCode(), generated.hashCode());
+    }
+
+    @Test
+    public void testMembers()
+    {
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("name", "foo");
+        members.put("count", Integer.valueOf(42));
+        members.put("numbers", new int[] { 3 });
+        final Annotated generated = factory.create(Annotated.class, members);
+        assertEquals("foo", generated.name());
+        assertEquals(42, generated.count());
+        assertArrayEquals(new int[] { 3 }, generated.numbers());
+        assertFalse(generated.equals(Annotated.class.getAnnotation(Annotated.class)));
+
+        ((int[]) members.get("numbers"))[0] = 4;
+        assertArrayEquals(new int[] { 3 }, generated.numbers());
+        generated.numbers()[0] = 5;
+        assertArrayEquals(new int[] { 3 }, generated.numbers());
+
+        final Annotated other = factory.create(Annotated.class, members);
+        assertFalse(generated.equals(other));
+        assertSame(generated.getClass(), other.getClass());
+    }
+
+    @Test
+    public void testCopy()
+    {
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("name", "built");
+        members.put("targets", new ElementType[] { ElementType.FIELD, ElementType.METHOD });
+        final Annotated built = AnnotationBuilder.of(Annotated.class).withMembers(members).build();
+        final Annotated copy = factory.copy(built);
+        assertNotSame(built, copy);
+        assertTrue(copy instanceof AnnotationImplementation);
+        assertEquals(copy, built);
+        assertEquals(built, copy);
+        assertEquals(built.hashCode(), copy.hashCode());
+        assertEquals(copy, factory.create(Annotated.class, members));
+    }
+
+    @Test
+    public void testGeneratedInAnnotationPackage()
+    {
+        final Annotated generated = factory.create(Annotated.class,
+                Collections.<String, Object> singletonMap("name", "foo"));
+        assertEquals(ClassUtils.getPackageName(Annotated.class), ClassUtils.getPackageName(generated.getClass()));
+    }
+
+    @Test
+    public void testJavaLangAnnotation()
+    {
+        final Retention generated = factory.create(Retention.class,
+                Collections.<String, Object> singletonMap("value", RetentionPolicy.RUNTIME));
+        assertEquals(RetentionPolicy.RUNTIME, generated.value());
+        assertEquals(Annotated.class.getAnnotation(Retention.class), generated);
+        assertEquals(ClassUtils.getPackageName(ASMAnnotationFactory.class),
+                ClassUtils.getPackageName(generated.getClass()));
+    }
+
+    @Test
+    public void testAnnotationFromIsolatedClassLoader() throws Exception
+    {
+        final URL location = Annotated.class.getProtectionDomain().getCodeSource().getLocation();
+        final ClassLoader isolated = new URLClassLoader(new URL[] { location }, null);
+        final Class<? extends Annotation> isolatedType = isolated.loadClass(Annotated.class.getName()).asSubclass(
+                Annotation.class);
+        assertNotSame(Annotated.class, isolatedType);
+
+        final Annotation generated = factory.create(isolatedType,
+                Collections.<String, Object> singletonMap("name", "isolated"));
+        assertTrue(isolatedType.isInstance(generated));
+        assertTrue(generated instanceof AnnotationImplementation);
+        assertEquals("isolated", isolatedType.getMethod("name").invoke(generated));
+        assertEquals(isolatedType.getAnnotation(isolatedType).hashCode(), factory.copy(
+                isolatedType.getAnnotation(isolatedType)).hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingMember()
+    {
+        factory.create(Annotated.class, Collections.<String, Object> emptyMap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMember()
+    {
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("name", "foo");
+        members.put("unknown", "bar");
+        factory.create(Annotated.class, members);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadMemberValue()
+    {
+        factory.create(Annotated.class, Collections.<String, Object> singletonMap("name", Integer.valueOf(1)));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Annotated(name = "annotated")
+    public @interface Annotated
+    {
+        String name();
+
+        int count() default 7;
+
+        char letter() default 'x';
+
+        double ratio() default 1.5d;
+
+        int[] numbers() default { 1, 2 };
+
+        ElementType[] targets() default ElementType.TYPE;
+
+        Class<?> type() default Object.class;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+
+public class ASMDuckTypingFactoryTest
+{
+    private final ASMDuckTypingFactory factory = new ASMDuckTypingFactory();
+
+    @Test
+    public void testDelegatesToTarget()
+    {
+        final LegacyDuck target = new LegacyDuck();
+        final Duck duck = factory.createAdapter(Duck.class, target);
+        assertEquals("Quack", duck.quack());
+        assertEquals(3, duck.waddle(3));
+        duck.swim();
+        assertEquals(1, target.swims);
+        assertEquals("LegacyDuck", duck.toString());
+        assertEquals(target.hashCode(), duck.hashCode());
+        assertTrue(duck.equals(target));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMissingMethod()
+    {
+        factory.createAdapter(Duck.class, new LegacyDuck()).fly();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIncompatibleReturnType()
+    {
+        factory.createAdapter(Duck.class, new LegacyDuck()).weight();
+    }
+
+    @Test
+    public void testAdapterClassCached()
+    {
+        assertSame(factory.createAdapter(Duck.class, new LegacyDuck()).getClass(),
+                factory.createAdapter(Duck.class, new LegacyDuck()).getClass());
+        assertNotSame(factory.createAdapter(Duck.class, new LegacyDuck()).getClass(),
+                new ASMDuckTypingFactory().createAdapter(Duck.class, new LegacyDuck()).getClass());
+    }
+
+    @Test
+    public void testTargetFromIsolatedClassLoader() throws Exception
+    {
+        final URL location = LegacyDuck.class.getProtectionDomain().getCodeSource().getLocation();
+        final ClassLoader isolated = new URLClassLoader(new URL[] { location }, null);
+        final Class<?> isolatedClass = isolated.loadClass(LegacyDuck.class.getName());
+        assertNotSame(LegacyDuck.class, isolatedClass);
+        final Duck duck = factory.createAdapter(Duck.class, isolatedClass.newInstance());
+        assertEquals("Quack", duck.quack());
+        assertEquals(5, duck.waddle(5));
+    }
+
+    @Test
+    public void testCacheDoesNotRetainTargetClassLoader() throws Exception
+    {
+        final URL location = LegacyDuck.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader isolated = new URLClassLoader(new URL[] { location }, null);
+        Duck duck = factory.createAdapter(Duck.class, isolated.loadClass(LegacyDuck.class.getName()).newInstance());
+        assertEquals("Quack", duck.quack());
+        final WeakReference<ClassLoader> reference = new WeakReference<ClassLoader>(isolated);
+        isolated = null;
+        duck = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPublicTarget()
+    {
+        factory.createAdapter(Duck.class, new HiddenDuck());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAnInterface()
+    {
+        factory.createAdapter(LegacyDuck.class, new LegacyDuck());
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Duck
+    {
+        CharSequence quack();
+
+        int waddle(int steps);
+
+        void swim();
+
+        void fly();
+
+        long weight();
+    }
+
+    public static class LegacyDuck
+    {
+        int swims;
+
+        public String quack()
+        {
+            return "Quack";
+        }
+
+        public int waddle(int steps)
+        {
+            return steps;
+        }
+
+        public void swim()
+        {
+            swims++;
+        }
+
+        public int weight()
+        {
+            return 1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "LegacyDuck";
+        }
+    }
+
+    static class HiddenDuck extends LegacyDuck
+    {
+    }
+}
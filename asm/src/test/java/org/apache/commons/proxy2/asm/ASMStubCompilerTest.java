@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.asm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.apache.commons.proxy2.stub.StubBuilder;
+import org.apache.commons.proxy2.stub.Trainer;
+import org.junit.Test;
+
+public class ASMStubCompilerTest
+{
+    private final ASMProxyFactory proxyFactory = new ASMProxyFactory();
+
+    @Test
+    public void testGeneratesStubClass()
+    {
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).compile();
+        assertTrue(stub instanceof CompiledStub);
+        assertFalse(Proxy.isProxyClass(stub.getClass()));
+        assertEquals(0, stub.add(1, 2));
+        assertNull(stub.name(1L));
+    }
+
+    @Test
+    public void testPrimitiveArgumentsAndConstants()
+    {
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).train(
+                new Trainer<Calculator>()
+                {
+                    @Override
+                    protected void train(Calculator trainee)
+                    {
+                        when(trainee.add(1, 2)).thenReturn(3);
+                        when(trainee.add(2, 2)).thenReturn(5);
+                        when(trainee.name(7L)).thenReturn("seven");
+                        when(trainee.scale(0.5d, 'x', true)).thenReturn(1.5d);
+                        when(trainee.scale(Double.NaN, 'x', true)).thenReturn(-1d);
+                    }
+                }).compile();
+        assertEquals(3, stub.add(1, 2));
+        assertEquals(5, stub.add(2, 2));
+        assertEquals(0, stub.add(2, 1));
+        assertEquals("seven", stub.name(7L));
+        assertNull(stub.name(8L));
+        assertEquals(1.5d, stub.scale(0.5d, 'x', true), 0d);
+        assertEquals(-1d, stub.scale(Double.NaN, 'x', true), 0d);
+        assertEquals(0d, stub.scale(0.5d, 'y', true), 0d);
+        assertEquals(0d, stub.scale(0.5d, 'x', false), 0d);
+    }
+
+    @Test
+    public void testReferenceArgumentsAndConstants()
+    {
+        final int[] values = { 1, 2 };
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).train(
+                new Trainer<Calculator>()
+                {
+                    @Override
+                    protected void train(Calculator trainee)
+                    {
+                        when(trainee.sum(new int[] { 1, 2 })).thenReturn(Integer.valueOf(3));
+                        when(trainee.sum(null)).thenReturn(Integer.valueOf(-1));
+                        when(trainee.values("a")).thenReturn(values);
+                        when(trainee.parse(Integer.valueOf(4))).thenReturn("four");
+                    }
+                }).compile();
+        assertEquals(Integer.valueOf(3), stub.sum(new int[] { 1, 2 }));
+        assertEquals(Integer.valueOf(-1), stub.sum(null));
+        assertNull(stub.sum(new int[] { 1 }));
+        assertTrue(Arrays.equals(values, stub.values("a")));
+        assertSame(stub.values("a"), stub.values("a"));
+        assertNull(stub.values("b"));
+        assertEquals("four", stub.parse(Integer.valueOf(4)));
+        assertNull(stub.parse(Integer.valueOf(5)));
+    }
+
+    @Test
+    public void testMatchersAndTrainingOrder()
+    {
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).train(
+                new Trainer<Calculator>()
+                {
+                    @Override
+                    protected void train(Calculator trainee)
+                    {
+                        when(trainee.parse(Integer.valueOf(1))).thenReturn("one");
+                        when(trainee.parse(any(Integer.class))).thenReturn("many");
+                        when(trainee.parse(Integer.valueOf(2))).thenReturn("two");
+                    }
+                }).compile();
+        assertEquals("one", stub.parse(Integer.valueOf(1)));
+        assertEquals("many", stub.parse(Integer.valueOf(2)));
+        assertEquals("many", stub.parse(Integer.valueOf(3)));
+    }
+
+    @Test
+    public void testManyCases()
+    {
+        // far beyond what fits in 64KB of inline comparisons:
+        final int count = 10000;
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).train(
+                new Trainer<Calculator>()
+                {
+                    @Override
+                    protected void train(Calculator trainee)
+                    {
+                        for (int i = 0; i < count; i++)
+                        {
+                            when(trainee.name(i)).thenReturn("name" + i);
+                            when(trainee.add(i, i)).thenReturn(2 * i);
+                        }
+                        when(trainee.parse(Integer.valueOf(1))).thenReturn("one");
+                        when(trainee.parse(any(Integer.class))).thenReturn("many");
+                        for (int i = 0; i < count; i++)
+                        {
+                            when(trainee.parse(Integer.valueOf(i))).thenReturn("shadowed");
+                        }
+                    }
+                }).compile();
+        assertTrue(stub instanceof CompiledStub);
+        assertEquals("name0", stub.name(0L));
+        assertEquals("name9999", stub.name(9999L));
+        assertNull(stub.name(count));
+        assertEquals(19998, stub.add(9999, 9999));
+        assertEquals(0, stub.add(1, 2));
+        assertEquals("one", stub.parse(Integer.valueOf(1)));
+        assertEquals("many", stub.parse(Integer.valueOf(2)));
+        assertEquals("many", stub.parse(Integer.valueOf(count)));
+    }
+
+    @Test
+    public void testFallbackToTarget()
+    {
+        final Calculator target = new Calculator()
+        {
+            @Override
+            public int add(int a, int b)
+            {
+                return a + b;
+            }
+
+            @Override
+            public String name(long value)
+            {
+                return String.valueOf(value);
+            }
+
+            @Override
+            public double scale(double value, char unit, boolean enabled)
+            {
+                return value;
+            }
+
+            @Override
+            public Integer sum(int[] values)
+            {
+                return Integer.valueOf(values.length);
+            }
+
+            @Override
+            public int[] values(String key)
+            {
+                return new int[] { key.length() };
+            }
+
+            @Override
+            public String parse(Integer value)
+            {
+                return "target";
+            }
+
+            @Override
+            public void check() throws IOException
+            {
+                throw new IOException("target");
+            }
+        };
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class,
+                ObjectProviderUtils.constant(target)).train(new Trainer<Calculator>()
+        {
+            @Override
+            protected void train(Calculator trainee)
+            {
+                when(trainee.add(1, 1)).thenReturn(11);
+            }
+        }).compile();
+        assertEquals(11, stub.add(1, 1));
+        assertEquals(5, stub.add(2, 3));
+        assertEquals("42", stub.name(42L));
+        assertTrue(Arrays.equals(new int[] { 3 }, stub.values("abc")));
+        try
+        {
+            stub.check();
+            fail();
+        }
+        catch (IOException e)
+        {
+            assertEquals("target", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testThrowing() throws IOException
+    {
+        final Calculator stub = new StubBuilder<Calculator>(proxyFactory, Calculator.class).train(
+                new Trainer<Calculator>()
+                {
+                    @Override
+                    protected void train(Calculator trainee)
+                    {
+                        when(trainee.add(0, 0)).thenThrow(new IllegalStateException("zero"));
+                        when(trainee.name(0L)).thenThrow(new Exception("undeclared"));
+                    }
+                }).compile();
+        try
+        {
+            stub.add(0, 0);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("zero", e.getMessage());
+        }
+        try
+        {
+            stub.name(0L);
+            fail();
+        }
+        catch (UndeclaredThrowableException e)
+        {
+            assertEquals("undeclared", e.getCause().getMessage());
+        }
+        stub.check();
+    }
+
+    @Test
+    public void testNonPublicInterfaceNotCompiled()
+    {
+        assertFalse(proxyFactory.canCompile(Hidden.class));
+        assertTrue(proxyFactory.canCompile(Calculator.class));
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Calculator
+    {
+        int add(int a, int b);
+
+        String name(long value);
+
+        double scale(double value, char unit, boolean enabled);
+
+        Integer sum(int[] values);
+
+        int[] values(String key);
+
+        String parse(Integer value);
+
+        void check() throws IOException;
+    }
+
+    interface Hidden
+    {
+        String name();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.exception;
+
+/**
+ * Thrown by an {@link org.apache.commons.proxy2.Interceptor} that refuses to let an invocation proceed, for instance
+ * because a concurrency or rate limit has been reached.
+ * 
+ * @since 2.1
+ */
+public class RejectedInvocationException extends RuntimeException
+{
+    /** Serialization version */
+    private static final long serialVersionUID = -1L;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new RejectedInvocationException instance.
+     */
+    public RejectedInvocationException()
+    {
+    }
+
+    /**
+     * Create a new RejectedInvocationException instance.
+     * 
+     * @param message
+     */
+    public RejectedInvocationException(String message)
+    {
+        super(message);
+    }
+
+    /**
+     * Create a new RejectedInvocationException instance.
+     * 
+     * @param cause
+     */
+    public RejectedInvocationException(Throwable cause)
+    {
+        super(cause);
+    }
+
+    /**
+     * Create a new RejectedInvocationException instance.
+     * 
+     * @param message
+     * @param cause
+     */
+    public RejectedInvocationException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+
+/**
+ * An {@link AdaptiveConcurrencyInterceptor} caps concurrent invocations like a {@link BulkheadInterceptor}, but tunes
+ * its limit from the latencies it observes around {@link Invocation#proceed()}, using the gradient algorithm: after
+ * each invocation the limit moves towards {@code limit * (noLoadRtt / rtt) + sqrt(limit)}, where {@code rtt} is a
+ * smoothed average of the recent latencies and {@code noLoadRtt} the minimum latency observed, re-probed every 1000
+ * samples. Rising latency, a sign of queueing downstream, thus shrinks the limit, while steady latency lets it grow;
+ * it only grows while at least half of it is in use. Invocations beyond the limit wait up to the configured time for
+ * a permit, or are rejected with {@link RejectedInvocationException}.
+ * <p>
+ * Permits are taken and returned with atomic operations; only invocations that actually wait, and the threads handing
+ * them a permit, meet on a lock. The limit is re-estimated by whichever finishing invocation finds the estimator free,
+ * so under heavy contention some latency samples are skipped rather than queued for.
+ * 
+ * @since 2.1
+ */
+public class AdaptiveConcurrencyInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int PROBE_INTERVAL = 1000;
+    private static final double RTT_SMOOTHING = 0.2;
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+
+    private final transient AtomicInteger inFlight = new AtomicInteger();
+    private final transient AtomicInteger waiting = new AtomicInteger();
+    private final transient ReentrantLock waitLock = new ReentrantLock();
+    private final transient Condition permitReleased = waitLock.newCondition();
+
+    private final transient ReentrantLock estimatorLock = new ReentrantLock();
+
+    // written under estimatorLock:
+    private transient volatile double limit;
+    private transient volatile long noLoadRtt = Long.MAX_VALUE;
+    private transient volatile double rtt;
+    private transient int samples;
+
+    private final transient AtomicLong rejectedCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new AdaptiveConcurrencyInterceptor instance rejecting invocations beyond the limit without waiting.
+     * 
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     */
+    public AdaptiveConcurrencyInterceptor(int initialLimit, int minLimit, int maxLimit)
+    {
+        this(initialLimit, minLimit, maxLimit, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new AdaptiveConcurrencyInterceptor instance.
+     * 
+     * @param initialLimit
+     *            concurrency limit before any latency has been observed
+     * @param minLimit
+     *            lower bound of the limit
+     * @param maxLimit
+     *            upper bound of the limit
+     * @param maxWait
+     *            how long an invocation may wait for a permit; {@code 0} to reject at once
+     * @param unit
+     */
+    public AdaptiveConcurrencyInterceptor(int initialLimit, int minLimit, int maxLimit, long maxWait, TimeUnit unit)
+    {
+        Validate.isTrue(minLimit > 0, "Minimum limit must be positive.");
+        Validate.isTrue(minLimit <= initialLimit && initialLimit <= maxLimit,
+                "Initial limit must lie between minimum and maximum limits.");
+        Validate.isTrue(maxWait >= 0L, "Maximum wait cannot be negative.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.limit = initialLimit;
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        acquire();
+        final long start = System.nanoTime();
+        try
+        {
+            return invocation.proceed();
+        }
+        finally
+        {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the current concurrency limit.
+     * 
+     * @return int
+     */
+    public int getLimit()
+    {
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of invocations currently proceeding.
+     * 
+     * @return int
+     */
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /**
+     * Get the smoothed recent latency.
+     * 
+     * @param unit
+     * @return long; {@code 0} if no latency has been observed
+     */
+    public long getRtt(TimeUnit unit)
+    {
+        return unit.convert((long) rtt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the estimated latency without load, i.e. the minimum latency observed since the last probe.
+     * 
+     * @param unit
+     * @return long; {@code 0} if no latency has been observed
+     */
+    public long getNoLoadRtt(TimeUnit unit)
+    {
+        final long current = noLoadRtt;
+        return current == Long.MAX_VALUE ? 0L : unit.convert(current, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of invocations rejected.
+     * 
+     * @return long
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    private boolean tryAcquire()
+    {
+        for (;;)
+        {
+            final int current = inFlight.get();
+            if (current >= (int) limit)
+            {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1))
+            {
+                return true;
+            }
+        }
+    }
+
+    private void acquire() throws InterruptedException
+    {
+        if (tryAcquire() || maxWaitNanos > 0L && awaitPermit())
+        {
+            return;
+        }
+        rejectedCount.incrementAndGet();
+        throw new RejectedInvocationException(String.format("Concurrency limit of %d reached.",
+                Integer.valueOf((int) limit)));
+    }
+
+    private boolean awaitPermit() throws InterruptedException
+    {
+        boolean acquired = false;
+        waitLock.lockInterruptibly();
+        try
+        {
+            // announce ourselves before trying again, so that a permit released meanwhile is signalled to us:
+            waiting.incrementAndGet();
+            long remaining = maxWaitNanos;
+            while (!(acquired = tryAcquire()) && remaining > 0L)
+            {
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            return acquired;
+        }
+        finally
+        {
+            waiting.decrementAndGet();
+            if (!acquired && inFlight.get() < (int) limit)
+            {
+                // pass on a signal we may have consumed without using it:
+                permitReleased.signal();
+            }
+            waitLock.unlock();
+        }
+    }
+
+    private void release(long sample)
+    {
+        final int previous = inFlight.getAndDecrement();
+        final int previousLimit = (int) limit;
+        if (estimatorLock.tryLock())
+        {
+            try
+            {
+                estimate(previous * 2 >= previousLimit, Math.max(1L, sample));
+            }
+            finally
+            {
+                estimatorLock.unlock();
+            }
+        }
+        if (waiting.get() > 0)
+        {
+            waitLock.lock();
+            try
+            {
+                if ((int) limit > previousLimit)
+                {
+                    permitReleased.signalAll();
+                }
+                else
+                {
+                    permitReleased.signal();
+                }
+            }
+            finally
+            {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private void estimate(boolean saturated, long sample)
+    {
+        if (++samples % PROBE_INTERVAL == 0)
+        {
+            // forget the old minimum, in case the downstream's baseline latency has risen:
+            noLoadRtt = sample;
+        }
+        else
+        {
+            noLoadRtt = Math.min(noLoadRtt, sample);
+        }
+        rtt = rtt == 0.0 ? sample : rtt * (1.0 - RTT_SMOOTHING) + sample * RTT_SMOOTHING;
+
+        final double current = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, noLoadRtt / rtt));
+        double target = current * gradient + Math.sqrt(current);
+        if (!saturated)
+        {
+            target = Math.min(target, current);
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, current * (1.0 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING));
+    }
+
+    private Object readResolve()
+    {
+        return new AdaptiveConcurrencyInterceptor(initialLimit, minLimit, maxLimit, maxWaitNanos,
+                TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * An {@link AsynchronousInterceptor} runs {@link Invocation#proceed()} on an {@link Executor} for methods declared to
+ * return {@link Future} (or another subtype of {@link Future} that {@link FutureTask} implements, such as
+ * {@link java.util.concurrent.RunnableFuture}), immediately returning a future completed with
+ * the target's result. If the target itself returns a {@link Future}, its outcome is passed on; an exception thrown by
+ * the target surfaces as the cause of the {@link ExecutionException} thrown by {@link Future#get()}. Invocations of
+ * other methods simply proceed on the calling thread.
+ * <p>
+ * The executor may be chosen per method through {@link #when(InvocationMatcher, Executor)}; the first matching case
+ * wins. Unmatched invocations use the default executor given at construction or, if none, a shared executor running
+ * each task on a new virtual thread where the platform supports them, and on a cached pool of daemon threads
+ * otherwise.
+ * </p>
+ * <p>
+ * Executors are runtime resources and are not serialized, and neither are the cases, which exist only to pick an
+ * executor: a deserialized {@link AsynchronousInterceptor} runs all invocations on the shared default executor, and
+ * cases must be added again through {@link #when(InvocationMatcher, Executor)} if needed.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class AsynchronousInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final transient Executor defaultExecutor;
+
+    private final transient List<Pair<InvocationMatcher, Executor>> cases
+        = new CopyOnWriteArrayList<Pair<InvocationMatcher, Executor>>();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new AsynchronousInterceptor instance using the shared default executor.
+     */
+    public AsynchronousInterceptor()
+    {
+        this(null);
+    }
+
+    /**
+     * Create a new AsynchronousInterceptor instance.
+     * 
+     * @param defaultExecutor
+     *            executor for invocations matching no case; {@code null} for the shared default executor
+     */
+    public AsynchronousInterceptor(Executor defaultExecutor)
+    {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(final Invocation invocation) throws Throwable
+    {
+        if (!isAsynchronous(invocation.getMethod()))
+        {
+            return invocation.proceed();
+        }
+        final FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                final Object result;
+                try
+                {
+                    result = invocation.proceed();
+                }
+                catch (Exception e)
+                {
+                    throw e;
+                }
+                catch (Throwable t)
+                {
+                    throw rethrow(t);
+                }
+                if (result instanceof Future<?>)
+                {
+                    try
+                    {
+                        return ((Future<?>) result).get();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        throw rethrow(e.getCause());
+                    }
+                }
+                return result;
+            }
+        });
+        getExecutor(invocation).execute(task);
+        return task;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Run invocations matched by {@code matcher} on {@code executor}.
+     * 
+     * @param matcher
+     * @param executor
+     * @return this
+     */
+    public AsynchronousInterceptor when(InvocationMatcher matcher, Executor executor)
+    {
+        cases.add(new ImmutablePair<InvocationMatcher, Executor>(Validate.notNull(matcher, "Matcher cannot be null."),
+                Validate.notNull(executor, "Executor cannot be null.")));
+        return this;
+    }
+
+    private Executor getExecutor(Invocation invocation)
+    {
+        for (Pair<InvocationMatcher, Executor> currentCase : cases)
+        {
+            if (currentCase.getLeft().matches(invocation))
+            {
+                return currentCase.getRight();
+            }
+        }
+        return defaultExecutor == null ? DefaultExecutorHolder.INSTANCE : defaultExecutor;
+    }
+
+    private static boolean isAsynchronous(Method method)
+    {
+        // e.g. Runnable is implemented by FutureTask, but a caller expecting one must not receive a running task:
+        final Class<?> returnType = method.getReturnType();
+        return Future.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(FutureTask.class);
+    }
+
+    private Object readResolve()
+    {
+        return new AsynchronousInterceptor();
+    }
+
+    /**
+     * Get {@code t} as an exception to throw from {@link Callable#call()}; errors are thrown directly.
+     */
+    private static Exception rethrow(Throwable t)
+    {
+        if (t instanceof Exception)
+        {
+            return (Exception) t;
+        }
+        if (t instanceof Error)
+        {
+            throw (Error) t;
+        }
+        return new ExecutionException(t);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Lazily created shared default executor.
+     */
+    private static final class DefaultExecutorHolder
+    {
+        static final Executor INSTANCE = createDefaultExecutor();
+
+        private static Executor createDefaultExecutor()
+        {
+            try
+            {
+                // Java 21+:
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (Exception e)
+            {
+                return Executors.newCachedThreadPool(new ThreadFactory()
+                {
+                    private final AtomicInteger threadNumber = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        final Thread result = new Thread(r, AsynchronousInterceptor.class.getSimpleName() + "-"
+                                + threadNumber.incrementAndGet());
+                        result.setDaemon(true);
+                        return result;
+                    }
+                });
+            }
+        }
+    }
+}
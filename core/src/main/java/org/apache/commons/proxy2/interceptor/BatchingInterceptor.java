@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.InvokerException;
+import org.apache.commons.proxy2.impl.MethodSignature;
+
+/**
+ * A {@link BatchingInterceptor} collects concurrent invocations of a single-key method, such as {@code get(id)}, and
+ * answers them all with one invocation of a bulk method, such as {@code getAll(Collection)}, on the invocation's
+ * proxy. The bulk method takes a {@link java.util.Collection} (or {@link List}) of keys and returns a {@link Map} from
+ * key to value; each caller receives the value mapped to its own key, or {@code null} if there is none (an
+ * {@link InvokerException} if the single-key method returns a primitive). If the bulk invocation throws, every caller
+ * of the batch receives the exception.
+ * <p>
+ * The first invocation of a batch waits up to the configured window for further invocations to join, then performs
+ * the bulk invocation on its own thread while the others wait for their results; a batch reaching the maximum size is
+ * dispatched at once; so is a batch whose first invocation is interrupted while waiting, after which that invocation's
+ * thread is interrupted again. Equal keys within a batch are requested once. Invocations of any other method,
+ * including the bulk method itself, simply proceed.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class BatchingInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Class<?> declaringClass;
+    private final MethodSignature singleSignature;
+    private final MethodSignature bulkSignature;
+
+    private final transient Method singleMethod;
+    private final transient Method bulkMethod;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final transient Object lock = new Object();
+    private transient Batch current;
+
+    private final transient Histogram batchSizes = new Histogram();
+    private final transient Histogram bulkLatencies = new Histogram();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new BatchingInterceptor instance.
+     * 
+     * @param singleMethod
+     *            method taking one key argument
+     * @param bulkMethod
+     *            method taking a collection of keys and returning a map from key to value
+     * @param window
+     *            how long the first invocation of a batch waits for others to join
+     * @param unit
+     * @param maxBatchSize
+     *            number of distinct keys at which a batch is dispatched without waiting further
+     */
+    public BatchingInterceptor(Method singleMethod, Method bulkMethod, long window, TimeUnit unit, int maxBatchSize)
+    {
+        Validate.notNull(singleMethod, "Single method cannot be null.");
+        Validate.notNull(bulkMethod, "Bulk method cannot be null.");
+        Validate.isTrue(singleMethod.getParameterTypes().length == 1, "%s does not take exactly one argument.",
+                singleMethod);
+        Validate.isTrue(bulkMethod.getParameterTypes().length == 1
+                && bulkMethod.getParameterTypes()[0].isAssignableFrom(ArrayList.class),
+                "%s does not take a single collection argument.", bulkMethod);
+        Validate.isTrue(Map.class.isAssignableFrom(bulkMethod.getReturnType()), "%s does not return a map.",
+                bulkMethod);
+        Validate.isTrue(window >= 0L, "Window cannot be negative.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        Validate.isTrue(maxBatchSize > 0, "Maximum batch size must be positive.");
+        Validate.isTrue(bulkMethod.getDeclaringClass().isAssignableFrom(singleMethod.getDeclaringClass()),
+                "%s cannot be invoked on the proxies of %s.", bulkMethod, singleMethod);
+        this.declaringClass = singleMethod.getDeclaringClass();
+        this.singleSignature = new MethodSignature(singleMethod);
+        this.bulkSignature = new MethodSignature(bulkMethod);
+        this.singleMethod = singleMethod;
+        this.bulkMethod = bulkMethod;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        if (!singleMethod.equals(invocation.getMethod()))
+        {
+            return invocation.proceed();
+        }
+        final Object key = invocation.getArguments()[0];
+        final Batch batch;
+        final boolean leader;
+        synchronized (lock)
+        {
+            leader = current == null;
+            if (leader)
+            {
+                current = new Batch();
+            }
+            batch = current;
+            batch.add(key);
+            if (batch.size() >= maxBatchSize)
+            {
+                current = null;
+                batch.full.countDown();
+            }
+        }
+        boolean interrupted = false;
+        if (leader)
+        {
+            try
+            {
+                batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+            finally
+            {
+                // whatever happens, the others of the batch must not be left waiting:
+                synchronized (lock)
+                {
+                    if (current == batch)
+                    {
+                        current = null;
+                    }
+                }
+                dispatch(invocation.getProxy(), batch);
+            }
+        }
+        final Object result;
+        try
+        {
+            result = batch.get(key);
+        }
+        finally
+        {
+            // re-assert the interrupt only now, as waiting for the (already completed) batch would throw:
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (result == null && singleMethod.getReturnType().isPrimitive())
+        {
+            throw new InvokerException(String.format("%s returned no value for key %s, which %s cannot return.",
+                    bulkMethod, key, singleMethod));
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the distribution of batch sizes, in distinct keys per bulk invocation.
+     * 
+     * @return {@link Histogram}
+     */
+    public Histogram getBatchSizes()
+    {
+        return batchSizes;
+    }
+
+    /**
+     * Get the distribution of bulk invocation latencies, in nanoseconds.
+     * 
+     * @return {@link Histogram}
+     */
+    public Histogram getBulkLatencies()
+    {
+        return bulkLatencies;
+    }
+
+    private void dispatch(Object proxy, Batch batch)
+    {
+        // the batch is closed: no further keys can be added
+        final List<Object> keys = new ArrayList<Object>(batch.results.keySet());
+        batchSizes.record(keys.size());
+        final long start = System.nanoTime();
+        try
+        {
+            batch.complete((Map<?, ?>) bulkMethod.invoke(proxy, keys), null);
+        }
+        catch (InvocationTargetException e)
+        {
+            batch.complete(null, e.getTargetException());
+        }
+        catch (Throwable t)
+        {
+            batch.complete(null, t);
+        }
+        finally
+        {
+            bulkLatencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new BatchingInterceptor(singleSignature.toMethod(declaringClass), bulkSignature.toMethod(declaringClass),
+                windowNanos, TimeUnit.NANOSECONDS, maxBatchSize);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static final class Batch
+    {
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final Map<Object, Object> results = new LinkedHashMap<Object, Object>();
+        private Throwable failure;
+
+        void add(Object key)
+        {
+            results.put(key, null);
+        }
+
+        int size()
+        {
+            return results.size();
+        }
+
+        void complete(Map<?, ?> values, Throwable failure)
+        {
+            if (values != null)
+            {
+                for (Map.Entry<Object, Object> entry : results.entrySet())
+                {
+                    entry.setValue(values.get(entry.getKey()));
+                }
+            }
+            this.failure = failure;
+            done.countDown();
+        }
+
+        Object get(Object key) throws Throwable
+        {
+            done.await();
+            if (failure != null)
+            {
+                throw failure;
+            }
+            return results.get(key);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+
+/**
+ * A {@link BulkheadInterceptor} caps the number of invocations proceeding concurrently through it. An invocation
+ * arriving while the cap is reached waits up to the configured time for another to complete, or is rejected at once
+ * if that time is zero; rejected invocations throw {@link RejectedInvocationException}. To cap methods separately,
+ * register one instance per method with a {@link SwitchInterceptor}.
+ * 
+ * @since 2.1
+ */
+public class BulkheadInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+
+    private final transient Semaphore permits;
+
+    private final transient AtomicLong rejectedCount = new AtomicLong();
+    private final transient AtomicLong queuedCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new BulkheadInterceptor instance rejecting invocations beyond the cap without waiting.
+     * 
+     * @param maxConcurrent
+     */
+    public BulkheadInterceptor(int maxConcurrent)
+    {
+        this(maxConcurrent, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new BulkheadInterceptor instance.
+     * 
+     * @param maxConcurrent
+     *            maximum number of invocations proceeding concurrently
+     * @param maxWait
+     *            how long an invocation may wait for a permit; {@code 0} to reject at once
+     * @param unit
+     */
+    public BulkheadInterceptor(int maxConcurrent, long maxWait, TimeUnit unit)
+    {
+        Validate.isTrue(maxConcurrent > 0, "Maximum concurrency must be positive.");
+        Validate.isTrue(maxWait >= 0L, "Maximum wait cannot be negative.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        if (!permits.tryAcquire())
+        {
+            if (maxWaitNanos == 0L)
+            {
+                throw reject();
+            }
+            queuedCount.incrementAndGet();
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS))
+            {
+                throw reject();
+            }
+        }
+        try
+        {
+            return invocation.proceed();
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the maximum number of invocations proceeding concurrently.
+     * 
+     * @return int
+     */
+    public int getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    /**
+     * Get the number of invocations currently proceeding.
+     * 
+     * @return int
+     */
+    public int getActiveCount()
+    {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of invocations rejected.
+     * 
+     * @return long
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the number of invocations that had to wait for a permit, whether or not they obtained one.
+     * 
+     * @return long
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    private RejectedInvocationException reject()
+    {
+        rejectedCount.incrementAndGet();
+        return new RejectedInvocationException(String.format("Concurrency limit of %d reached.",
+                Integer.valueOf(maxConcurrent)));
+    }
+
+    private Object readResolve()
+    {
+        return new BulkheadInterceptor(maxConcurrent, maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Lock-free histogram of non-negative {@code long} values with log-linear buckets: values below 8 are counted exactly,
+ * and each larger power-of-two range {@code [2^e, 2^(e+1))} is split into 8 equal buckets. Percentiles are therefore
+ * approximate, reported as the upper bound of the bucket they fall in, which exceeds the exact value by less than
+ * 12.5%. A histogram may be limited to a highest trackable value, sparing the buckets above it; larger values are
+ * counted in the last bucket, and percentiles falling there are reported as the maximum.
+ * 
+ * @since 2.1
+ */
+public final class Histogram
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // sum and max follow the buckets in the same array, padded so that they do not share a cache line with whatever
+    // is allocated next:
+    private static final int SUM = 0;
+    private static final int MAX = 1;
+    private static final int PADDING = 8;
+
+    private final int buckets;
+    private final AtomicLongArray counts;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new Histogram instance tracking all non-negative {@code long} values.
+     */
+    public Histogram()
+    {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a new Histogram instance.
+     * 
+     * @param highestTrackableValue
+     *            largest value given a bucket of its own; at least 8
+     */
+    public Histogram(long highestTrackableValue)
+    {
+        Validate.isTrue(highestTrackableValue >= SUB_BUCKETS, "Highest trackable value must be at least %d.",
+                SUB_BUCKETS);
+        this.buckets = bucket(highestTrackableValue) + 1;
+        this.counts = new AtomicLongArray(buckets + 2 + PADDING);
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Record {@code value}.
+     * 
+     * @param value
+     *            non-negative value
+     */
+    public void record(long value)
+    {
+        Validate.isTrue(value >= 0L, "Value cannot be negative.");
+        recordUnchecked(value);
+    }
+
+    /**
+     * Record {@code value}, known to be non-negative.
+     */
+    void recordUnchecked(long value)
+    {
+        counts.incrementAndGet(Math.min(bucket(value), buckets - 1));
+        counts.addAndGet(buckets + SUM, value);
+        // a plain read suffices almost always, as the maximum rarely changes:
+        long currentMax = counts.get(buckets + MAX);
+        while (value > currentMax && !counts.compareAndSet(buckets + MAX, currentMax, value))
+        {
+            currentMax = counts.get(buckets + MAX);
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     * 
+     * @return long
+     */
+    public long getCount()
+    {
+        long result = 0L;
+        for (int i = 0; i < buckets; i++)
+        {
+            result += counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Get the largest recorded value.
+     * 
+     * @return long; {@code 0} if no value has been recorded
+     */
+    public long getMax()
+    {
+        return counts.get(buckets + MAX);
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     * 
+     * @return double; {@code 0} if no value has been recorded
+     */
+    public double getMean()
+    {
+        final long n = getCount();
+        return n == 0L ? 0.0 : (double) counts.get(buckets + SUM) / n;
+    }
+
+    /**
+     * Get an upper bound of the value below which {@code percentile} percent of the recorded values fall.
+     * 
+     * @param percentile
+     *            between 0 and 100
+     * @return long; {@code 0} if no value has been recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        Validate.isTrue(percentile >= 0.0 && percentile <= 100.0, "Percentile must be between 0 and 100.");
+        final long[] snapshot = getBucketCounts();
+        long total = 0L;
+        for (long bucketCount : snapshot)
+        {
+            total += bucketCount;
+        }
+        if (total == 0L)
+        {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < buckets - 1; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(getMax(), upperBound(i));
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Get a snapshot of the bucket counts.
+     * 
+     * @return long[], indexed by bucket
+     */
+    public long[] getBucketCounts()
+    {
+        final long[] result = new long[buckets];
+        for (int i = 0; i < buckets; i++)
+        {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset()
+    {
+        drain();
+    }
+
+    /**
+     * Clear all recorded values.
+     * 
+     * @return the number of values cleared
+     */
+    long drain()
+    {
+        long result = 0L;
+        for (int i = 0; i < buckets; i++)
+        {
+            result += counts.getAndSet(i, 0L);
+        }
+        counts.set(buckets + SUM, 0L);
+        counts.set(buckets + MAX, 0L);
+        return result;
+    }
+
+    /**
+     * Add the values recorded by {@code other}, which must have the same highest trackable value, to this histogram.
+     */
+    void add(Histogram other)
+    {
+        Validate.isTrue(other.buckets == buckets, "Histograms have different ranges.");
+        for (int i = 0; i < buckets; i++)
+        {
+            final long bucketCount = other.counts.get(i);
+            if (bucketCount != 0L)
+            {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        counts.addAndGet(buckets + SUM, other.counts.get(buckets + SUM));
+        final long otherMax = other.getMax();
+        long currentMax = getMax();
+        while (otherMax > currentMax && !counts.compareAndSet(buckets + MAX, currentMax, otherMax))
+        {
+            currentMax = getMax();
+        }
+    }
+
+    private static int bucket(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1L);
+    }
+}
@@ -17,6 +17,8 @@
 
 package org.apache.commons.proxy2.interceptor;
 
+import java.util.concurrent.Executor;
+
 import org.apache.commons.proxy2.Interceptor;
 import org.apache.commons.proxy2.Invoker;
 import org.apache.commons.proxy2.ObjectProvider;
@@ -88,6 +90,32 @@ public final class InterceptorUtils
         return new InvokerInterceptor(invoker);
     }
 
+    /**
+     * Creates an {@link Interceptor} which runs {@link java.util.concurrent.Future}-returning methods on
+     * {@code executor}.
+     * 
+     * @param executor
+     *            the executor
+     * @return asynchronous {@link Interceptor}
+     */
+    public static AsynchronousInterceptor asynchronous(Executor executor)
+    {
+        return new AsynchronousInterceptor(executor);
+    }
+
+    /**
+     * Creates an {@link Interceptor} which caches the result of each distinct invocation, holding at most
+     * {@code maxSize} results.
+     * 
+     * @param maxSize
+     *            maximum number of cached results
+     * @return memoizing {@link Interceptor}
+     */
+    public static MemoizingInterceptor memoizing(int maxSize)
+    {
+        return new MemoizingInterceptor(maxSize);
+    }
+
     //******************************************************************************************************************
     // Constructors
     //******************************************************************************************************************
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * Key identifying an invocation by method and (deeply compared) arguments, with the hash code computed once; shared by
+ * the caching interceptors of this package and by {@link org.apache.commons.proxy2.stub.StubSwitchInterceptor}.
+ * 
+ * @since 2.1
+ */
+public final class InvocationKey
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Method method;
+    private final Object[] arguments;
+    private final int hashCode;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new InvocationKey instance holding a copy of {@code arguments}, suitable for storing in a map.
+     * 
+     * @param method
+     * @param arguments
+     */
+    public InvocationKey(Method method, Object[] arguments)
+    {
+        this(method, arguments, true);
+    }
+
+    private InvocationKey(Method method, Object[] arguments, boolean copy)
+    {
+        this.method = method;
+        this.arguments = ArrayUtils.nullToEmpty(copy ? ArrayUtils.clone(arguments) : arguments);
+        this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.arguments);
+    }
+
+    //******************************************************************************************************************
+    // Static Methods
+    //******************************************************************************************************************
+
+    /**
+     * Create a key sharing {@code arguments} instead of copying them, to look up an invocation without allocating a
+     * copy of its arguments. Such a key must not be stored.
+     * 
+     * @param method
+     * @param arguments
+     * @return InvocationKey
+     */
+    public static InvocationKey forLookup(Method method, Object[] arguments)
+    {
+        return new InvocationKey(method, arguments, false);
+    }
+
+    //******************************************************************************************************************
+    // Canonical Methods
+    //******************************************************************************************************************
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this)
+        {
+            return true;
+        }
+        if (!(o instanceof InvocationKey))
+        {
+            return false;
+        }
+        final InvocationKey other = (InvocationKey) o;
+        return hashCode == other.hashCode && method.equals(other.method)
+                && Arrays.deepEquals(arguments, other.arguments);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * A {@link MemoizingInterceptor} caches the value returned by {@link Invocation#proceed()}, keyed by method and
+ * (deeply compared) arguments, and returns the cached value for subsequent equal invocations. Invocations that throw
+ * are not cached. The cache holds at most {@code maxSize} entries, evicting approximately the least recently used, and
+ * entries may optionally expire a fixed time after they were cached. Only invocations accepted by the
+ * {@link InvocationMatcher}, if any, are memoized; all others simply proceed.
+ * <p>
+ * To keep concurrent callers from serializing on one lock, larger caches are split into independently locked
+ * segments, selected by key hash, each evicting its own least recently used entry; small caches use a single segment
+ * and thus exact LRU order.
+ * </p>
+ * <p>
+ * Intended for expensive methods without side effects whose arguments are effectively immutable. Concurrent misses for
+ * the same key may each proceed; the last result is kept.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class MemoizingInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Minimum capacity of a segment; caches smaller than twice this size are not split.
+     */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    /**
+     * Maximum number of segments.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final InvocationMatcher matcher;
+    private final int maxSize;
+    private final long timeToLiveNanos;
+
+    private final transient Segment[] segments;
+
+    private final transient AtomicLong hitCount = new AtomicLong();
+    private final transient AtomicLong missCount = new AtomicLong();
+    private final transient AtomicLong evictionCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new MemoizingInterceptor instance memoizing all invocations, without expiry.
+     * 
+     * @param maxSize
+     */
+    public MemoizingInterceptor(int maxSize)
+    {
+        this(null, maxSize);
+    }
+
+    /**
+     * Create a new MemoizingInterceptor instance without expiry.
+     * 
+     * @param matcher
+     *            selects the invocations to memoize; {@code null} memoizes all
+     * @param maxSize
+     */
+    public MemoizingInterceptor(InvocationMatcher matcher, int maxSize)
+    {
+        this(matcher, maxSize, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new MemoizingInterceptor instance.
+     * 
+     * @param matcher
+     *            selects the invocations to memoize; {@code null} memoizes all
+     * @param maxSize
+     *            maximum number of cached results
+     * @param timeToLive
+     *            time after which a cached result expires; {@code 0} for no expiry
+     * @param unit
+     */
+    public MemoizingInterceptor(InvocationMatcher matcher, int maxSize, long timeToLive, TimeUnit unit)
+    {
+        Validate.isTrue(maxSize > 0, "Maximum size must be positive.");
+        Validate.isTrue(timeToLive >= 0L, "Time to live cannot be negative.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        this.matcher = matcher;
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= maxSize)
+        {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++)
+        {
+            // spread the remainder, so that the capacities add up to exactly maxSize:
+            segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        if (matcher != null && !matcher.matches(invocation))
+        {
+            return invocation.proceed();
+        }
+        final InvocationKey key = new InvocationKey(invocation.getMethod(), invocation.getArguments());
+        final Segment segment = segmentFor(key);
+        final long now = System.nanoTime();
+        synchronized (segment)
+        {
+            final Entry entry = segment.get(key);
+            if (entry != null)
+            {
+                if (!entry.isExpired(now))
+                {
+                    hitCount.incrementAndGet();
+                    return entry.value;
+                }
+                segment.remove(key);
+                evictionCount.incrementAndGet();
+            }
+        }
+        missCount.incrementAndGet();
+        final Object result = invocation.proceed();
+        final Entry entry = new Entry(result, timeToLiveNanos == 0L ? 0L : System.nanoTime() + timeToLiveNanos);
+        synchronized (segment)
+        {
+            segment.put(key, entry);
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Discard all cached results.
+     */
+    public void clear()
+    {
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached results, including any that have expired but not yet been discarded.
+     * 
+     * @return int
+     */
+    public int size()
+    {
+        int result = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the maximum number of cached results.
+     * 
+     * @return int
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of invocations answered from the cache.
+     * 
+     * @return long
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of memoized invocations that had to proceed.
+     * 
+     * @return long
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of cached results discarded because the cache was full or because they had expired.
+     * 
+     * @return long
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get the fraction of memoized invocations answered from the cache.
+     * 
+     * @return double between 0 and 1; 0 if nothing has been memoized yet
+     */
+    public double getHitRate()
+    {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0L ? 0.0 : (double) hits / total;
+    }
+
+    private Segment segmentFor(InvocationKey key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private Object readResolve()
+    {
+        return new MemoizingInterceptor(matcher, maxSize, timeToLiveNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Access-ordered map of one segment, guarded by itself.
+     */
+    private final class Segment extends LinkedHashMap<InvocationKey, Entry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InvocationKey, Entry> eldest)
+        {
+            if (size() > capacity)
+            {
+                evictionCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Object value;
+        private final long expiresAt;
+
+        Entry(Object value, long expiresAt)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now)
+        {
+            return expiresAt != 0L && now - expiresAt >= 0L;
+        }
+    }
+}
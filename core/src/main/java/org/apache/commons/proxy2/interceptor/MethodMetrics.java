@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Call, error and in-flight counts and a latency {@link Histogram} (in nanoseconds) for one method, as recorded by a
+ * {@link MetricsInterceptor}. Recording is spread over a number of stripes, chosen by calling thread, so that threads
+ * invoking the same method rarely contend; {@link #snapshot()} merges the stripes. A stripe is only allocated once a
+ * thread first records into it, and its latency histogram tracks values up to an hour, longer latencies being counted
+ * in its last bucket.
+ * <p>
+ * Every invocation is counted, but only one in every {@link MetricsRegistry#getTimingInterval() timing interval}
+ * invocations on a stripe is timed, so the latency histogram holds a sample of the latencies. An untimed invocation
+ * costs two atomic additions on its stripe, counting its start and its end; in-flight invocations are those started
+ * but not yet ended.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public final class MethodMetrics
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.HOURS.toNanos(1L);
+
+    private final Method method;
+    private final long timingMask;
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<Stripe>(STRIPES);
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    MethodMetrics(Method method, int timingInterval)
+    {
+        this.method = method;
+        this.timingMask = timingInterval - 1;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the method measured.
+     * 
+     * @return Method
+     */
+    public Method getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Take a snapshot of the values recorded so far.
+     * 
+     * @return {@link Snapshot}
+     */
+    public Snapshot snapshot()
+    {
+        final Histogram latencies = new Histogram(HIGHEST_TRACKABLE_LATENCY);
+        long calls = 0L;
+        long errors = 0L;
+        long inFlight = 0L;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            final Stripe stripe = stripes.get(i);
+            if (stripe != null)
+            {
+                // read ends before starts, so that an invocation ending meanwhile is not missed in both:
+                final long completed = stripe.counters.get(Stripe.COMPLETED);
+                calls += completed;
+                errors += stripe.counters.get(Stripe.ERRORS);
+                inFlight += stripe.counters.get(Stripe.STARTED) - completed;
+                latencies.add(stripe.latencies);
+            }
+        }
+        return new Snapshot(method, latencies, calls, errors, (int) Math.max(0L, inFlight));
+    }
+
+    /**
+     * Clear the recorded latencies, call and error counts; in-flight invocations are still tracked.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            final Stripe stripe = stripes.get(i);
+            if (stripe != null)
+            {
+                // forget as many starts as ends are cleared, keeping the difference:
+                stripe.counters.addAndGet(Stripe.STARTED, -stripe.counters.getAndSet(Stripe.COMPLETED, 0L));
+                stripe.counters.set(Stripe.ERRORS, 0L);
+                stripe.latencies.reset();
+            }
+        }
+    }
+
+    /**
+     * Get the stripe the calling thread records into.
+     * 
+     * @return Stripe
+     */
+    Stripe stripe()
+    {
+        int h = System.identityHashCode(Thread.currentThread());
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        final int index = h & (STRIPES - 1);
+        Stripe result = stripes.get(index);
+        if (result == null)
+        {
+            stripes.compareAndSet(index, null, new Stripe());
+            result = stripes.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Note the start of an invocation.
+     * 
+     * @return whether to time the invocation
+     */
+    boolean start(Stripe stripe)
+    {
+        return (stripe.counters.getAndIncrement(Stripe.STARTED) & timingMask) == 0L;
+    }
+
+    /**
+     * Note the end of an invocation.
+     * 
+     * @param latencyNanos
+     *            negative if the invocation was not timed
+     */
+    void finish(Stripe stripe, long latencyNanos, boolean failed)
+    {
+        if (failed)
+        {
+            stripe.counters.incrementAndGet(Stripe.ERRORS);
+        }
+        if (latencyNanos >= 0L)
+        {
+            stripe.latencies.recordUnchecked(latencyNanos);
+        }
+        stripe.counters.incrementAndGet(Stripe.COMPLETED);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    static final class Stripe
+    {
+        // the counters sit in the middle of a cache line's worth of padding on either side, away from other stripes':
+        private static final int STARTED = 8;
+        private static final int COMPLETED = 9;
+        private static final int ERRORS = 10;
+
+        private final AtomicLongArray counters = new AtomicLongArray(ERRORS + 8);
+        private final Histogram latencies = new Histogram(HIGHEST_TRACKABLE_LATENCY);
+    }
+
+    /**
+     * Point-in-time copy of a {@link MethodMetrics}.
+     */
+    public static final class Snapshot
+    {
+        private final Method method;
+        private final Histogram latencies;
+        private final long callCount;
+        private final long errorCount;
+        private final int inFlight;
+
+        Snapshot(Method method, Histogram latencies, long callCount, long errorCount, int inFlight)
+        {
+            this.method = method;
+            this.latencies = latencies;
+            this.callCount = callCount;
+            this.errorCount = errorCount;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * Get the method measured.
+         * 
+         * @return Method
+         */
+        public Method getMethod()
+        {
+            return method;
+        }
+
+        /**
+         * Get the number of completed invocations.
+         * 
+         * @return long
+         */
+        public long getCallCount()
+        {
+            return callCount;
+        }
+
+        /**
+         * Get the number of completed invocations that threw.
+         * 
+         * @return long
+         */
+        public long getErrorCount()
+        {
+            return errorCount;
+        }
+
+        /**
+         * Get the number of invocations in progress.
+         * 
+         * @return int
+         */
+        public int getInFlight()
+        {
+            return inFlight;
+        }
+
+        /**
+         * Get the sampled latencies of completed invocations, in nanoseconds.
+         * 
+         * @return {@link Histogram}
+         */
+        public Histogram getLatencies()
+        {
+            return latencies;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s: calls=%d, errors=%d, inFlight=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns",
+                    method.getName(), Long.valueOf(getCallCount()), Long.valueOf(errorCount),
+                    Integer.valueOf(inFlight), Double.valueOf(latencies.getMean()),
+                    Long.valueOf(latencies.getValueAtPercentile(50)), Long.valueOf(latencies.getValueAtPercentile(99)),
+                    Long.valueOf(latencies.getMax()));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Holds the {@link MethodMetrics} recorded by one or more {@link MetricsInterceptor}s, one per method. Every
+ * invocation is counted, but only one in every {@link #getTimingInterval() timing interval} invocations is timed, as
+ * reading the clock twice costs more than the rest of the recording.
+ * 
+ * @since 2.1
+ */
+public class MetricsRegistry implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    /**
+     * The default timing interval.
+     */
+    public static final int DEFAULT_TIMING_INTERVAL = 16;
+
+    private final int timingInterval;
+    private final transient ConcurrentMap<Method, MethodMetrics> metrics
+        = new ConcurrentHashMap<Method, MethodMetrics>();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new MetricsRegistry instance timing one in {@value #DEFAULT_TIMING_INTERVAL} invocations.
+     */
+    public MetricsRegistry()
+    {
+        this(DEFAULT_TIMING_INTERVAL);
+    }
+
+    /**
+     * Create a new MetricsRegistry instance.
+     * 
+     * @param timingInterval
+     *            time one in this many invocations of each method; a power of two, 1 to time every invocation
+     */
+    public MetricsRegistry(int timingInterval)
+    {
+        Validate.isTrue(timingInterval > 0 && Integer.bitCount(timingInterval) == 1,
+            "Timing interval must be a positive power of two.");
+        this.timingInterval = timingInterval;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the metrics of {@code method}, creating them if necessary.
+     * 
+     * @param method
+     * @return {@link MethodMetrics}
+     */
+    public MethodMetrics getMetrics(Method method)
+    {
+        MethodMetrics result = metrics.get(method);
+        if (result == null)
+        {
+            result = new MethodMetrics(Validate.notNull(method, "Method cannot be null."), timingInterval);
+            final MethodMetrics existing = metrics.putIfAbsent(method, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of invocations of each method out of which one is timed.
+     * 
+     * @return int
+     */
+    public int getTimingInterval()
+    {
+        return timingInterval;
+    }
+
+    /**
+     * Get the metrics of all methods invoked so far.
+     * 
+     * @return unmodifiable Collection
+     */
+    public Collection<MethodMetrics> getMetrics()
+    {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * Take a snapshot of the metrics of all methods invoked so far.
+     * 
+     * @return Map from method to {@link MethodMetrics.Snapshot}
+     */
+    public Map<Method, MethodMetrics.Snapshot> snapshot()
+    {
+        final Map<Method, MethodMetrics.Snapshot> result = new LinkedHashMap<Method, MethodMetrics.Snapshot>();
+        for (MethodMetrics methodMetrics : metrics.values())
+        {
+            result.put(methodMetrics.getMethod(), methodMetrics.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Reset the metrics of all methods.
+     */
+    public void reset()
+    {
+        for (MethodMetrics methodMetrics : metrics.values())
+        {
+            methodMetrics.reset();
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new MetricsRegistry(timingInterval);
+    }
+}
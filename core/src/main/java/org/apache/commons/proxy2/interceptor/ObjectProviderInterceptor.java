@@ -54,4 +54,19 @@ public class ObjectProviderInterceptor implements Interceptor
     {
         return provider.getObject();
     }
+
+    //******************************************************************************************************************
+    // Getter/Setter Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the provider of the returned values.
+     * 
+     * @return {@link ObjectProvider}
+     * @since 2.1
+     */
+    public ObjectProvider<?> getProvider()
+    {
+        return provider;
+    }
 }
@@ -0,0 +1,575 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.impl.MethodSignature;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * Variant of {@link MemoizingInterceptor} for large results: each result is kept serialized in a {@link ByteBuffer},
+ * by default a direct (off-heap) one, and deserialized again on every hit, so that cached results do not occupy the
+ * heap. The buffer is written as a ring: once it is full, new results overwrite the oldest ones, which bounds the cache
+ * by size in bytes. Results are located through a compact open-addressing index keyed by method and (deeply compared)
+ * arguments.
+ * <p>
+ * Only {@link Serializable} results that fit in the buffer together with their record header are cached;
+ * {@code null} results, results of other types and invocations that throw are not. Each hit returns a fresh copy of the
+ * result.
+ * </p>
+ * <p>
+ * Each record in the buffer also holds its key, written as the declaring class name, the {@link MethodSignature} and
+ * the serialized arguments, plus a checksum. A buffer that outlives the interceptor, such as a
+ * {@link java.nio.MappedByteBuffer} over a file, can thus be handed to a new interceptor, which rebuilds its index from
+ * the intact records it finds, newest first. Results of invocations with non-serializable arguments are cached but not
+ * recovered, and recovery stops at the first damaged record.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class OffHeapMemoizingInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_TABLE_SIZE = 64;
+
+    /**
+     * Buffer header: magic number, ring size and logical head position.
+     */
+    private static final int MAGIC = 0x4F484D31;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Record header: record size, key size and checksum; record trailer: logical start of the record and logical end of
+     * the record written before it, so records can be walked backwards from the head.
+     */
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int RECORD_TRAILER_SIZE = 16;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final InvocationMatcher matcher;
+    private final int capacity;
+
+    private final transient ByteBuffer storage;
+    private final transient int ringSize;
+
+    /** Logical position of the next write; physical position is {@code HEADER_SIZE + head % ringSize}. */
+    private transient long head;
+
+    private transient InvocationKey[] keys = new InvocationKey[INITIAL_TABLE_SIZE];
+    private transient long[] starts = new long[INITIAL_TABLE_SIZE];
+    private transient int[] lengths = new int[INITIAL_TABLE_SIZE];
+    private transient int occupied;
+
+    private final transient AtomicLong hitCount = new AtomicLong();
+    private final transient AtomicLong missCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new OffHeapMemoizingInterceptor instance memoizing all invocations in a direct buffer.
+     * 
+     * @param maxBytes
+     *            size of the buffer
+     */
+    public OffHeapMemoizingInterceptor(int maxBytes)
+    {
+        this(null, maxBytes);
+    }
+
+    /**
+     * Create a new OffHeapMemoizingInterceptor instance using a direct buffer.
+     * 
+     * @param matcher
+     *            selects the invocations to memoize; {@code null} memoizes all
+     * @param maxBytes
+     *            size of the buffer
+     */
+    public OffHeapMemoizingInterceptor(InvocationMatcher matcher, int maxBytes)
+    {
+        this(matcher, ByteBuffer.allocateDirect(validateCapacity(maxBytes)));
+    }
+
+    /**
+     * Create a new OffHeapMemoizingInterceptor instance using {@code storage}, for instance a
+     * {@link java.nio.MappedByteBuffer} to keep results in a memory-mapped file. The whole capacity of {@code storage}
+     * is used, regardless of its position and limit. If {@code storage} already holds the records of an interceptor
+     * with the same capacity, the results they contain are recovered; otherwise it is initialized empty.
+     * 
+     * @param matcher
+     *            selects the invocations to memoize; {@code null} memoizes all
+     * @param storage
+     */
+    public OffHeapMemoizingInterceptor(InvocationMatcher matcher, ByteBuffer storage)
+    {
+        Validate.notNull(storage, "Storage cannot be null.");
+        Validate.isTrue(!storage.isReadOnly(), "Storage cannot be read-only.");
+        this.matcher = matcher;
+        this.capacity = validateCapacity(storage.capacity());
+        this.ringSize = capacity - HEADER_SIZE;
+        this.storage = storage;
+        synchronized (this)
+        {
+            if (!recover())
+            {
+                writeHeader();
+            }
+        }
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        if (matcher != null && !matcher.matches(invocation))
+        {
+            return invocation.proceed();
+        }
+        final InvocationKey key = new InvocationKey(invocation.getMethod(), invocation.getArguments());
+        final byte[] cached = read(key);
+        if (cached != null)
+        {
+            hitCount.incrementAndGet();
+            return SerializationUtils.deserialize(cached);
+        }
+        missCount.incrementAndGet();
+        final Object result = invocation.proceed();
+        if (result instanceof Serializable)
+        {
+            final byte[] bytes;
+            try
+            {
+                bytes = SerializationUtils.serialize((Serializable) result);
+            }
+            catch (SerializationException e)
+            {
+                // not serializable after all (e.g. a non-serializable field); don't cache
+                return result;
+            }
+            if (recordSize(0, bytes.length) <= ringSize)
+            {
+                byte[] keyBytes = encodeKey(invocation.getMethod(), invocation.getArguments());
+                if (recordSize(keyBytes.length, bytes.length) > ringSize)
+                {
+                    // cache it all the same, without making it recoverable:
+                    keyBytes = ArrayUtils.EMPTY_BYTE_ARRAY;
+                }
+                write(key, keyBytes, bytes);
+            }
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the size of the buffer.
+     * 
+     * @return int
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Get the number of invocations answered from the cache.
+     * 
+     * @return long
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of memoized invocations that had to proceed.
+     * 
+     * @return long
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of results currently cached.
+     * 
+     * @return int
+     */
+    public synchronized int size()
+    {
+        int result = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != null && isLive(i))
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discard all cached results.
+     */
+    public synchronized void clear()
+    {
+        keys = new InvocationKey[INITIAL_TABLE_SIZE];
+        starts = new long[INITIAL_TABLE_SIZE];
+        lengths = new int[INITIAL_TABLE_SIZE];
+        occupied = 0;
+        head = 0L;
+        writeHeader();
+    }
+
+    private synchronized byte[] read(InvocationKey key)
+    {
+        final int slot = find(keys, key);
+        if (keys[slot] == null || !isLive(slot))
+        {
+            return null;
+        }
+        final ByteBuffer source = view();
+        final int position = physical(starts[slot]);
+        final int recordSize = source.getInt(position);
+        final byte[] result = new byte[lengths[slot]];
+        source.position(position + recordSize - RECORD_TRAILER_SIZE - result.length);
+        source.get(result);
+        return result;
+    }
+
+    private synchronized void write(InvocationKey key, byte[] keyBytes, byte[] bytes)
+    {
+        final int size = recordSize(keyBytes.length, bytes.length);
+        final long previousEnd = head;
+        int position = (int) (head % ringSize);
+        if (position + size > ringSize)
+        {
+            // don't wrap a record around the end of the buffer; skip to its start:
+            head += ringSize - position;
+            position = 0;
+        }
+        final long start = head;
+        final CRC32 checksum = new CRC32();
+        checksum.update(keyBytes);
+        checksum.update(bytes);
+
+        final ByteBuffer target = view();
+        target.position(HEADER_SIZE + position);
+        target.putInt(size).putInt(keyBytes.length).putInt((int) checksum.getValue());
+        target.put(keyBytes).put(bytes);
+        target.putLong(start).putLong(previousEnd);
+        head += size;
+        target.putLong(8, head);
+
+        index(key, start, bytes.length);
+    }
+
+    private void index(InvocationKey key, long start, int length)
+    {
+        int slot = find(keys, key);
+        if (keys[slot] == null)
+        {
+            if ((occupied + 1) * 4 > keys.length * 3)
+            {
+                rebuildIndex();
+                slot = find(keys, key);
+            }
+            keys[slot] = key;
+            occupied++;
+        }
+        starts[slot] = start;
+        lengths[slot] = length;
+    }
+
+    /**
+     * Rebuild the index from the records in the buffer, walking back from the head recorded in its header.
+     * 
+     * @return whether the buffer held the records of an interceptor of the same capacity
+     */
+    private boolean recover()
+    {
+        final ByteBuffer source = view();
+        if (source.getInt(0) != MAGIC || source.getInt(4) != ringSize || source.getLong(8) < 0L)
+        {
+            return false;
+        }
+        head = source.getLong(8);
+        final long oldest = Math.max(0L, head - ringSize);
+        long end = head;
+        while (end - RECORD_TRAILER_SIZE >= oldest)
+        {
+            final int trailer = physical(end - RECORD_TRAILER_SIZE);
+            final long start = source.getLong(trailer);
+            final long previousEnd = source.getLong(trailer + 8);
+            if (start < oldest || previousEnd > start || start - previousEnd >= ringSize
+                    || end - start < RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE
+                    || start % ringSize + (end - start) > ringSize)
+            {
+                break;
+            }
+            final int position = physical(start);
+            final int keyLength = source.getInt(position + 4);
+            if (source.getInt(position) != end - start || keyLength < 0
+                    || keyLength > end - start - RECORD_HEADER_SIZE - RECORD_TRAILER_SIZE)
+            {
+                break;
+            }
+            final byte[] keyBytes = new byte[keyLength];
+            final byte[] bytes = new byte[(int) (end - start) - RECORD_HEADER_SIZE - RECORD_TRAILER_SIZE - keyLength];
+            source.position(position + RECORD_HEADER_SIZE);
+            source.get(keyBytes);
+            source.get(bytes);
+            final CRC32 checksum = new CRC32();
+            checksum.update(keyBytes);
+            checksum.update(bytes);
+            if (source.getInt(position + 8) != (int) checksum.getValue())
+            {
+                break;
+            }
+            final InvocationKey key = keyLength == 0 ? null : decodeKey(keyBytes);
+            // walking backwards, the first record found for a key is its newest:
+            if (key != null && keys[find(keys, key)] == null)
+            {
+                index(key, start, bytes.length);
+            }
+            end = previousEnd;
+        }
+        return true;
+    }
+
+    private void writeHeader()
+    {
+        final ByteBuffer target = view();
+        target.putInt(0, MAGIC);
+        target.putInt(4, ringSize);
+        target.putLong(8, head);
+    }
+
+    /**
+     * Get a view of the whole storage with independent position, limit and byte order.
+     */
+    private ByteBuffer view()
+    {
+        final ByteBuffer result = storage.duplicate();
+        result.clear();
+        result.order(ByteOrder.BIG_ENDIAN);
+        return result;
+    }
+
+    private int physical(long position)
+    {
+        return HEADER_SIZE + (int) (position % ringSize);
+    }
+
+    /**
+     * Whether the record indexed at {@code slot} has not been overwritten yet.
+     */
+    private boolean isLive(int slot)
+    {
+        return starts[slot] >= head - ringSize;
+    }
+
+    /**
+     * Re-index only the results still live, doubling the table if they fill more than half of it.
+     */
+    private void rebuildIndex()
+    {
+        int live = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != null && isLive(i))
+            {
+                live++;
+            }
+        }
+        final int size = (live + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+        final InvocationKey[] newKeys = new InvocationKey[size];
+        final long[] newStarts = new long[size];
+        final int[] newLengths = new int[size];
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != null && isLive(i))
+            {
+                final int slot = find(newKeys, keys[i]);
+                newKeys[slot] = keys[i];
+                newStarts[slot] = starts[i];
+                newLengths[slot] = lengths[i];
+            }
+        }
+        keys = newKeys;
+        starts = newStarts;
+        lengths = newLengths;
+        occupied = live;
+    }
+
+    /**
+     * Linear probing: find the slot holding {@code key}, or the empty slot where it belongs.
+     */
+    private static int find(InvocationKey[] table, InvocationKey key)
+    {
+        final int mask = table.length - 1;
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        int slot = h & mask;
+        while (table[slot] != null && !table[slot].equals(key))
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int recordSize(int keyLength, int length)
+    {
+        return RECORD_HEADER_SIZE + keyLength + length + RECORD_TRAILER_SIZE;
+    }
+
+    /**
+     * Encode the persistent form of a key; empty if the arguments cannot be serialized.
+     */
+    private static byte[] encodeKey(Method method, Object[] arguments)
+    {
+        try
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeUTF(method.getDeclaringClass().getName());
+            out.writeUTF(new MethodSignature(method).toString());
+            final Object[] values = ArrayUtils.nullToEmpty(arguments);
+            out.writeInt(values.length);
+            for (Object value : values)
+            {
+                out.writeObject(value);
+            }
+            out.close();
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            return ArrayUtils.EMPTY_BYTE_ARRAY;
+        }
+    }
+
+    /**
+     * Decode the persistent form of a key; {@code null} if its method or arguments cannot be resolved here.
+     */
+    private static InvocationKey decodeKey(byte[] keyBytes)
+    {
+        try
+        {
+            final KeyInputStream in = new KeyInputStream(new ByteArrayInputStream(keyBytes));
+            final Class<?> declaringClass = ClassUtils.getClass(in.readUTF());
+            final String signature = in.readUTF();
+            for (Method method : declaringClass.getDeclaredMethods())
+            {
+                if (signature.equals(new MethodSignature(method).toString()))
+                {
+                    in.classLoader = declaringClass.getClassLoader();
+                    final Object[] arguments = new Object[in.readInt()];
+                    for (int i = 0; i < arguments.length; i++)
+                    {
+                        arguments[i] = in.readObject();
+                    }
+                    return new InvocationKey(method, arguments);
+                }
+            }
+            return null;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private static int validateCapacity(int capacity)
+    {
+        Validate.isTrue(capacity > HEADER_SIZE + RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE,
+                "Capacity must exceed %d bytes.", HEADER_SIZE + RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE);
+        return capacity;
+    }
+
+    private Object readResolve()
+    {
+        return new OffHeapMemoizingInterceptor(matcher, capacity);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Resolves the classes of persisted arguments through the class loader of the declaring class first.
+     */
+    private static final class KeyInputStream extends ObjectInputStream
+    {
+        private ClassLoader classLoader;
+
+        KeyInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            if (classLoader != null)
+            {
+                try
+                {
+                    return Class.forName(desc.getName(), false, classLoader);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
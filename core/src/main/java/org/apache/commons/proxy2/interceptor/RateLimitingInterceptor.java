@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+
+/**
+ * A {@link RateLimitingInterceptor} limits the rate of invocations proceeding through it to a number of permits per
+ * period, allowing bursts of up to a configured size. It behaves as a token bucket, implemented lock-free as a single
+ * atomic "theoretical arrival time" advanced by one emission interval per permit. An invocation arriving too early
+ * waits for its slot if that lies within the configured maximum wait, and is otherwise rejected with
+ * {@link RejectedInvocationException}. To limit methods separately, register one instance per method with a
+ * {@link SwitchInterceptor}.
+ * 
+ * @since 2.1
+ */
+public class RateLimitingInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final int permits;
+    private final long periodNanos;
+    private final int burst;
+    private final long maxWaitNanos;
+
+    /** Nanoseconds between permits. */
+    private final long interval;
+
+    /** How far the theoretical arrival time may run ahead of now without waiting. */
+    private final long tolerance;
+
+    private final transient AtomicLong theoreticalArrivalTime = new AtomicLong(Long.MIN_VALUE);
+
+    private final transient AtomicLong rejectedCount = new AtomicLong();
+    private final transient AtomicLong queuedCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new RateLimitingInterceptor instance without bursts, rejecting early invocations without waiting.
+     * 
+     * @param permits
+     * @param period
+     * @param unit
+     */
+    public RateLimitingInterceptor(int permits, long period, TimeUnit unit)
+    {
+        this(permits, period, unit, 1, 0L);
+    }
+
+    /**
+     * Create a new RateLimitingInterceptor instance.
+     * 
+     * @param permits
+     *            number of invocations allowed per period
+     * @param period
+     * @param unit
+     *            unit of {@code period} and {@code maxWait}
+     * @param burst
+     *            number of invocations that may proceed back to back after an idle spell
+     * @param maxWait
+     *            how long an invocation may wait for its slot; {@code 0} to reject at once
+     */
+    public RateLimitingInterceptor(int permits, long period, TimeUnit unit, int burst, long maxWait)
+    {
+        Validate.isTrue(permits > 0, "Permits must be positive.");
+        Validate.isTrue(period > 0L, "Period must be positive.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        Validate.isTrue(burst > 0, "Burst must be positive.");
+        Validate.isTrue(maxWait >= 0L, "Maximum wait cannot be negative.");
+        this.permits = permits;
+        this.periodNanos = unit.toNanos(period);
+        this.burst = burst;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.interval = Math.max(1L, periodNanos / permits);
+        this.tolerance = interval * (burst - 1);
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        final long wait = reserve();
+        if (wait > 0L)
+        {
+            queuedCount.incrementAndGet();
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return invocation.proceed();
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the number of invocations rejected.
+     * 
+     * @return long
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the number of invocations that waited for their slot.
+     * 
+     * @return long
+     */
+    public long getQueuedCount()
+    {
+        return queuedCount.get();
+    }
+
+    /**
+     * Reserve the next slot.
+     * 
+     * @return nanoseconds to wait before proceeding
+     * @throws RejectedInvocationException
+     *             if the slot lies beyond the maximum wait
+     */
+    private long reserve()
+    {
+        while (true)
+        {
+            final long now = System.nanoTime();
+            final long current = theoreticalArrivalTime.get();
+            final long start = current == Long.MIN_VALUE || current - now < 0L ? now : current;
+            final long wait = start - tolerance - now;
+            if (wait > maxWaitNanos)
+            {
+                rejectedCount.incrementAndGet();
+                throw new RejectedInvocationException(String.format("Rate limit of %d per %d ns exceeded.",
+                        Integer.valueOf(permits), Long.valueOf(periodNanos)));
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, start + interval))
+            {
+                return wait;
+            }
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new RateLimitingInterceptor(permits, periodNanos, TimeUnit.NANOSECONDS, burst, maxWaitNanos);
+    }
+}
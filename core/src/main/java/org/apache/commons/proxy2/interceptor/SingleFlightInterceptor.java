@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * A {@link SingleFlightInterceptor} collapses concurrent duplicate invocations: while an invocation with a given method
+ * and (deeply compared) arguments is in flight, further equal invocations do not proceed but wait for it and receive
+ * its result, or its exception. Unlike {@link MemoizingInterceptor}, nothing is retained once the invocation
+ * completes. Only invocations accepted by the {@link InvocationMatcher}, if any, are collapsed; all others simply
+ * proceed.
+ * 
+ * @since 2.1
+ */
+public class SingleFlightInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final InvocationMatcher matcher;
+
+    private final transient ConcurrentMap<InvocationKey, Flight> inFlight
+        = new ConcurrentHashMap<InvocationKey, Flight>();
+
+    private final transient AtomicLong invocationCount = new AtomicLong();
+    private final transient AtomicLong collapsedCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new SingleFlightInterceptor instance collapsing all invocations.
+     */
+    public SingleFlightInterceptor()
+    {
+        this(null);
+    }
+
+    /**
+     * Create a new SingleFlightInterceptor instance.
+     * 
+     * @param matcher
+     *            selects the invocations to collapse; {@code null} collapses all
+     */
+    public SingleFlightInterceptor(InvocationMatcher matcher)
+    {
+        this.matcher = matcher;
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        if (matcher != null && !matcher.matches(invocation))
+        {
+            return invocation.proceed();
+        }
+        invocationCount.incrementAndGet();
+        final InvocationKey key = new InvocationKey(invocation.getMethod(), invocation.getArguments());
+        final Flight flight = new Flight();
+        final Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null)
+        {
+            collapsedCount.incrementAndGet();
+            return existing.get();
+        }
+        try
+        {
+            final Object result = invocation.proceed();
+            flight.value = result;
+            return result;
+        }
+        catch (Throwable t)
+        {
+            flight.failure = t;
+            throw t;
+        }
+        finally
+        {
+            inFlight.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the number of invocations subject to collapsing.
+     * 
+     * @return long
+     */
+    public long getInvocationCount()
+    {
+        return invocationCount.get();
+    }
+
+    /**
+     * Get the number of invocations that waited for an equal in-flight invocation instead of proceeding.
+     * 
+     * @return long
+     */
+    public long getCollapsedCount()
+    {
+        return collapsedCount.get();
+    }
+
+    /**
+     * Get the fraction of invocations that were collapsed.
+     * 
+     * @return double between 0 and 1; 0 if nothing has been invoked yet
+     */
+    public double getCollapseRatio()
+    {
+        final long collapsed = collapsedCount.get();
+        final long total = invocationCount.get();
+        return total == 0L ? 0.0 : (double) collapsed / total;
+    }
+
+    /**
+     * Get the number of distinct invocations currently in flight.
+     * 
+     * @return int
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
+    private Object readResolve()
+    {
+        return new SingleFlightInterceptor(matcher);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static final class Flight
+    {
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // published by done.countDown():
+        private Object value;
+        private Throwable failure;
+
+        Object get() throws Throwable
+        {
+            done.await();
+            if (failure != null)
+            {
+                throw failure;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.reflect.Method;
+
+/**
+ * A completed, sampled invocation recorded by a {@link TracingInterceptor}. Identifiers are lower-case hexadecimal as
+ * in OpenTelemetry: 32 digits for the trace, 16 for spans.
+ * 
+ * @since 2.1
+ */
+public final class Span
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final Method method;
+    private final long startEpochNanos;
+    private final long durationNanos;
+    private final String error;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    Span(String traceId, String spanId, String parentSpanId, Method method, long startEpochNanos,
+            long durationNanos, String error)
+    {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.method = method;
+        this.startEpochNanos = startEpochNanos;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    //******************************************************************************************************************
+    // Getter/Setter Methods
+    //******************************************************************************************************************
+
+    public String getTraceId()
+    {
+        return traceId;
+    }
+
+    public String getSpanId()
+    {
+        return spanId;
+    }
+
+    /**
+     * Get the id of the span of the enclosing traced invocation on the same thread.
+     * 
+     * @return String; {@code null} for a root span
+     */
+    public String getParentSpanId()
+    {
+        return parentSpanId;
+    }
+
+    public Method getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Get the start time, in nanoseconds since the epoch (with millisecond precision).
+     * 
+     * @return long
+     */
+    public long getStartEpochNanos()
+    {
+        return startEpochNanos;
+    }
+
+    public long getDurationNanos()
+    {
+        return durationNanos;
+    }
+
+    /**
+     * Get the class name of the exception thrown by the invocation.
+     * 
+     * @return String; {@code null} if the invocation returned normally
+     */
+    public String getError()
+    {
+        return error;
+    }
+
+    /**
+     * Learn whether the invocation returned normally.
+     * 
+     * @return boolean
+     */
+    public boolean isSuccessful()
+    {
+        return error == null;
+    }
+
+    //******************************************************************************************************************
+    // Canonical Methods
+    //******************************************************************************************************************
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s.%s [trace=%s, span=%s, parent=%s, %dns%s]", method.getDeclaringClass().getName(),
+                method.getName(), traceId, spanId, parentSpanId, Long.valueOf(durationNanos),
+                error == null ? "" : ", error=" + error);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Drains the spans recorded by a {@link TracingInterceptor} and appends them to a file, one line per export, each line
+ * an OpenTelemetry {@code ExportTraceServiceRequest} in OTLP/JSON encoding (the format of the OpenTelemetry collector's
+ * file exporter). Export happens on demand through {@link #export()}, or periodically on a daemon thread once
+ * {@link #start(long, TimeUnit)} has been called; {@link #close()} stops the thread and exports what remains. Spans
+ * that could not be written are kept, up to 65536 of them, and written with the next export. Failures of periodic
+ * exports are handed to the exporting thread's {@link Thread.UncaughtExceptionHandler} without stopping it, and are
+ * available from {@link #getLastFailure()}.
+ * 
+ * @since 2.1
+ */
+public class SpanExporter implements Closeable
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final String SCOPE_NAME = "org.apache.commons.proxy2";
+    private static final int STATUS_OK = 1;
+    private static final int STATUS_ERROR = 2;
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int MAX_PENDING = 65536;
+
+    private final TracingInterceptor interceptor;
+    private final File file;
+    private final String serviceName;
+
+    private ScheduledExecutorService executor;
+
+    // guarded by this; drained but not yet written:
+    private final List<Span> pending = new ArrayList<Span>();
+    private long droppedCount;
+    private volatile Throwable lastFailure;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new SpanExporter instance.
+     * 
+     * @param interceptor
+     *            source of spans
+     * @param file
+     *            file to append to
+     * @param serviceName
+     *            value of the {@code service.name} resource attribute
+     */
+    public SpanExporter(TracingInterceptor interceptor, File file, String serviceName)
+    {
+        this.interceptor = Validate.notNull(interceptor, "Interceptor cannot be null.");
+        this.file = Validate.notNull(file, "File cannot be null.");
+        this.serviceName = Validate.notNull(serviceName, "Service name cannot be null.");
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Export periodically on a daemon thread.
+     * 
+     * @param period
+     * @param unit
+     */
+    public synchronized void start(long period, TimeUnit unit)
+    {
+        Validate.validState(executor == null, "Exporter already started.");
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                final Thread result = new Thread(r, SpanExporter.class.getSimpleName());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    export();
+                }
+                catch (Exception e)
+                {
+                    // report, but keep this task scheduled and try again next period:
+                    lastFailure = e;
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Drain the interceptor and append the spans, if any, to the file, along with any spans a failed export left.
+     * 
+     * @return number of spans exported
+     * @throws IOException
+     *             if the file could not be written; the spans are kept for the next export
+     */
+    public synchronized int export() throws IOException
+    {
+        interceptor.drainTo(pending);
+        if (pending.isEmpty())
+        {
+            return 0;
+        }
+        if (pending.size() > MAX_PENDING)
+        {
+            final List<Span> overflow = pending.subList(0, pending.size() - MAX_PENDING);
+            droppedCount += overflow.size();
+            overflow.clear();
+        }
+        final String json = toJson(pending);
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try
+        {
+            writer.write(json);
+            writer.write('\n');
+        }
+        finally
+        {
+            writer.close();
+        }
+        final int result = pending.size();
+        pending.clear();
+        return result;
+    }
+
+    /**
+     * Get the number of spans kept after failed exports.
+     * 
+     * @return int
+     */
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Get the number of spans discarded because too many were kept after failed exports.
+     * 
+     * @return long
+     */
+    public synchronized long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Get the most recent failure of a periodic export.
+     * 
+     * @return Throwable; {@code null} if none has failed
+     */
+    public Throwable getLastFailure()
+    {
+        return lastFailure;
+    }
+
+    /**
+     * Stop periodic export, if started, and export the remaining spans.
+     * 
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final ScheduledExecutorService stopping;
+        synchronized (this)
+        {
+            stopping = executor;
+            executor = null;
+        }
+        if (stopping != null)
+        {
+            stopping.shutdown();
+            try
+            {
+                stopping.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        export();
+    }
+
+    /**
+     * Render {@code spans} as an OTLP/JSON {@code ExportTraceServiceRequest}.
+     * 
+     * @param spans
+     * @return String
+     */
+    String toJson(List<Span> spans)
+    {
+        final StringBuilder buf = new StringBuilder(256 * spans.size());
+        buf.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendAttribute(buf, "service.name", serviceName);
+        buf.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"").append(SCOPE_NAME).append("\"},\"spans\":[");
+        for (int i = 0; i < spans.size(); i++)
+        {
+            final Span span = spans.get(i);
+            if (i > 0)
+            {
+                buf.append(',');
+            }
+            buf.append("{\"traceId\":\"").append(span.getTraceId());
+            buf.append("\",\"spanId\":\"").append(span.getSpanId());
+            if (span.getParentSpanId() != null)
+            {
+                buf.append("\",\"parentSpanId\":\"").append(span.getParentSpanId());
+            }
+            buf.append("\",\"name\":\"").append(escape(span.getMethod().getDeclaringClass().getSimpleName() + "."
+                    + span.getMethod().getName()));
+            buf.append("\",\"kind\":").append(SPAN_KIND_INTERNAL);
+            // 64-bit integers are strings in OTLP/JSON:
+            buf.append(",\"startTimeUnixNano\":\"").append(span.getStartEpochNanos());
+            buf.append("\",\"endTimeUnixNano\":\"").append(span.getStartEpochNanos() + span.getDurationNanos());
+            buf.append("\",\"attributes\":[");
+            appendAttribute(buf, "code.namespace", span.getMethod().getDeclaringClass().getName());
+            buf.append(',');
+            appendAttribute(buf, "code.function", span.getMethod().getName());
+            buf.append("],\"status\":{");
+            if (span.isSuccessful())
+            {
+                buf.append("\"code\":").append(STATUS_OK);
+            }
+            else
+            {
+                buf.append("\"code\":").append(STATUS_ERROR).append(",\"message\":\"").append(escape(span.getError()))
+                        .append('"');
+            }
+            buf.append("}}");
+        }
+        buf.append("]}]}]}");
+        return buf.toString();
+    }
+
+    private static void appendAttribute(StringBuilder buf, String key, String value)
+    {
+        buf.append("{\"key\":\"").append(key).append("\",\"value\":{\"stringValue\":\"").append(escape(value))
+                .append("\"}}");
+    }
+
+    private static String escape(String value)
+    {
+        return StringEscapeUtils.escapeJson(value);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+
+/**
+ * A {@link TracingInterceptor} records a sample of invocations as {@link Span}s. Sampling is decided at the root: an
+ * invocation made while no traced invocation is in progress on the thread starts a new trace with the configured
+ * probability, and invocations nested within it share its decision, becoming its child spans if sampled. Unsampled
+ * invocations cost a thread-local lookup and a pseudo-random draw.
+ * <p>
+ * Completed spans are written to a ring buffer owned by the recording thread and are never waited for: when a buffer
+ * is full, further spans are dropped and counted. Buffers are drained by {@link #drainTo(Collection)}, typically from
+ * a {@link SpanExporter}'s background thread.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class TracingInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final double sampleRate;
+    private final int bufferCapacity;
+
+    private final transient ThreadLocal<TraceContext> context = new ThreadLocal<TraceContext>();
+    private final transient List<SpanBuffer> buffers = new CopyOnWriteArrayList<SpanBuffer>();
+    private final transient AtomicLong droppedCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new TracingInterceptor instance.
+     * 
+     * @param sampleRate
+     *            probability, between 0 and 1, of tracing a root invocation
+     * @param bufferCapacity
+     *            number of spans each thread can buffer until drained
+     */
+    public TracingInterceptor(double sampleRate, int bufferCapacity)
+    {
+        Validate.isTrue(sampleRate >= 0.0 && sampleRate <= 1.0, "Sample rate must be between 0 and 1.");
+        Validate.isTrue(bufferCapacity > 0, "Buffer capacity must be positive.");
+        this.sampleRate = sampleRate;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        TraceContext ctx = context.get();
+        if (ctx == null)
+        {
+            ctx = new TraceContext(new SpanBuffer(bufferCapacity));
+            buffers.add(ctx.buffer);
+            context.set(ctx);
+        }
+        if (ctx.depth == 0)
+        {
+            ctx.sampled = ctx.nextDouble() < sampleRate;
+            if (ctx.sampled)
+            {
+                ctx.traceId = hex(ctx.nextLong()) + hex(ctx.nextLong());
+            }
+        }
+        if (!ctx.sampled)
+        {
+            ctx.depth++;
+            try
+            {
+                return invocation.proceed();
+            }
+            finally
+            {
+                ctx.depth--;
+            }
+        }
+        final String parentSpanId = ctx.spanId;
+        final String spanId = hex(ctx.nextLong());
+        final long startEpochNanos = System.currentTimeMillis() * 1000000L;
+        final long start = System.nanoTime();
+        ctx.spanId = spanId;
+        ctx.depth++;
+        String error = null;
+        try
+        {
+            return invocation.proceed();
+        }
+        catch (Throwable t)
+        {
+            error = t.getClass().getName();
+            throw t;
+        }
+        finally
+        {
+            final long duration = System.nanoTime() - start;
+            ctx.depth--;
+            ctx.spanId = parentSpanId;
+            if (!ctx.buffer.offer(new Span(ctx.traceId, spanId, parentSpanId, invocation.getMethod(),
+                    startEpochNanos, duration, error)))
+            {
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Move all buffered spans to {@code target}.
+     * 
+     * @param target
+     * @return number of spans moved
+     */
+    public int drainTo(Collection<? super Span> target)
+    {
+        int result = 0;
+        for (Iterator<SpanBuffer> it = buffers.iterator(); it.hasNext();)
+        {
+            final SpanBuffer buffer = it.next();
+            final boolean ownerGone = buffer.owner.get() == null || !buffer.owner.get().isAlive();
+            result += buffer.drainTo(target);
+            if (ownerGone)
+            {
+                // nothing more will be written to this buffer:
+                buffers.remove(buffer);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of sampled spans dropped because their thread's buffer was full.
+     * 
+     * @return long
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    private static String hex(long value)
+    {
+        final String digits = Long.toHexString(value);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+
+    private Object readResolve()
+    {
+        return new TracingInterceptor(sampleRate, bufferCapacity);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Per-thread tracing state.
+     */
+    private static final class TraceContext
+    {
+        private final SpanBuffer buffer;
+        private long seed;
+        private int depth;
+        private boolean sampled;
+        private String traceId;
+        private String spanId;
+
+        TraceContext(SpanBuffer buffer)
+        {
+            this.buffer = buffer;
+            this.seed = System.nanoTime() ^ System.identityHashCode(this) ^ Thread.currentThread().getId() << 32;
+            if (seed == 0L)
+            {
+                seed = 1L;
+            }
+        }
+
+        // xorshift64*:
+        long nextLong()
+        {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            return seed * 2685821657736338717L;
+        }
+
+        double nextDouble()
+        {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    /**
+     * Single-producer, single-consumer ring buffer: only the owner thread offers, and draining is serialized.
+     */
+    private static final class SpanBuffer
+    {
+        private final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+        private final Span[] spans;
+        private volatile long head;
+        private volatile long tail;
+
+        SpanBuffer(int capacity)
+        {
+            this.spans = new Span[capacity];
+        }
+
+        boolean offer(Span span)
+        {
+            final long h = head;
+            if (h - tail == spans.length)
+            {
+                return false;
+            }
+            spans[(int) (h % spans.length)] = span;
+            head = h + 1;
+            return true;
+        }
+
+        synchronized int drainTo(Collection<? super Span> target)
+        {
+            final long h = head;
+            long t = tail;
+            final int result = (int) (h - t);
+            for (; t < h; t++)
+            {
+                final int index = (int) (t % spans.length);
+                target.add(spans[index]);
+                spans[index] = null;
+            }
+            tail = t;
+            return result;
+        }
+    }
+}
@@ -17,7 +17,13 @@
 
 package org.apache.commons.proxy2.invoker;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.proxy2.Invoker;
 import org.apache.commons.proxy2.ObjectProvider;
@@ -51,6 +57,12 @@ import org.apache.commons.proxy2.ObjectProvider;
  * </pre>
  * 
  * </p>
+ * <p>
+ * The target method matching each invoked method is resolved once per target class and cached. The cache holds target
+ * classes weakly and their resolved methods softly, so that it does not keep classes from other (e.g. unloaded
+ * plugin) class loaders reachable, except for the most recently seen target class, which is looked up without
+ * locking.
+ * </p>
  */
 public class DuckTypingInvoker implements Invoker
 {
@@ -63,6 +75,11 @@ public class DuckTypingInvoker implements Invoker
 
     private final ObjectProvider<?> targetProvider;
 
+    private transient volatile Resolutions resolutions;
+
+    // guarded by this; values referenced softly, as they reference their keys:
+    private transient Map<Class<?>, Reference<Resolutions>> resolutionsByClass;
+
     //******************************************************************************************************************
     // Constructors
     //******************************************************************************************************************
@@ -89,20 +106,90 @@ public class DuckTypingInvoker implements Invoker
     {
         final Object target = targetProvider.getObject();
         final Class<?> targetClass = target.getClass();
-        try
+        Resolutions current = resolutions;
+        if (current == null || current.targetClass != targetClass)
+        {
+            current = getResolutions(targetClass);
+            resolutions = current;
+        }
+        return current.getTargetMethod(method).invoke(target, arguments);
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    private synchronized Resolutions getResolutions(Class<?> targetClass)
+    {
+        if (resolutionsByClass == null)
         {
-            final Method targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
-            if (method.getReturnType().isAssignableFrom(targetMethod.getReturnType()))
+            resolutionsByClass = new WeakHashMap<Class<?>, Reference<Resolutions>>();
+        }
+        final Reference<Resolutions> reference = resolutionsByClass.get(targetClass);
+        Resolutions result = reference == null ? null : reference.get();
+        if (result == null)
+        {
+            result = new Resolutions(targetClass);
+            resolutionsByClass.put(targetClass, new SoftReference<Resolutions>(result));
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Target methods of one target class, by invoked method.
+     */
+    private static final class Resolutions
+    {
+        private final Class<?> targetClass;
+        private final ConcurrentMap<Method, Method> targetMethods = new ConcurrentHashMap<Method, Method>();
+
+        Resolutions(Class<?> targetClass)
+        {
+            this.targetClass = targetClass;
+        }
+
+        Method getTargetMethod(Method method)
+        {
+            Method result = targetMethods.get(method);
+            if (result == null)
             {
-                return targetMethod.invoke(target, arguments);
+                result = resolve(method);
+                targetMethods.putIfAbsent(method, result);
             }
-            throw new UnsupportedOperationException("Target type " + targetClass.getName()
-                    + " method has incompatible return type.");
+            return result;
         }
-        catch (NoSuchMethodException e)
+
+        private Method resolve(Method method)
         {
-            throw new UnsupportedOperationException("Target type " + targetClass.getName()
-                    + " does not have a method matching " + method + ".", e);
+            final Method result;
+            try
+            {
+                result = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            }
+            catch (NoSuchMethodException e)
+            {
+                throw new UnsupportedOperationException("Target type " + targetClass.getName()
+                        + " does not have a method matching " + method + ".", e);
+            }
+            if (!method.getReturnType().isAssignableFrom(result.getReturnType()))
+            {
+                throw new UnsupportedOperationException("Target type " + targetClass.getName()
+                        + " method has incompatible return type.");
+            }
+            try
+            {
+                // skip the access check on every invocation:
+                result.setAccessible(true);
+            }
+            catch (SecurityException e)
+            {
+                // invoke with access checks then
+            }
+            return result;
         }
     }
 }
@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.interceptor.Histogram;
+
+/**
+ * Delegates a method invocation to one of several redundant delegates and, if it has not completed within a hedging
+ * delay, to the next one as well, and so on until all delegates have been tried; the first successful result is
+ * returned and the attempts still running are cancelled. Should every attempt fail, the last failure is thrown.
+ * Delegates take turns at being tried first.
+ * <p>
+ * The hedging delay of each method adapts to its observed latencies: it is the configured percentile of the
+ * latencies of its attempts, so that only the slowest invocations are hedged. Every attempt that runs is measured,
+ * whether it succeeds, fails or is cancelled, a cancelled attempt counting the time it ran until cancelled. Latencies
+ * are kept in two rotating windows, so that old latencies are forgotten: the delay is taken from the last complete
+ * window, or from the current one while the last saw too few attempts, and the initial delay is used until either
+ * has seen enough. Attempts run on an {@link ExecutorService}, by default a shared cached pool of daemon threads.
+ * </p>
+ * <p>
+ * Executors are runtime resources and are not serialized: a deserialized {@link HedgingInvoker} runs its attempts on
+ * the shared default executor, and starts over with the initial delay.
+ * </p>
+ * 
+ * @param <T>
+ * @since 2.1
+ */
+public class HedgingInvoker<T> implements Invoker
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_SAMPLES = 20;
+    private static final long DEFAULT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final List<ObjectProvider<? extends T>> delegates;
+    private final double percentile;
+    private final long initialDelayNanos;
+    private final long windowNanos;
+    private final transient ExecutorService executor;
+
+    private final transient AtomicInteger next = new AtomicInteger();
+    private final transient ConcurrentMap<Method, LatencyWindows> latencies
+        = new ConcurrentHashMap<Method, LatencyWindows>();
+    private final transient AtomicLong invocationCount = new AtomicLong();
+    private final transient AtomicLong hedgeCount = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new HedgingInvoker instance hedging beyond the 95th percentile, on the shared default executor.
+     * 
+     * @param initialDelay
+     *            hedging delay until enough latencies have been observed
+     * @param unit
+     * @param delegates
+     *            at least two
+     */
+    public HedgingInvoker(long initialDelay, TimeUnit unit, ObjectProvider<? extends T>... delegates)
+    {
+        this(Arrays.asList(delegates), 95.0, initialDelay, unit, null);
+    }
+
+    /**
+     * Create a new HedgingInvoker instance.
+     * 
+     * @param delegates
+     *            at least two
+     * @param percentile
+     *            latency percentile, between 0 and 100, used as hedging delay
+     * @param initialDelay
+     *            hedging delay until enough latencies have been observed
+     * @param unit
+     * @param executor
+     *            runs the attempts; {@code null} for the shared default executor
+     */
+    public HedgingInvoker(List<? extends ObjectProvider<? extends T>> delegates, double percentile,
+            long initialDelay, TimeUnit unit, ExecutorService executor)
+    {
+        this(delegates, percentile, Validate.notNull(unit, "Time unit cannot be null.").toNanos(initialDelay),
+                DEFAULT_WINDOW_NANOS, TimeUnit.NANOSECONDS, executor);
+    }
+
+    /**
+     * Create a new HedgingInvoker instance.
+     * 
+     * @param delegates
+     *            at least two
+     * @param percentile
+     *            latency percentile, between 0 and 100, used as hedging delay
+     * @param initialDelay
+     *            hedging delay until enough latencies have been observed
+     * @param window
+     *            time after which observed latencies start to be forgotten; they are used for up to twice as long
+     * @param unit
+     *            unit of {@code initialDelay} and {@code window}
+     * @param executor
+     *            runs the attempts; {@code null} for the shared default executor
+     */
+    public HedgingInvoker(List<? extends ObjectProvider<? extends T>> delegates, double percentile,
+            long initialDelay, long window, TimeUnit unit, ExecutorService executor)
+    {
+        Validate.noNullElements(delegates, "Delegates cannot contain null.");
+        Validate.isTrue(delegates.size() >= 2, "At least two delegates are required.");
+        Validate.isTrue(percentile > 0.0 && percentile <= 100.0, "Percentile must be between 0 and 100.");
+        Validate.isTrue(initialDelay >= 0L, "Initial delay cannot be negative.");
+        Validate.isTrue(window > 0L, "Window must be positive.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        this.delegates = new ArrayList<ObjectProvider<? extends T>>(delegates);
+        this.percentile = percentile;
+        this.initialDelayNanos = unit.toNanos(initialDelay);
+        this.windowNanos = unit.toNanos(window);
+        this.executor = executor;
+    }
+
+    //******************************************************************************************************************
+    // Invoker Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object invoke(Object proxy, final Method method, final Object[] arguments) throws Throwable
+    {
+        invocationCount.incrementAndGet();
+        final LatencyWindows windows = getWindows(method);
+        final long delay = windows.getDelay(percentile, initialDelayNanos);
+        final CompletionService<Object> completion = new ExecutorCompletionService<Object>(
+                executor == null ? DefaultExecutorHolder.INSTANCE : executor);
+        final List<Future<Object>> attempts = new ArrayList<Future<Object>>(delegates.size());
+        final int first = (next.getAndIncrement() & Integer.MAX_VALUE) % delegates.size();
+        try
+        {
+            Throwable failure = null;
+            int pending = 0;
+            while (true)
+            {
+                if (pending == 0)
+                {
+                    // first attempt, or all attempts so far failed: try the next delegate at once
+                    if (attempts.size() == delegates.size())
+                    {
+                        throw failure;
+                    }
+                    attempts.add(completion.submit(attempt(windows, delegate(first, attempts.size()), method,
+                            arguments)));
+                    pending++;
+                }
+                final Future<Object> done = attempts.size() < delegates.size() ? completion.poll(delay,
+                        TimeUnit.NANOSECONDS) : completion.take();
+                if (done == null)
+                {
+                    // hedging delay elapsed:
+                    hedgeCount.incrementAndGet();
+                    attempts.add(completion.submit(attempt(windows, delegate(first, attempts.size()), method,
+                            arguments)));
+                    pending++;
+                    continue;
+                }
+                pending--;
+                try
+                {
+                    return done.get();
+                }
+                catch (ExecutionException e)
+                {
+                    failure = e.getCause();
+                }
+            }
+        }
+        finally
+        {
+            for (Future<Object> attempt : attempts)
+            {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the latencies, in nanoseconds, of the attempts to invoke {@code method} in the current window.
+     * 
+     * @param method
+     * @return {@link Histogram}
+     */
+    public Histogram getLatencies(Method method)
+    {
+        return getWindows(method).getWindow(System.nanoTime()).current;
+    }
+
+    private LatencyWindows getWindows(Method method)
+    {
+        LatencyWindows result = latencies.get(method);
+        if (result == null)
+        {
+            result = new LatencyWindows(windowNanos);
+            final LatencyWindows existing = latencies.putIfAbsent(method, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of invocations.
+     * 
+     * @return long
+     */
+    public long getInvocationCount()
+    {
+        return invocationCount.get();
+    }
+
+    /**
+     * Get the number of additional attempts started because the hedging delay elapsed.
+     * 
+     * @return long
+     */
+    public long getHedgeCount()
+    {
+        return hedgeCount.get();
+    }
+
+    private ObjectProvider<? extends T> delegate(int first, int attempt)
+    {
+        return delegates.get((first + attempt) % delegates.size());
+    }
+
+    private static Callable<Object> attempt(final LatencyWindows windows, final ObjectProvider<?> delegate,
+            final Method method, final Object[] arguments)
+    {
+        return new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                final long start = System.nanoTime();
+                try
+                {
+                    return method.invoke(delegate.getObject(), arguments);
+                }
+                catch (InvocationTargetException e)
+                {
+                    final Throwable cause = e.getTargetException();
+                    if (cause instanceof Exception)
+                    {
+                        throw (Exception) cause;
+                    }
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    throw e;
+                }
+                finally
+                {
+                    windows.record(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    private Object readResolve()
+    {
+        return new HedgingInvoker<T>(delegates, percentile, initialDelayNanos, windowNanos, TimeUnit.NANOSECONDS, null);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Latencies of one method, in a current window and the last complete one.
+     */
+    private static final class LatencyWindows
+    {
+        private final long windowNanos;
+        private final AtomicReference<Window> window;
+
+        LatencyWindows(long windowNanos)
+        {
+            this.windowNanos = windowNanos;
+            this.window = new AtomicReference<Window>(new Window(new Histogram(), new Histogram(), System.nanoTime()));
+        }
+
+        Window getWindow(long now)
+        {
+            Window result = window.get();
+            while (now - result.start >= windowNanos)
+            {
+                // the latencies of a window are kept until the end of the next one:
+                final Window rotated = new Window(new Histogram(), now - result.start < 2 * windowNanos
+                        ? result.current : new Histogram(), now);
+                if (window.compareAndSet(result, rotated))
+                {
+                    return rotated;
+                }
+                result = window.get();
+            }
+            return result;
+        }
+
+        long getDelay(double percentile, long initialDelayNanos)
+        {
+            final Window current = getWindow(System.nanoTime());
+            final Histogram basis = current.previous.getCount() >= MIN_SAMPLES ? current.previous : current.current;
+            return basis.getCount() < MIN_SAMPLES ? initialDelayNanos : basis.getValueAtPercentile(percentile);
+        }
+
+        void record(long latencyNanos)
+        {
+            final long now = System.nanoTime();
+            getWindow(now).current.record(Math.max(0L, latencyNanos));
+        }
+    }
+
+    private static final class Window
+    {
+        final Histogram current;
+        final Histogram previous;
+        final long start;
+
+        Window(Histogram current, Histogram previous, long start)
+        {
+            this.current = current;
+            this.previous = previous;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Lazily created shared default executor.
+     */
+    private static final class DefaultExecutorHolder
+    {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                final Thread result = new Thread(r, HedgingInvoker.class.getSimpleName() + "-"
+                        + threadNumber.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ObjectProvider;
+
+/**
+ * Delegates each method invocation to one of several equivalent delegates, selected according to a {@link Strategy}.
+ * Selection only reads and updates per-delegate atomic counters, so that it does not become a point of contention
+ * at high call rates.
+ * 
+ * @param <T>
+ * @since 2.1
+ */
+public class LoadBalancingInvoker<T> implements Invoker
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Weight of the latest latency in the moving average.
+     */
+    private static final double EWMA_WEIGHT = 0.3;
+
+    /**
+     * Default time over which an unrefreshed latency estimate decays by a factor of e.
+     */
+    private static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final List<ObjectProvider<? extends T>> delegates;
+    private final Strategy strategy;
+    private final long decayNanos;
+
+    private final transient Node[] nodes;
+    private final transient AtomicInteger next = new AtomicInteger();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new LoadBalancingInvoker instance.
+     * 
+     * @param strategy
+     * @param delegates
+     *            at least one
+     */
+    public LoadBalancingInvoker(Strategy strategy, ObjectProvider<? extends T>... delegates)
+    {
+        this(strategy, Arrays.asList(delegates));
+    }
+
+    /**
+     * Create a new LoadBalancingInvoker instance.
+     * 
+     * @param strategy
+     * @param delegates
+     *            at least one
+     */
+    public LoadBalancingInvoker(Strategy strategy, List<? extends ObjectProvider<? extends T>> delegates)
+    {
+        this(strategy, DEFAULT_DECAY_NANOS, TimeUnit.NANOSECONDS, delegates);
+    }
+
+    /**
+     * Create a new LoadBalancingInvoker instance.
+     * 
+     * @param strategy
+     * @param decayTime
+     *            for {@link Strategy#EWMA}, the time over which the latency estimate of a delegate not invoked
+     *            decays by a factor of e, and after which a new measurement mostly replaces the old estimate; 10
+     *            seconds by default
+     * @param unit
+     * @param delegates
+     *            at least one
+     */
+    public LoadBalancingInvoker(Strategy strategy, long decayTime, TimeUnit unit,
+            List<? extends ObjectProvider<? extends T>> delegates)
+    {
+        Validate.notNull(strategy, "Strategy cannot be null.");
+        Validate.isTrue(decayTime > 0L, "Decay time must be positive.");
+        Validate.notNull(unit, "Time unit cannot be null.");
+        Validate.noNullElements(delegates, "Delegates cannot contain null.");
+        Validate.notEmpty(delegates, "At least one delegate is required.");
+        this.strategy = strategy;
+        this.decayNanos = unit.toNanos(decayTime);
+        this.delegates = new ArrayList<ObjectProvider<? extends T>>(delegates);
+        this.nodes = new Node[delegates.size()];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = new Node();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Invoker Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable
+    {
+        final int index = select();
+        final Node node = nodes[index];
+        node.outstanding.incrementAndGet();
+        final long start = strategy == Strategy.EWMA ? System.nanoTime() : 0L;
+        try
+        {
+            final Object result = method.invoke(delegates.get(index).getObject(), arguments);
+            if (strategy == Strategy.EWMA)
+            {
+                node.update(start, System.nanoTime(), decayNanos);
+            }
+            return result;
+        }
+        catch (InvocationTargetException e)
+        {
+            if (strategy == Strategy.EWMA)
+            {
+                // a failing delegate is no faster than it took to fail:
+                node.update(start, System.nanoTime(), decayNanos);
+            }
+            throw e.getTargetException();
+        }
+        finally
+        {
+            node.outstanding.decrementAndGet();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the number of invocations currently in progress on the delegate at {@code index}.
+     * 
+     * @param index
+     * @return int
+     */
+    public int getOutstandingCount(int index)
+    {
+        Validate.validIndex(delegates, index);
+        return nodes[index].outstanding.get();
+    }
+
+    /**
+     * Get the moving average latency of the delegate at {@code index}; only maintained by {@link Strategy#EWMA}.
+     * 
+     * @param index
+     * @param unit
+     * @return long, 0 if not (yet) measured
+     */
+    public long getAverageLatency(int index, TimeUnit unit)
+    {
+        Validate.validIndex(delegates, index);
+        return unit.convert((long) nodes[index].getLatency(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the selection strategy.
+     * 
+     * @return {@link Strategy}
+     */
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    private int select()
+    {
+        final int length = nodes.length;
+        final int first = (next.getAndIncrement() & Integer.MAX_VALUE) % length;
+        if (strategy == Strategy.ROUND_ROBIN || length == 1)
+        {
+            return first;
+        }
+        // scan from the round-robin position so that ties are spread evenly:
+        int result = first;
+        double best = Double.MAX_VALUE;
+        final long now = strategy == Strategy.EWMA ? System.nanoTime() : 0L;
+        for (int i = 0; i < length; i++)
+        {
+            final int index = (first + i) % length;
+            final double score = strategy == Strategy.EWMA ? nodes[index].getCost(now, decayNanos)
+                    : nodes[index].outstanding.get();
+            if (score < best)
+            {
+                best = score;
+                result = index;
+                if (score == 0.0)
+                {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object readResolve()
+    {
+        return new LoadBalancingInvoker<T>(strategy, decayNanos, TimeUnit.NANOSECONDS, delegates);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Delegate selection strategy.
+     */
+    public enum Strategy
+    {
+        /**
+         * Take turns.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Select the delegate with the fewest invocations in progress.
+         */
+        LEAST_OUTSTANDING,
+
+        /**
+         * Select the delegate with the lowest exponentially weighted moving average latency, multiplied by its number
+         * of invocations in progress plus one. A delegate not yet measured is probed by one invocation at a time. The
+         * average is time-weighted: the estimate of a delegate left unselected decays towards zero over the decay time,
+         * so that it is eventually probed again, and a measurement taken after a long pause mostly replaces it.
+         */
+        EWMA;
+    }
+
+    private static final class Node
+    {
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(0.0));
+        // when latencyBits was last updated; racing updates may leave it slightly off, which only skews the weights:
+        volatile long updated;
+
+        double getLatency()
+        {
+            return Double.longBitsToDouble(latencyBits.get());
+        }
+
+        double getCost(long now, long decayNanos)
+        {
+            final double latency = getLatency();
+            final int pending = outstanding.get();
+            if (latency == 0.0)
+            {
+                return pending == 0 ? 0.0 : Double.MAX_VALUE / 2;
+            }
+            return latency * decay(now, decayNanos) * (pending + 1);
+        }
+
+        void update(long start, long end, long decayNanos)
+        {
+            final double sample = end - start;
+            while (true)
+            {
+                final long bits = latencyBits.get();
+                final double latency = Double.longBitsToDouble(bits);
+                // the older the estimate, the less it counts:
+                final double weight = latency == 0.0 ? 0.0 : Math.min(1.0 - EWMA_WEIGHT, decay(start, decayNanos));
+                final double estimate = latency * weight + sample * (1.0 - weight);
+                if (latencyBits.compareAndSet(bits, Double.doubleToLongBits(Math.max(estimate, 1.0))))
+                {
+                    updated = end;
+                    return;
+                }
+            }
+        }
+
+        private double decay(long now, long decayNanos)
+        {
+            return Math.exp(-Math.max(0L, now - updated) / (double) decayNanos);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.impl.MethodSignature;
+
+/**
+ * Delegates each method invocation to the shard selected by a routing key, taken from the argument at a position
+ * configured per method signature (such as a tenant or account id). The key is hashed onto the shards with a
+ * {@link Hashing} scheme, placing each shard by the hash of its name, so that adding or removing a shard only moves
+ * the keys of that shard. Shards given as a list are named by their position, so only adding or removing the last
+ * one leaves the others' keys in place; shards given as a map of names keep their keys whichever shard is removed.
+ * The argument position of each {@link Method} is resolved once and cached. Invocations of methods without a routing
+ * argument (or with a {@code null} key) go to the shard of the {@code null} key.
+ * 
+ * @param <T>
+ * @since 2.1
+ */
+public class ShardingInvoker<T> implements Invoker
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final int NO_ARGUMENT = -1;
+    private static final int VIRTUAL_NODES = 128;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final List<String> names;
+    private final List<ObjectProvider<? extends T>> shards;
+    private final Hashing hashing;
+    private final int defaultArgumentIndex;
+    private final Map<MethodSignature, Integer> routes = new ConcurrentHashMap<MethodSignature, Integer>();
+
+    private final transient ConcurrentMap<Method, Integer> argumentIndexes = new ConcurrentHashMap<Method, Integer>();
+    private final transient long[] identities;
+    private final transient long[] ring;
+    private final transient int[] ringShards;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new ShardingInvoker instance routing by the first argument unless configured otherwise.
+     * 
+     * @param hashing
+     * @param shards
+     *            at least one
+     */
+    public ShardingInvoker(Hashing hashing, ObjectProvider<? extends T>... shards)
+    {
+        this(hashing, 0, Arrays.asList(shards));
+    }
+
+    /**
+     * Create a new ShardingInvoker instance.
+     * 
+     * @param hashing
+     * @param defaultArgumentIndex
+     *            position of the routing argument of methods not configured by {@link #routeBy(Method, int)}; a
+     *            negative value routes them by the {@code null} key
+     * @param shards
+     *            at least one
+     */
+    public ShardingInvoker(Hashing hashing, int defaultArgumentIndex, List<? extends ObjectProvider<? extends T>> shards)
+    {
+        this(hashing, defaultArgumentIndex, positionalNames(shards.size()), shards);
+    }
+
+    /**
+     * Create a new ShardingInvoker instance with named shards, each placed by the hash of its name.
+     * 
+     * @param hashing
+     * @param defaultArgumentIndex
+     *            position of the routing argument of methods not configured by {@link #routeBy(Method, int)}; a
+     *            negative value routes them by the {@code null} key
+     * @param shards
+     *            at least one, by name; shard indexes follow the iteration order of the map
+     */
+    public ShardingInvoker(Hashing hashing, int defaultArgumentIndex,
+            Map<String, ? extends ObjectProvider<? extends T>> shards)
+    {
+        this(hashing, defaultArgumentIndex, new ArrayList<String>(shards.keySet()),
+                new ArrayList<ObjectProvider<? extends T>>(shards.values()));
+    }
+
+    private ShardingInvoker(Hashing hashing, int defaultArgumentIndex, List<String> names,
+            List<? extends ObjectProvider<? extends T>> shards)
+    {
+        Validate.notNull(hashing, "Hashing cannot be null.");
+        Validate.noNullElements(names, "Shard names cannot contain null.");
+        Validate.noNullElements(shards, "Shards cannot contain null.");
+        Validate.notEmpty(shards, "At least one shard is required.");
+        this.hashing = hashing;
+        this.defaultArgumentIndex = Math.max(defaultArgumentIndex, NO_ARGUMENT);
+        this.names = new ArrayList<String>(names);
+        this.shards = new ArrayList<ObjectProvider<? extends T>>(shards);
+        this.identities = new long[names.size()];
+        for (int i = 0; i < identities.length; i++)
+        {
+            identities[i] = hash(names.get(i));
+        }
+        if (hashing == Hashing.CONSISTENT)
+        {
+            this.ring = new long[shards.size() * VIRTUAL_NODES];
+            this.ringShards = new int[ring.length];
+            buildRing(ring, ringShards);
+        }
+        else
+        {
+            this.ring = null;
+            this.ringShards = null;
+        }
+    }
+
+    //******************************************************************************************************************
+    // Invoker Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable
+    {
+        final int argumentIndex = getArgumentIndex(method);
+        final Object key = argumentIndex == NO_ARGUMENT ? null : arguments[argumentIndex];
+        try
+        {
+            return method.invoke(shards.get(getShard(key)).getObject(), arguments);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getTargetException();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Route invocations of methods with the signature of {@code method} by the argument at {@code argumentIndex}.
+     * 
+     * @param method
+     * @param argumentIndex
+     * @return this, for chaining
+     */
+    public ShardingInvoker<T> routeBy(Method method, int argumentIndex)
+    {
+        Validate.notNull(method, "Method cannot be null.");
+        Validate.isTrue(argumentIndex >= 0 && argumentIndex < method.getParameterTypes().length,
+                "Method %s has no argument at index %d.", method, argumentIndex);
+        routes.put(new MethodSignature(method), Integer.valueOf(argumentIndex));
+        argumentIndexes.clear();
+        return this;
+    }
+
+    /**
+     * Get the index of the shard {@code key} is routed to.
+     * 
+     * @param key
+     * @return int
+     */
+    public int getShard(Object key)
+    {
+        final long hash = mix(hashCode(key));
+        if (hashing == Hashing.CONSISTENT)
+        {
+            int position = Arrays.binarySearch(ring, hash);
+            if (position < 0)
+            {
+                position = -position - 1;
+            }
+            return ringShards[position == ring.length ? 0 : position];
+        }
+        int result = 0;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < shards.size(); i++)
+        {
+            final long weight = mix(hash ^ identities[i]);
+            if (weight > best)
+            {
+                best = weight;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the name of the shard at {@code index}.
+     * 
+     * @param index
+     * @return String
+     */
+    public String getShardName(int index)
+    {
+        return names.get(index);
+    }
+
+    private int getArgumentIndex(Method method)
+    {
+        Integer result = argumentIndexes.get(method);
+        if (result == null)
+        {
+            result = routes.get(new MethodSignature(method));
+            if (result == null)
+            {
+                result = Integer.valueOf(defaultArgumentIndex < method.getParameterTypes().length ? defaultArgumentIndex
+                        : NO_ARGUMENT);
+            }
+            argumentIndexes.putIfAbsent(method, result);
+        }
+        return result.intValue();
+    }
+
+    private void buildRing(long[] points, int[] owners)
+    {
+        final long[] unsorted = new long[points.length];
+        for (int i = 0; i < points.length; i++)
+        {
+            unsorted[i] = mix(identities[i / VIRTUAL_NODES] + (i % VIRTUAL_NODES + 1) * 0x9e3779b97f4a7c15L);
+            points[i] = unsorted[i];
+        }
+        Arrays.sort(points);
+        for (int i = 0; i < points.length; i++)
+        {
+            owners[Arrays.binarySearch(points, unsorted[i])] = i / VIRTUAL_NODES;
+        }
+    }
+
+    private static List<String> positionalNames(int count)
+    {
+        final List<String> result = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            result.add(String.valueOf(i));
+        }
+        return result;
+    }
+
+    /**
+     * 64-bit hash of a shard name, so that distinct names rarely share a place.
+     */
+    private static long hash(String name)
+    {
+        long result = 0L;
+        for (int i = 0; i < name.length(); i++)
+        {
+            result = 31L * result + name.charAt(i);
+        }
+        return mix(result ^ name.length());
+    }
+
+    private static int hashCode(Object key)
+    {
+        if (key == null)
+        {
+            return 0;
+        }
+        return key.getClass().isArray() ? Arrays.deepHashCode(new Object[] { key }) : key.hashCode();
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3, spreading consecutive inputs over the whole range.
+     */
+    private static long mix(long value)
+    {
+        long result = value;
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    private Object readResolve()
+    {
+        final ShardingInvoker<T> result = new ShardingInvoker<T>(hashing, defaultArgumentIndex, names, shards);
+        result.routes.putAll(routes);
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Scheme hashing routing keys onto shards.
+     */
+    public enum Hashing
+    {
+        /**
+         * Consistent hashing: shards own arcs of a hash ring, on which each has a fixed number of virtual nodes;
+         * selection is a binary search.
+         */
+        CONSISTENT,
+
+        /**
+         * Rendezvous (highest random weight) hashing: the shard with the highest hash of key and shard wins;
+         * selection is linear in the number of shards, with a more even spread.
+         */
+        RENDEZVOUS;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker.recorder;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.interceptor.matcher.ArgumentMatcher;
+import org.apache.commons.proxy2.invoker.RecordedInvocation;
+
+/**
+ * Indexes recorded invocations for verification queries. Used as the {@link InvocationListener} of a streaming
+ * {@link InvocationRecorder}, it keeps, per {@link Method}, the invocations in recording order and, per argument
+ * position, a postings list of the invocations by distinct argument value. A query evaluates each of its
+ * {@link ArgumentMatcher}s once per distinct value of its argument, takes the postings of the most selective argument
+ * and checks all matchers against the actual arguments of those candidates only, so that its cost depends on the
+ * number of distinct values and of matches rather than on the number of recorded invocations. As a distinct value is
+ * represented by the first of its equal arguments, this pruning assumes that matchers treat equal arguments alike.
+ * <p>
+ * Arguments are indexed by their {@code equals} and {@code hashCode} at the time they are recorded. Array arguments
+ * are copied for the purpose, but an argument object mutated afterwards in a way that changes its equality is left
+ * under its former value, and queries may then miss it; record immutable arguments, or copies.
+ * </p>
+ * <p>
+ * Each indexed invocation gets a sequence number; {@link #getSequence()} marks a checkpoint from which a range query
+ * can select the invocations recorded afterwards. Indexing and queries are thread-safe; queries run concurrently with
+ * each other, indexing is exclusive.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class InvocationIndex implements InvocationListener
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final Object NULL_KEY = new Object();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Method, MethodIndex> methodIndexes = new HashMap<Method, MethodIndex>();
+    private long sequence;
+
+    //******************************************************************************************************************
+    // InvocationListener Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public void invocationRecorded(RecordedInvocation invocation)
+    {
+        // clone the arguments once, outside the lock:
+        final Object[] arguments = invocation.getArguments();
+        lock.writeLock().lock();
+        try
+        {
+            MethodIndex methodIndex = methodIndexes.get(invocation.getInvokedMethod());
+            if (methodIndex == null)
+            {
+                methodIndex = new MethodIndex(invocation.getInvokedMethod().getParameterTypes().length);
+                methodIndexes.put(invocation.getInvokedMethod(), methodIndex);
+            }
+            methodIndex.add(sequence++, invocation, arguments);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Count the invocations of {@code method} whose arguments are accepted by {@code matchers}.
+     * 
+     * @param method
+     * @param matchers
+     *            one per parameter of {@code method}; a {@code null} element accepts any argument
+     * @return int
+     */
+    public int count(Method method, ArgumentMatcher<?>... matchers)
+    {
+        return select(method, 0L, Long.MAX_VALUE, matchers, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Learn whether {@code method} has been invoked with arguments accepted by {@code matchers}.
+     * 
+     * @param method
+     * @param matchers
+     *            one per parameter of {@code method}; a {@code null} element accepts any argument
+     * @return boolean
+     */
+    public boolean exists(Method method, ArgumentMatcher<?>... matchers)
+    {
+        return select(method, 0L, Long.MAX_VALUE, matchers, 1, null) > 0;
+    }
+
+    /**
+     * Find, in recording order, the invocations of {@code method} with a sequence number from {@code fromSequence}
+     * (inclusive) to {@code toSequence} (exclusive) whose arguments are accepted by {@code matchers}.
+     * 
+     * @param method
+     * @param fromSequence
+     * @param toSequence
+     * @param matchers
+     *            one per parameter of {@code method}; a {@code null} element accepts any argument
+     * @return {@link List} of {@link RecordedInvocation}
+     */
+    public List<RecordedInvocation> find(Method method, long fromSequence, long toSequence,
+            ArgumentMatcher<?>... matchers)
+    {
+        final List<RecordedInvocation> result = new ArrayList<RecordedInvocation>();
+        select(method, fromSequence, toSequence, matchers, Integer.MAX_VALUE, result);
+        return result;
+    }
+
+    /**
+     * Get the sequence number the next indexed invocation will get.
+     * 
+     * @return long
+     */
+    public long getSequence()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return sequence;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all indexed invocations. Sequence numbers keep increasing.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            methodIndexes.clear();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Select up to {@code limit} matching invocations, adding them to {@code result} in recording order unless it is
+     * {@code null}.
+     * 
+     * @return the number of invocations selected
+     */
+    private int select(Method method, long fromSequence, long toSequence, ArgumentMatcher<?>[] matchers, int limit,
+            List<RecordedInvocation> result)
+    {
+        Validate.notNull(method, "Method cannot be null.");
+        final ArgumentMatcher<?>[] argumentMatchers = matchers == null ? new ArgumentMatcher<?>[0] : matchers;
+        Validate.isTrue(argumentMatchers.length == method.getParameterTypes().length,
+                "Expected %d argument matchers for %s.", method.getParameterTypes().length, method);
+        lock.readLock().lock();
+        try
+        {
+            final MethodIndex methodIndex = methodIndexes.get(method);
+            if (methodIndex == null)
+            {
+                return 0;
+            }
+            return methodIndex.select(fromSequence, toSequence, argumentMatchers, limit, result);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Object toKey(Object argument)
+    {
+        if (argument == null)
+        {
+            return NULL_KEY;
+        }
+        return argument.getClass().isArray() ? new ArrayKey(argument) : argument;
+    }
+
+    private static Object fromKey(Object key)
+    {
+        if (key == NULL_KEY)
+        {
+            return null;
+        }
+        return key instanceof ArrayKey ? ((ArrayKey) key).array : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(ArgumentMatcher<?> matcher, Object argument)
+    {
+        return ((ArgumentMatcher<Object>) matcher).matches(argument);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Invocations of one method; an invocation is identified by its position in recording order.
+     */
+    private static final class MethodIndex
+    {
+        private final List<RecordedInvocation> invocations = new ArrayList<RecordedInvocation>();
+        private final List<Object[]> arguments = new ArrayList<Object[]>();
+        private long[] sequences = new long[16];
+        private final List<Map<Object, IntList>> postings;
+
+        MethodIndex(int parameterCount)
+        {
+            postings = new ArrayList<Map<Object, IntList>>(parameterCount);
+            for (int i = 0; i < parameterCount; i++)
+            {
+                postings.add(new HashMap<Object, IntList>());
+            }
+        }
+
+        void add(long sequence, RecordedInvocation invocation, Object[] args)
+        {
+            final int id = invocations.size();
+            invocations.add(invocation);
+            arguments.add(args);
+            if (id == sequences.length)
+            {
+                sequences = Arrays.copyOf(sequences, id * 2);
+            }
+            sequences[id] = sequence;
+            for (int i = 0; i < postings.size(); i++)
+            {
+                final Object key = toKey(args[i]);
+                IntList ids = postings.get(i).get(key);
+                if (ids == null)
+                {
+                    ids = new IntList();
+                    postings.get(i).put(key, ids);
+                }
+                ids.add(id);
+            }
+        }
+
+        int select(long fromSequence, long toSequence, ArgumentMatcher<?>[] matchers, int limit,
+                List<RecordedInvocation> result)
+        {
+            final int size = invocations.size();
+            final int from = lowerBound(fromSequence, size);
+            final int to = lowerBound(toSequence, size);
+            // the postings of the matching values of each constrained argument; keep the most selective:
+            List<IntList> candidates = null;
+            int candidateCount = to - from;
+            for (int i = 0; i < matchers.length; i++)
+            {
+                if (matchers[i] == null)
+                {
+                    continue;
+                }
+                final List<IntList> matching = new ArrayList<IntList>();
+                int count = 0;
+                for (Map.Entry<Object, IntList> entry : postings.get(i).entrySet())
+                {
+                    if (matches(matchers[i], fromKey(entry.getKey())))
+                    {
+                        matching.add(entry.getValue());
+                        count += entry.getValue().size;
+                    }
+                }
+                if (count == 0)
+                {
+                    return 0;
+                }
+                if (count < candidateCount)
+                {
+                    candidates = matching;
+                    candidateCount = count;
+                }
+            }
+            int found = 0;
+            if (candidates == null)
+            {
+                for (int id = from; id < to && found < limit; id++)
+                {
+                    found += accept(id, matchers, result);
+                }
+            }
+            else if (result == null)
+            {
+                // postings of distinct values are disjoint, so counting need not order them:
+                for (IntList list : candidates)
+                {
+                    for (int i = list.lowerBound(from); i < list.size && list.values[i] < to && found < limit; i++)
+                    {
+                        found += accept(list.values[i], matchers, null);
+                    }
+                }
+            }
+            else
+            {
+                for (int id : union(candidates, candidateCount))
+                {
+                    if (found == limit)
+                    {
+                        break;
+                    }
+                    if (id >= from && id < to)
+                    {
+                        found += accept(id, matchers, result);
+                    }
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Check all {@code matchers} against the actual arguments of the invocation at {@code id}, as the postings key
+         * a matcher was evaluated against is merely equal to them.
+         * 
+         * @return 1 if accepted, after adding the invocation to {@code result} unless it is {@code null}; 0 otherwise
+         */
+        private int accept(int id, ArgumentMatcher<?>[] matchers, List<RecordedInvocation> result)
+        {
+            final Object[] args = arguments.get(id);
+            for (int i = 0; i < matchers.length; i++)
+            {
+                if (matchers[i] != null && !matches(matchers[i], args[i]))
+                {
+                    return 0;
+                }
+            }
+            if (result != null)
+            {
+                result.add(invocations.get(id));
+            }
+            return 1;
+        }
+
+        /**
+         * Get the position of the first invocation with a sequence number not less than {@code sequence}.
+         */
+        private int lowerBound(long sequence, int size)
+        {
+            final int position = Arrays.binarySearch(sequences, 0, size, sequence);
+            return position < 0 ? -position - 1 : position;
+        }
+
+        private static int[] union(List<IntList> lists, int count)
+        {
+            // postings of distinct values are disjoint, so concatenating and sorting yields the ordered union:
+            final int[] result = new int[count];
+            int offset = 0;
+            for (IntList list : lists)
+            {
+                System.arraycopy(list.values, 0, result, offset, list.size);
+                offset += list.size;
+            }
+            if (lists.size() > 1)
+            {
+                Arrays.sort(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Growable list of ascending invocation positions.
+     */
+    private static final class IntList
+    {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Get the index of the first value not less than {@code value}.
+         */
+        int lowerBound(int value)
+        {
+            final int position = Arrays.binarySearch(values, 0, size, value);
+            return position < 0 ? -position - 1 : position;
+        }
+    }
+
+    /**
+     * Array argument keyed by deep equality, on a copy of the array as recorded.
+     */
+    private static final class ArrayKey
+    {
+        private final Object array;
+        private final int hashCode;
+
+        ArrayKey(Object array)
+        {
+            this.array = copy(array);
+            this.hashCode = Arrays.deepHashCode(new Object[] { this.array });
+        }
+
+        private static Object copy(Object array)
+        {
+            final int length = Array.getLength(array);
+            final Object result = Array.newInstance(array.getClass().getComponentType(), length);
+            System.arraycopy(array, 0, result, 0, length);
+            if (result instanceof Object[])
+            {
+                final Object[] elements = (Object[]) result;
+                for (int i = 0; i < length; i++)
+                {
+                    if (elements[i] != null && elements[i].getClass().isArray())
+                    {
+                        elements[i] = copy(elements[i]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof ArrayKey
+                    && Arrays.deepEquals(new Object[] { array }, new Object[] { ((ArrayKey) o).array });
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
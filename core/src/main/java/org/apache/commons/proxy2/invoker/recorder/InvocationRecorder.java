@@ -19,9 +19,15 @@ package org.apache.commons.proxy2.invoker.recorder;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.reflect.TypeUtils;
 import org.apache.commons.proxy2.Invoker;
 import org.apache.commons.proxy2.ProxyFactory;
@@ -29,13 +35,22 @@ import org.apache.commons.proxy2.ProxyUtils;
 import org.apache.commons.proxy2.invoker.RecordedInvocation;
 
 /**
- * An {@link InvocationRecorder} records method invocations against its generated proxies.
+ * An {@link InvocationRecorder} records method invocations against its generated proxies. Recording is thread-safe.
+ * The proxy returned for the result of each recorded method is resolved once per (target type, method) and reused, so
+ * that recording fluent call chains does not create a proxy per call. In streaming mode, each recorded invocation is
+ * passed to an {@link InvocationListener} and not retained.
  * 
  */
 public class InvocationRecorder
 {
+    private static final Object NULL_RESULT = new Object();
+
     private final ProxyFactory proxyFactory;
-    private final List<RecordedInvocation> recordedInvocations = new LinkedList<RecordedInvocation>();
+    private final InvocationListener listener;
+    private volatile RecordingLog recordingLog = new RecordingLog();
+    private final ConcurrentMap<Type, InvocationRecorderInvoker> invokers
+        = new ConcurrentHashMap<Type, InvocationRecorderInvoker>();
+    private final List<RecordedInvocation> recordedInvocations = new RecordedInvocations();
 
     /**
      * Create a new InvocationRecorder instance.
@@ -45,10 +60,26 @@ public class InvocationRecorder
     public InvocationRecorder(ProxyFactory proxyFactory)
     {
         this.proxyFactory = proxyFactory;
+        this.listener = null;
     }
 
     /**
-     * Get the invocations that have been recorded up to this point. The list is "live" and should not be modified.
+     * Create a new streaming InvocationRecorder instance, passing each recorded invocation to {@code listener}.
+     * 
+     * @param proxyFactory
+     * @param listener
+     * @since 2.1
+     */
+    public InvocationRecorder(ProxyFactory proxyFactory, InvocationListener listener)
+    {
+        this.proxyFactory = proxyFactory;
+        this.listener = Validate.notNull(listener, "Listener cannot be null.");
+    }
+
+    /**
+     * Get the invocations that have been recorded up to this point, in order. The list is "live", reflecting later
+     * recordings and {@link #reset()}, and cannot be modified; its iterators traverse a snapshot of the invocations
+     * recorded when they are created. It is always empty in streaming mode.
      * 
      * @return {@link List} of {@link RecordedInvocation}
      */
@@ -81,17 +112,45 @@ public class InvocationRecorder
     {
         if (proxyFactory.canProxy(type))
         {
-            return proxyFactory.<T> createInvokerProxy(new InvocationRecorderInvoker(genericType), type);
+            return proxyFactory.<T> createInvokerProxy(getInvoker(genericType), type);
         }
         return ProxyUtils.nullValue(type);
     }
 
+    private InvocationRecorderInvoker getInvoker(Type targetType)
+    {
+        InvocationRecorderInvoker result = invokers.get(targetType);
+        if (result == null)
+        {
+            result = new InvocationRecorderInvoker(targetType);
+            final InvocationRecorderInvoker existing = invokers.putIfAbsent(targetType, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    private void record(RecordedInvocation invocation)
+    {
+        if (listener == null)
+        {
+            recordingLog.add(invocation);
+        }
+        else
+        {
+            listener.invocationRecorded(invocation);
+        }
+    }
+
     private final class InvocationRecorderInvoker implements Invoker
     {
         /** Serialization version */
         private static final long serialVersionUID = 1L;
 
         private final Type targetType;
+        private final ConcurrentMap<Method, Object> results = new ConcurrentHashMap<Method, Object>();
 
         private InvocationRecorderInvoker(Type targetType)
         {
@@ -104,19 +163,74 @@ public class InvocationRecorder
         @Override
         public Object invoke(Object o, Method method, Object[] args) throws Throwable
         {
-            recordedInvocations.add(new RecordedInvocation(method, args));
-            final Class<?> returnType = TypeUtils.getRawType(method.getGenericReturnType(), targetType);
-            //what to do if returnType is null?
+            record(new RecordedInvocation(method, args));
+            Object result = results.get(method);
+            if (result == null)
+            {
+                result = proxyResult(method);
+                final Object existing = results.putIfAbsent(method, result == null ? NULL_RESULT : result);
+                if (existing != null)
+                {
+                    result = existing;
+                }
+            }
+            return result == NULL_RESULT ? null : result;
+        }
+
+        private Object proxyResult(Method method)
+        {
+            Class<?> returnType = TypeUtils.getRawType(method.getGenericReturnType(), targetType);
+            if (returnType == null)
+            {
+                // unresolvable type variable: fall back to its erasure
+                returnType = method.getReturnType();
+            }
             return proxy(method.getGenericReturnType(), returnType);
         }
     }
 
+    /**
+     * Live, unmodifiable view of the current recording log.
+     */
+    private final class RecordedInvocations extends AbstractList<RecordedInvocation>
+    {
+        @Override
+        public RecordedInvocation get(int index)
+        {
+            final RecordedInvocation result = index < 0 ? null : recordingLog.get(index);
+            if (result == null)
+            {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return result;
+        }
+
+        @Override
+        public int size()
+        {
+            return recordingLog.size();
+        }
+
+        @Override
+        public Iterator<RecordedInvocation> iterator()
+        {
+            return listIterator(0);
+        }
+
+        @Override
+        public ListIterator<RecordedInvocation> listIterator(int index)
+        {
+            // a snapshot, so that an iteration sees a consistent prefix of the log even across a reset:
+            return Collections.unmodifiableList(recordingLog.toList()).listIterator(index);
+        }
+    }
+
     /**
      * Reset this {@link InvocationRecorder}.
      */
     public void reset()
     {
-        recordedInvocations.clear();
+        recordingLog = new RecordingLog();
     }
 
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker.recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.proxy2.invoker.RecordedInvocation;
+
+/**
+ * Lock-free, append-only log of recorded invocations, stored in chunks of doubling size found by arithmetic on the
+ * index: appending claims a slot with a single atomic increment, and only appending the first entry of a chunk
+ * allocates it. A published count tracks the filled prefix of the log, i.e. the slots up to the first one claimed but
+ * not yet filled by a concurrent {@link #add(RecordedInvocation)}; each append advances it past the slots filled so
+ * far, so that {@link #size()} and {@link #get(int)} take constant time and agree with each other.
+ */
+class RecordingLog
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final int FIRST_CHUNK_BITS = 8;
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+    private static final int MAX_CHUNKS = Integer.SIZE - FIRST_CHUNK_BITS;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<RecordedInvocation>> chunks
+        = new AtomicReferenceArray<AtomicReferenceArray<RecordedInvocation>>(MAX_CHUNKS);
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    void add(RecordedInvocation invocation)
+    {
+        final int index = claimed.getAndIncrement();
+        final int position = index + FIRST_CHUNK_SIZE;
+        final int chunkIndex = chunkIndex(position);
+        AtomicReferenceArray<RecordedInvocation> chunk = chunks.get(chunkIndex);
+        if (chunk == null)
+        {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<RecordedInvocation>(
+                    FIRST_CHUNK_SIZE << chunkIndex));
+            chunk = chunks.get(chunkIndex);
+        }
+        chunk.set(position - (FIRST_CHUNK_SIZE << chunkIndex), invocation);
+        // whichever append fills the first unfilled slot publishes it and every filled slot after it:
+        while (true)
+        {
+            final int count = published.get();
+            if (slot(count) == null)
+            {
+                return;
+            }
+            published.compareAndSet(count, count + 1);
+        }
+    }
+
+    /**
+     * Get the number of invocations in the filled prefix of this log.
+     * 
+     * @return int
+     */
+    int size()
+    {
+        return published.get();
+    }
+
+    /**
+     * Get the invocation appended at {@code index}.
+     * 
+     * @param index
+     * @return {@link RecordedInvocation}; {@code null} if {@code index} is beyond the filled prefix of this log
+     */
+    RecordedInvocation get(int index)
+    {
+        return index < published.get() ? slot(index) : null;
+    }
+
+    /**
+     * Get the invocations in the filled prefix of this log, in order; see {@link #size()}. Snapshots taken one after
+     * another are thus prefixes of one another, even while invocations are appended concurrently.
+     * 
+     * @return {@link List} of {@link RecordedInvocation}
+     */
+    List<RecordedInvocation> toList()
+    {
+        final int size = published.get();
+        final List<RecordedInvocation> result = new ArrayList<RecordedInvocation>(size);
+        for (int i = 0; i < size; i++)
+        {
+            result.add(slot(i));
+        }
+        return result;
+    }
+
+    private RecordedInvocation slot(int index)
+    {
+        final int position = index + FIRST_CHUNK_SIZE;
+        final int chunkIndex = chunkIndex(position);
+        final AtomicReferenceArray<RecordedInvocation> chunk = chunks.get(chunkIndex);
+        return chunk == null ? null : chunk.get(position - (FIRST_CHUNK_SIZE << chunkIndex));
+    }
+
+    /**
+     * Get the chunk holding {@code position}, i.e. an index offset by the size of the first chunk: chunk {@code k}
+     * holds positions {@code FIRST_CHUNK_SIZE << k} up to twice that.
+     */
+    private static int chunkIndex(int position)
+    {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_CHUNK_BITS;
+    }
+}
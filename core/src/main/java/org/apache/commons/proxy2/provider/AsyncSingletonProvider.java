@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+
+/**
+ * Wraps another object provider, calling it once in the background as soon as this provider is constructed.
+ * {@link #getObject()} waits for that call to complete if necessary and afterwards returns its result without
+ * locking. A failure of the background call is rethrown, wrapped in an {@link ObjectProviderException}, by every
+ * {@link #getObject()} call.
+ * 
+ * @since 2.1
+ */
+public class AsyncSingletonProvider<T> extends ProviderDecorator<T>
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile T instance;
+
+    private transient Future<T> future;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new AsyncSingletonProvider instance.
+     * 
+     * @param inner
+     * @param executor
+     *            used to call {@code inner}
+     */
+    public AsyncSingletonProvider(ObjectProvider<? extends T> inner, Executor executor)
+    {
+        super(inner);
+        Validate.notNull(executor, "Executor cannot be null.");
+        final FutureTask<T> task = new FutureTask<T>(new Callable<T>()
+        {
+            @Override
+            public T call()
+            {
+                final T result = AsyncSingletonProvider.super.getObject();
+                // Garbage collection
+                setInner(null);
+                return result;
+            }
+        });
+        this.future = task;
+        executor.execute(task);
+    }
+
+    //******************************************************************************************************************
+    // ObjectProvider Implementation
+    //******************************************************************************************************************
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getObject()
+    {
+        T result = instance;
+        if (result == null && future != null)
+        {
+            result = await();
+            instance = result;
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Learn whether the background call of the wrapped provider has completed, successfully or not.
+     * 
+     * @return boolean
+     */
+    public boolean isDone()
+    {
+        return instance != null || future == null || future.isDone();
+    }
+
+    private T await()
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ObjectProviderException(e, "Interrupted while awaiting background initialization.");
+        }
+        catch (ExecutionException e)
+        {
+            throw new ObjectProviderException(e.getCause(), "Background initialization failed.");
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        // the background task is not serializable; complete it so its result is written instead:
+        getObject();
+        out.defaultWriteObject();
+    }
+}
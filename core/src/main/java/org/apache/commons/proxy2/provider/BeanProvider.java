@@ -18,13 +18,17 @@
 package org.apache.commons.proxy2.provider;
 
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.proxy2.ObjectProvider;
 import org.apache.commons.proxy2.exception.ObjectProviderException;
 
 /**
- * Uses <code>Class.newInstance()</code> to instantiate an object.
+ * Uses <code>Class.newInstance()</code> to instantiate an object. The no-argument constructor is resolved once, when
+ * the provider is constructed, so that each call merely invokes it.
  * 
  * @since 1.0
  */
@@ -39,6 +43,12 @@ public class BeanProvider<T> implements ObjectProvider<T>, Serializable
 
     private final Class<? extends T> beanClass;
 
+    /**
+     * The accessible no-argument constructor of {@link #beanClass}, or {@code null} to fall back to
+     * {@link Class#newInstance()} (and its error reporting).
+     */
+    private final transient Constructor<? extends T> constructor;
+
     //******************************************************************************************************************
     // Constructors
     //******************************************************************************************************************
@@ -53,6 +63,7 @@ public class BeanProvider<T> implements ObjectProvider<T>, Serializable
     {
         Validate.notNull(beanClass, "Bean class cannot be null.");
         this.beanClass = beanClass;
+        this.constructor = resolveConstructor(beanClass);
     }
 
     //******************************************************************************************************************
@@ -67,7 +78,24 @@ public class BeanProvider<T> implements ObjectProvider<T>, Serializable
     {
         try
         {
-            return beanClass.newInstance();
+            if (constructor == null)
+            {
+                return beanClass.newInstance();
+            }
+            return constructor.newInstance();
+        }
+        catch (InvocationTargetException e)
+        {
+            final Throwable cause = e.getTargetException();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new ObjectProviderException(cause, "Constructor for %s threw an exception.", beanClass);
         }
         catch (InstantiationException e)
         {
@@ -78,4 +106,36 @@ public class BeanProvider<T> implements ObjectProvider<T>, Serializable
             throw new ObjectProviderException(e, "Constructor for %s is not accessible.", beanClass);
         }
     }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    private static <T> Constructor<T> resolveConstructor(Class<T> beanClass)
+    {
+        if (Modifier.isAbstract(beanClass.getModifiers()) || !Modifier.isPublic(beanClass.getModifiers()))
+        {
+            return null;
+        }
+        try
+        {
+            final Constructor<T> result = beanClass.getConstructor();
+            // public constructor of a public class; skip the access check on each invocation:
+            result.setAccessible(true);
+            return result;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (SecurityException e)
+        {
+            return null;
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new BeanProvider<T>(beanClass);
+    }
 }
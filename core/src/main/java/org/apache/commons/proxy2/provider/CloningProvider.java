@@ -18,16 +18,17 @@
 package org.apache.commons.proxy2.provider;
 
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
-import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
-import org.apache.commons.lang3.exception.CloneFailedException;
 import org.apache.commons.lang3.reflect.MethodUtils;
 import org.apache.commons.proxy2.ObjectProvider;
 import org.apache.commons.proxy2.exception.ObjectProviderException;
 
 /**
- * Merely calls <code>clone()</code> (reflectively) on the given {@link Cloneable} object.
+ * Merely calls <code>clone()</code> (reflectively) on the given {@link Cloneable} object. The <code>clone()</code>
+ * method is resolved once, when the provider is constructed.
  * 
  * @since 1.0
  */
@@ -44,6 +45,8 @@ public class CloningProvider<T extends Cloneable> implements ObjectProvider<T>,
 
     private final T cloneable;
 
+    private final transient Method cloneMethod;
+
     //******************************************************************************************************************
     // Constructors
     //******************************************************************************************************************
@@ -57,9 +60,20 @@ public class CloningProvider<T extends Cloneable> implements ObjectProvider<T>,
     public CloningProvider(T cloneable)
     {
         Validate.notNull(cloneable, "Cloneable object cannot be null.");
-        Validate.isTrue(MethodUtils.getAccessibleMethod(cloneable.getClass(), "clone") != null,
+        final Method method = MethodUtils.getAccessibleMethod(cloneable.getClass(), "clone");
+        Validate.isTrue(method != null,
                 String.format("Class %s does not override clone() method as public.", cloneable.getClass().getName()));
+        try
+        {
+            // public method of a public type; skip the access check on each invocation:
+            method.setAccessible(true);
+        }
+        catch (SecurityException e)
+        {
+            // invoke with access checks
+        }
         this.cloneable = cloneable;
+        this.cloneMethod = method;
     }
 
     //******************************************************************************************************************
@@ -74,11 +88,27 @@ public class CloningProvider<T extends Cloneable> implements ObjectProvider<T>,
     {
         try
         {
-            return ObjectUtils.clone(cloneable);
+            @SuppressWarnings("unchecked") // clone() of a T is a T
+            final T result = (T) cloneMethod.invoke(cloneable);
+            return result;
+        }
+        catch (InvocationTargetException e)
+        {
+            throw new ObjectProviderException(e.getTargetException(), "Exception cloning Cloneable type %s",
+                    cloneable.getClass().getName());
         }
-        catch (CloneFailedException e) {
-            throw new ObjectProviderException(e.getMessage(), e.getCause());
+        catch (IllegalAccessException e)
+        {
+            throw new ObjectProviderException(e, "Cannot clone Cloneable type %s", cloneable.getClass().getName());
         }
     }
 
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    private Object readResolve()
+    {
+        return new CloningProvider<T>(cloneable);
+    }
 }
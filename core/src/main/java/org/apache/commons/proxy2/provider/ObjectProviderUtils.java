@@ -17,7 +17,17 @@
 
 package org.apache.commons.proxy2.provider;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
 
 public final class ObjectProviderUtils
 {
@@ -25,6 +35,11 @@ public final class ObjectProviderUtils
     // Static Methods
     //******************************************************************************************************************
 
+    public static <T> ObjectProvider<T> asyncSingleton(ObjectProvider<T> inner, Executor executor)
+    {
+        return new AsyncSingletonProvider<T>(inner, executor);
+    }
+
     public static <T> ObjectProvider<T> bean(Class<T> beanClass)
     {
         return new BeanProvider<T>(beanClass);
@@ -45,11 +60,74 @@ public final class ObjectProviderUtils
         return new NullProvider<T>();
     }
 
+    public static <T> PooledProvider<T> pooled(ObjectProvider<? extends T> factory, int maxSize)
+    {
+        return new PooledProvider<T>(factory, maxSize);
+    }
+
+    public static <T> ScopedProvider<T> scoped()
+    {
+        return new ScopedProvider<T>();
+    }
+
     public static <T> ObjectProvider<T> singleton(ObjectProvider<T> inner)
     {
         return new SingletonProvider<T>(inner);
     }
 
+    public static <T> StripedProvider<T> striped(ObjectProvider<? extends T> inner)
+    {
+        return new StripedProvider<T>(inner);
+    }
+
+    public static <T> ThreadLocalProvider<T> threadLocal(ObjectProvider<? extends T> inner)
+    {
+        return new ThreadLocalProvider<T>(inner);
+    }
+
+    /**
+     * Call {@link ObjectProvider#getObject()} on each of {@code providers} in parallel on {@code executor}, waiting for
+     * all calls to complete. Intended to initialize {@link SingletonProvider}s at startup rather than on first use; any
+     * {@link ExecutorService} may be used, for instance a fork/join pool where available.
+     * 
+     * @param executor
+     * @param providers
+     * @throws ObjectProviderException
+     *             wrapping the first failure encountered, after all calls have completed
+     */
+    public static void warmUp(ExecutorService executor, ObjectProvider<?>... providers)
+    {
+        Validate.notNull(executor, "Executor cannot be null.");
+        final List<Callable<Object>> calls = new ArrayList<Callable<Object>>(providers.length);
+        for (final ObjectProvider<?> provider : Validate.noNullElements(providers))
+        {
+            calls.add(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    return provider.getObject();
+                }
+            });
+        }
+        try
+        {
+            for (Future<Object> result : executor.invokeAll(calls))
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ObjectProviderException(e, "Interrupted while warming up providers.");
+        }
+        catch (ExecutionException e)
+        {
+            throw new ObjectProviderException(e.getCause(), "Provider warm-up failed.");
+        }
+    }
+
     //******************************************************************************************************************
     // Constructors
     //******************************************************************************************************************
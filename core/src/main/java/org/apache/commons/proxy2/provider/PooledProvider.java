@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.ProxyFactory;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+
+/**
+ * Maintains a bounded pool of objects created by a factory {@link ObjectProvider}, for delegates that are expensive to
+ * create and not thread-safe. Idle objects are kept in a non-blocking queue and permits are counted by a
+ * {@link Semaphore}, so borrowing and returning only block when the pool is exhausted.
+ * <p>
+ * The {@link Invoker} obtained from {@link #invoker()} borrows an object for the duration of each method invocation
+ * and returns it in a {@code finally} block; this is the way to put a pool behind a proxy:
+ * 
+ * <pre>
+ * Parser parser = pool.createProxy(proxyFactory, Parser.class);
+ * </pre>
+ * 
+ * {@link #getObject()} merely borrows an object; callers using it directly must pass the object to
+ * {@link #returnObject(Object)} when done with it. For that reason a pool must <em>not</em> be passed to
+ * {@link ProxyFactory#createDelegatorProxy(ObjectProvider, Class...)}, which would borrow an object on every call
+ * and never return it, exhausting the pool.
+ * </p>
+ * <p>
+ * Borrowed objects are tracked by identity in a concurrent map, without a lock shared by all borrowers, so returning
+ * an object this pool did not lend, or returning it twice, is rejected instead of corrupting the pool.
+ * </p>
+ * <p>
+ * Serializing a {@link PooledProvider} writes only its configuration; pooled objects are not retained.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class PooledProvider<T> implements ObjectProvider<T>
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private final ObjectProvider<? extends T> factory;
+    private final int maxSize;
+    private final long maxWaitNanos;
+
+    private final transient Queue<T> idle = new ConcurrentLinkedQueue<T>();
+    private final transient Semaphore permits;
+    private final transient ConcurrentMap<Identity, Boolean> borrowed = new ConcurrentHashMap<Identity, Boolean>();
+    private final transient AtomicLong created = new AtomicLong();
+    private final transient AtomicLong borrowCount = new AtomicLong();
+    private final transient AtomicLong borrowWaitNanos = new AtomicLong();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new PooledProvider instance which waits indefinitely for an object when the pool is exhausted.
+     * 
+     * @param factory
+     *            creates new pooled objects
+     * @param maxSize
+     *            maximum number of objects
+     */
+    public PooledProvider(ObjectProvider<? extends T> factory, int maxSize)
+    {
+        this(factory, maxSize, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new PooledProvider instance.
+     * 
+     * @param factory
+     *            creates new pooled objects
+     * @param maxSize
+     *            maximum number of objects
+     * @param maxWait
+     *            maximum time to wait for an object when the pool is exhausted
+     * @param unit
+     *            unit of {@code maxWait}
+     */
+    public PooledProvider(ObjectProvider<? extends T> factory, int maxSize, long maxWait, TimeUnit unit)
+    {
+        Validate.notNull(factory, "Factory cannot be null.");
+        Validate.isTrue(maxSize > 0, "Pool size must be positive.");
+        Validate.isTrue(maxWait >= 0, "Maximum wait cannot be negative.");
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.permits = new Semaphore(maxSize);
+    }
+
+    //******************************************************************************************************************
+    // ObjectProvider Implementation
+    //******************************************************************************************************************
+
+    /**
+     * Borrow an object from the pool, creating it if no idle object is available. The object must be handed back to
+     * {@link #returnObject(Object)}.
+     * 
+     * @return T
+     * @throws ObjectProviderException
+     *             if no object becomes available in time, or the factory fails
+     */
+    @Override
+    public T getObject()
+    {
+        final long start = System.nanoTime();
+        acquire();
+        borrowWaitNanos.addAndGet(System.nanoTime() - start);
+        borrowCount.incrementAndGet();
+        final T pooled = idle.poll();
+        if (pooled != null)
+        {
+            borrowed.put(new Identity(pooled), Boolean.TRUE);
+            return pooled;
+        }
+        try
+        {
+            final T result = Validate.notNull(factory.getObject(), "Factory provided null.");
+            created.incrementAndGet();
+            borrowed.put(new Identity(result), Boolean.TRUE);
+            return result;
+        }
+        catch (RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Return an object previously obtained from {@link #getObject()} to the pool.
+     * 
+     * @param object
+     * @throws IllegalArgumentException
+     *             if {@code object} is not currently borrowed from this pool
+     */
+    public void returnObject(T object)
+    {
+        Validate.isTrue(borrowed.remove(new Identity(Validate.notNull(object))) != null,
+                "Object was not borrowed from this pool or has already been returned.");
+        idle.offer(object);
+        permits.release();
+    }
+
+    /**
+     * Create a proxy which calls each invoked method on an object borrowed from this pool for the duration of the call,
+     * using {@link #invoker()}.
+     * 
+     * @param proxyFactory
+     * @param proxyClasses
+     * @return P
+     */
+    public <P> P createProxy(ProxyFactory proxyFactory, Class<?>... proxyClasses)
+    {
+        return proxyFactory.<P> createInvokerProxy(invoker(), proxyClasses);
+    }
+
+    /**
+     * Get an {@link Invoker} which calls each invoked method on an object borrowed from this pool for the duration of
+     * the call.
+     * 
+     * @return Invoker
+     */
+    public Invoker invoker()
+    {
+        return new PooledInvoker<T>(this);
+    }
+
+    /**
+     * Get the maximum number of objects in this pool.
+     * 
+     * @return int
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of objects currently borrowed.
+     * 
+     * @return int
+     */
+    public int getActiveCount()
+    {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of idle objects available for borrowing without creation.
+     * 
+     * @return int
+     */
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Get the number of objects created by the factory.
+     * 
+     * @return long
+     */
+    public long getCreatedCount()
+    {
+        return created.get();
+    }
+
+    /**
+     * Get the number of completed borrows.
+     * 
+     * @return long
+     */
+    public long getBorrowCount()
+    {
+        return borrowCount.get();
+    }
+
+    /**
+     * Get the total time spent waiting for objects, over all completed borrows.
+     * 
+     * @param unit
+     * @return long
+     */
+    public long getBorrowWaitTime(TimeUnit unit)
+    {
+        return unit.convert(borrowWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the fraction of the pool currently borrowed, from 0 to 1.
+     * 
+     * @return double
+     */
+    public double getUtilization()
+    {
+        return (double) getActiveCount() / maxSize;
+    }
+
+    private void acquire()
+    {
+        if (permits.tryAcquire())
+        {
+            return;
+        }
+        try
+        {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS))
+            {
+                throw new ObjectProviderException("No pooled object available within %d ms.",
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ObjectProviderException(e, "Interrupted while waiting for a pooled object.");
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new PooledProvider<T>(factory, maxSize, maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Map key comparing its object by identity.
+     */
+    private static final class Identity
+    {
+        private final Object object;
+
+        private Identity(Object object)
+        {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Identity && ((Identity) o).object == object;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(object);
+        }
+    }
+
+    private static final class PooledInvoker<T> implements Invoker
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final PooledProvider<T> pool;
+
+        private PooledInvoker(PooledProvider<T> pool)
+        {
+            this.pool = pool;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable
+        {
+            final T delegate = pool.getObject();
+            try
+            {
+                return method.invoke(delegate, arguments);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getTargetException();
+            }
+            finally
+            {
+                pool.returnObject(delegate);
+            }
+        }
+    }
+}
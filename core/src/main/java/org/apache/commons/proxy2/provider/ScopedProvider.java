@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+
+/**
+ * Provides the object bound to the current scope by {@link #runWith(Object, Runnable)} or
+ * {@link #callWith(Object, Callable)}, for instance to route a delegator proxy to a request-scoped object. A binding
+ * lasts only for the duration of the scope; bindings nest, with the innermost one in effect, and the previous binding
+ * is restored when a scope exits. Nothing is retained by a thread once its outermost scope has exited.
+ * <p>
+ * Where the platform provides {@code java.lang.ScopedValue} (found by reflection, as this library targets older
+ * platforms), bindings are held by a scoped value, which is cheap to bind on virtual threads and is inherited by
+ * subtasks of structured concurrency; elsewhere they are held by a {@link ThreadLocal}.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class ScopedProvider<T> implements ObjectProvider<T>
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Binding<T> binding = ScopedValueBinding.SUPPORTED ? new ScopedValueBinding<T>()
+            : new ThreadLocalBinding<T>();
+
+    //******************************************************************************************************************
+    // ObjectProvider Implementation
+    //******************************************************************************************************************
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws ObjectProviderException
+     *             if no object is bound in the current scope
+     */
+    @Override
+    public T getObject()
+    {
+        final T result = binding.get();
+        if (result == null)
+        {
+            throw new ObjectProviderException("No object is bound in the current scope.");
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Learn whether an object is bound in the current scope.
+     * 
+     * @return boolean
+     */
+    public boolean isBound()
+    {
+        return binding.get() != null;
+    }
+
+    /**
+     * Learn whether bindings are held by a {@code java.lang.ScopedValue} rather than a {@link ThreadLocal}.
+     * 
+     * @return boolean
+     */
+    public boolean isScopedValueBacked()
+    {
+        return binding instanceof ScopedValueBinding<?>;
+    }
+
+    /**
+     * Run {@code block} with {@code object} bound.
+     * 
+     * @param object
+     * @param block
+     */
+    public void runWith(T object, Runnable block)
+    {
+        Validate.notNull(object, "Bound object cannot be null.");
+        Validate.notNull(block, "Block cannot be null.");
+        binding.run(object, block);
+    }
+
+    /**
+     * Call {@code block} with {@code object} bound.
+     * 
+     * @param object
+     * @param block
+     * @return the result of {@code block}
+     * @throws Exception
+     *             as thrown by {@code block}
+     */
+    public <V> V callWith(T object, Callable<V> block) throws Exception
+    {
+        Validate.notNull(object, "Bound object cannot be null.");
+        Validate.notNull(block, "Block cannot be null.");
+        final CallingRunnable<V> runnable = new CallingRunnable<V>(block);
+        binding.run(object, runnable);
+        return runnable.getResult();
+    }
+
+    private Object readResolve()
+    {
+        return new ScopedProvider<T>();
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Holder of the bindings of one {@link ScopedProvider}.
+     */
+    private interface Binding<T>
+    {
+        T get();
+
+        void run(T object, Runnable block);
+    }
+
+    private static final class ThreadLocalBinding<T> implements Binding<T>
+    {
+        private final ThreadLocal<T> local = new ThreadLocal<T>();
+
+        @Override
+        public T get()
+        {
+            return local.get();
+        }
+
+        @Override
+        public void run(T object, Runnable block)
+        {
+            final T previous = local.get();
+            local.set(object);
+            try
+            {
+                block.run();
+            }
+            finally
+            {
+                if (previous == null)
+                {
+                    local.remove();
+                }
+                else
+                {
+                    local.set(previous);
+                }
+            }
+        }
+    }
+
+    private static final class ScopedValueBinding<T> implements Binding<T>
+    {
+        private static final Method NEW_INSTANCE;
+        private static final Method WHERE;
+        private static final Method RUN;
+        private static final Method IS_BOUND;
+        private static final Method GET;
+        static final boolean SUPPORTED;
+
+        static
+        {
+            Method newInstance = null;
+            Method where = null;
+            Method run = null;
+            Method isBound = null;
+            Method get = null;
+            boolean supported = false;
+            try
+            {
+                // Java 21+ (a preview API before Java 25):
+                final Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+                newInstance = scopedValueClass.getMethod("newInstance");
+                where = scopedValueClass.getMethod("where", scopedValueClass, Object.class);
+                run = where.getReturnType().getMethod("run", Runnable.class);
+                isBound = scopedValueClass.getMethod("isBound");
+                get = scopedValueClass.getMethod("get");
+                // make sure the API is actually usable here:
+                final Object probe = newInstance.invoke(null);
+                final boolean[] bound = new boolean[1];
+                run.invoke(where.invoke(null, probe, Boolean.TRUE), new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        bound[0] = true;
+                    }
+                });
+                supported = bound[0];
+            }
+            catch (Throwable t)
+            {
+                supported = false;
+            }
+            NEW_INSTANCE = newInstance;
+            WHERE = where;
+            RUN = run;
+            IS_BOUND = isBound;
+            GET = get;
+            SUPPORTED = supported;
+        }
+
+        private final Object scopedValue = invoke(NEW_INSTANCE, null);
+
+        @Override
+        @SuppressWarnings("unchecked") // only Ts are bound
+        public T get()
+        {
+            return Boolean.TRUE.equals(invoke(IS_BOUND, scopedValue)) ? (T) invoke(GET, scopedValue) : null;
+        }
+
+        @Override
+        public void run(T object, Runnable block)
+        {
+            invoke(RUN, invoke(WHERE, null, scopedValue, object), block);
+        }
+
+        private static Object invoke(Method method, Object target, Object... arguments)
+        {
+            try
+            {
+                return method.invoke(target, arguments);
+            }
+            catch (InvocationTargetException e)
+            {
+                final Throwable cause = e.getTargetException();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error) cause;
+                }
+                throw new ObjectProviderException(cause, "Unable to use scoped value.");
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new ObjectProviderException(e, "Unable to use scoped value.");
+            }
+        }
+    }
+
+    /**
+     * Adapts a {@link Callable} to the {@link Runnable} bindings run, keeping its result or exception.
+     */
+    private static final class CallingRunnable<V> implements Runnable
+    {
+        private final Callable<V> callable;
+        private V result;
+        private Exception exception;
+
+        CallingRunnable(Callable<V> callable)
+        {
+            this.callable = callable;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                result = callable.call();
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                exception = e;
+            }
+        }
+
+        V getResult() throws Exception
+        {
+            if (exception != null)
+            {
+                throw exception;
+            }
+            return result;
+        }
+    }
+}
@@ -21,7 +21,7 @@ import org.apache.commons.proxy2.ObjectProvider;
 
 /**
  * Wraps another object provider, making sure to only call it once, returning the value returned from the wrapped
- * provider on all subsequent invocations.
+ * provider on all subsequent invocations. Once the value is available it is read without locking.
  * 
  * @since 1.0
  */
@@ -33,7 +33,7 @@ public class SingletonProvider<T> extends ProviderDecorator<T>
 
     private static final long serialVersionUID = 1L;
 
-    private T instance;
+    private volatile T instance;
 
     //******************************************************************************************************************
     // Constructors
@@ -59,15 +59,21 @@ public class SingletonProvider<T> extends ProviderDecorator<T>
     @Override
     public T getObject()
     {
-        synchronized (this)
+        T result = instance;
+        if (result == null)
         {
-            if (instance == null)
+            synchronized (this)
             {
-                instance = super.getObject();
-                // Garbage collection
-                setInner(null);
+                result = instance;
+                if (result == null)
+                {
+                    result = super.getObject();
+                    instance = result;
+                    // Garbage collection
+                    setInner(null);
+                }
             }
-            return instance;
         }
+        return result;
     }
 }
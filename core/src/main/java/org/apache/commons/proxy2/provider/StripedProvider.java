@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.proxy2.ObjectProvider;
+
+/**
+ * Wraps another object provider, lazily creating a fixed number of objects ("stripes") and handing each calling thread
+ * the object of the stripe its identity hashes to. By default there is one stripe per available processor. Callers
+ * spread over the stripes rather than contending on a single shared delegate.
+ * <p>
+ * <strong>Each stripe's object is shared by every thread that hashes to it, and may be used by several of them at the
+ * same time.</strong> Unlike {@link ThreadLocalProvider}, this provider does not give a thread exclusive use of its
+ * object, so delegates must be thread-safe or internally synchronized; striping only reduces contention on them. For
+ * delegates that are not thread-safe, use {@link ThreadLocalProvider} or {@link PooledProvider} instead.
+ * </p>
+ * <p>
+ * {@link #dispose()} discards all objects, invoking the optional {@link Disposer}.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class StripedProvider<T> extends ProviderDecorator<T>
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private final int stripes;
+
+    private final Disposer<? super T> disposer;
+
+    private final transient AtomicReferenceArray<T> objects;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new StripedProvider instance with one stripe per available processor.
+     * 
+     * @param inner
+     */
+    public StripedProvider(ObjectProvider<? extends T> inner)
+    {
+        this(inner, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Create a new StripedProvider instance.
+     * 
+     * @param inner
+     * @param stripes
+     *            number of objects to create at most
+     * @param disposer
+     *            invoked for each discarded object; may be {@code null}
+     */
+    public StripedProvider(ObjectProvider<? extends T> inner, int stripes, Disposer<? super T> disposer)
+    {
+        super(inner);
+        Validate.isTrue(stripes > 0, "Stripe count must be positive.");
+        this.stripes = stripes;
+        this.disposer = disposer;
+        this.objects = new AtomicReferenceArray<T>(stripes);
+    }
+
+    //******************************************************************************************************************
+    // ObjectProvider Implementation
+    //******************************************************************************************************************
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getObject()
+    {
+        final int index = stripe(Thread.currentThread());
+        T result = objects.get(index);
+        if (result == null)
+        {
+            final T candidate = super.getObject();
+            if (objects.compareAndSet(index, null, candidate))
+            {
+                result = candidate;
+            }
+            else
+            {
+                // another thread won the race for this stripe:
+                dispose(candidate);
+                result = objects.get(index);
+            }
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the number of stripes.
+     * 
+     * @return int
+     */
+    public int getStripes()
+    {
+        return stripes;
+    }
+
+    /**
+     * Discard all objects; subsequent {@link #getObject()} calls create new ones.
+     */
+    public void dispose()
+    {
+        for (int i = 0; i < stripes; i++)
+        {
+            final T object = objects.getAndSet(i, null);
+            if (object != null)
+            {
+                dispose(object);
+            }
+        }
+    }
+
+    private int stripe(Thread thread)
+    {
+        // spread the identity hash so that consecutively allocated threads land on different stripes:
+        int h = System.identityHashCode(thread);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return (h & Integer.MAX_VALUE) % stripes;
+    }
+
+    private void dispose(T object)
+    {
+        if (disposer != null)
+        {
+            disposer.dispose(object);
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new StripedProvider<T>(getInner(), stripes, disposer);
+    }
+}
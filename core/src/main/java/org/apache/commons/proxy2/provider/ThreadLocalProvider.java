@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.proxy2.ObjectProvider;
+
+/**
+ * Wraps another object provider, calling it at most once per thread and returning that thread's object on all of its
+ * subsequent invocations. This gives each thread its own delegate, so delegates need not be thread-safe.
+ * <p>
+ * Objects are discarded by {@link #remove()}, for the calling thread, or by {@link #dispose()}, for all threads;
+ * either invokes the optional {@link Disposer}. Created objects are tracked by their threads, weakly: the object of a
+ * thread that has terminated is discarded (and disposed) the next time any thread obtains its first object, and is not
+ * retained by this provider once the thread itself is garbage collected.
+ * </p>
+ * 
+ * @since 2.1
+ */
+public class ThreadLocalProvider<T> extends ProviderDecorator<T>
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private final Disposer<? super T> disposer;
+
+    private transient volatile ThreadLocal<T> local = new ThreadLocal<T>();
+
+    // guarded by itself:
+    private final transient Map<Thread, T> created = new WeakHashMap<Thread, T>();
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    /**
+     * Create a new ThreadLocalProvider instance.
+     * 
+     * @param inner
+     */
+    public ThreadLocalProvider(ObjectProvider<? extends T> inner)
+    {
+        this(inner, null);
+    }
+
+    /**
+     * Create a new ThreadLocalProvider instance.
+     * 
+     * @param inner
+     * @param disposer
+     *            invoked for each discarded object; may be {@code null}
+     */
+    public ThreadLocalProvider(ObjectProvider<? extends T> inner, Disposer<? super T> disposer)
+    {
+        super(inner);
+        this.disposer = disposer;
+    }
+
+    //******************************************************************************************************************
+    // ObjectProvider Implementation
+    //******************************************************************************************************************
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getObject()
+    {
+        final ThreadLocal<T> current = local;
+        T result = current.get();
+        if (result == null)
+        {
+            result = super.getObject();
+            current.set(result);
+            track(result);
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Discard the calling thread's object, if any; the thread's next {@link #getObject()} call creates a new one.
+     */
+    public void remove()
+    {
+        final ThreadLocal<T> current = local;
+        final T object = current.get();
+        if (object != null)
+        {
+            current.remove();
+            final boolean tracked;
+            synchronized (created)
+            {
+                tracked = created.get(Thread.currentThread()) == object;
+                if (tracked)
+                {
+                    created.remove(Thread.currentThread());
+                }
+            }
+            if (tracked)
+            {
+                dispose(object);
+            }
+        }
+    }
+
+    /**
+     * Discard the objects of all threads; subsequent {@link #getObject()} calls create new ones.
+     */
+    public void dispose()
+    {
+        local = new ThreadLocal<T>();
+        final List<T> discarded;
+        synchronized (created)
+        {
+            discarded = new ArrayList<T>(created.values());
+            created.clear();
+        }
+        for (T object : discarded)
+        {
+            dispose(object);
+        }
+    }
+
+    /**
+     * Track the calling thread's new object, first discarding the objects of terminated threads.
+     */
+    private void track(T object)
+    {
+        final List<T> expired = new ArrayList<T>();
+        synchronized (created)
+        {
+            for (Iterator<Map.Entry<Thread, T>> entries = created.entrySet().iterator(); entries.hasNext();)
+            {
+                final Map.Entry<Thread, T> entry = entries.next();
+                if (!entry.getKey().isAlive())
+                {
+                    expired.add(entry.getValue());
+                    entries.remove();
+                }
+            }
+            created.put(Thread.currentThread(), object);
+        }
+        for (T discarded : expired)
+        {
+            dispose(discarded);
+        }
+    }
+
+    private void dispose(T object)
+    {
+        if (disposer != null)
+        {
+            disposer.dispose(object);
+        }
+    }
+
+    private Object readResolve()
+    {
+        return new ThreadLocalProvider<T>(getInner(), disposer);
+    }
+}
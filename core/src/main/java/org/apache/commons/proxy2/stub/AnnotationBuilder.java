@@ -18,6 +18,7 @@ package org.apache.commons.proxy2.stub;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -36,6 +37,7 @@ import org.apache.commons.proxy2.ObjectProvider;
 import org.apache.commons.proxy2.ProxyFactory;
 import org.apache.commons.proxy2.ProxyUtils;
 import org.apache.commons.proxy2.impl.AbstractProxyFactory;
+import org.apache.commons.proxy2.provider.ConstantProvider;
 import org.apache.commons.proxy2.provider.ObjectProviderUtils;
 
 public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
@@ -50,11 +52,45 @@ public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
 
         private final ObjectProvider<?> provider;
         private final Interceptor methodInterceptor;
+        private final boolean constant;
 
-        public InterceptorInvocationHandler(ObjectProvider<?> provider, Interceptor methodInterceptor)
+        // when the member values are fixed, hashCode and toString are computed at most once (racy single-check):
+        private transient volatile int hashCode;
+        private transient volatile String toString;
+
+        /**
+         * Create a new InterceptorInvocationHandler.
+         *
+         * @param provider
+         * @param methodInterceptor
+         * @param constant
+         *            whether the annotation members always yield the same values, so that hashCode and toString may be
+         *            cached; false when they are read from an arbitrary {@link ObjectProvider}
+         */
+        public InterceptorInvocationHandler(ObjectProvider<?> provider, Interceptor methodInterceptor,
+                boolean constant)
         {
             this.provider = provider;
             this.methodInterceptor = methodInterceptor;
+            this.constant = constant;
+        }
+
+        /**
+         * Learn whether {@code target} yields fixed member values: anything but a delegator proxy over an arbitrary
+         * provider.
+         *
+         * @param target
+         * @return boolean
+         */
+        static boolean isConstant(Object target)
+        {
+            if (Proxy.isProxyClass(target.getClass()))
+            {
+                final InvocationHandler handler = Proxy.getInvocationHandler(target);
+                return !(handler instanceof InterceptorInvocationHandler)
+                        || ((InterceptorInvocationHandler) handler).constant;
+            }
+            return true;
         }
 
         /**
@@ -65,21 +101,73 @@ public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
         {
             if (ProxyUtils.isHashCode(method))
             {
-                return Integer.valueOf(AnnotationUtils.hashCode((Annotation) proxy));
+                return Integer.valueOf(hashCode((Annotation) proxy));
             }
             if (ProxyUtils.isEqualsMethod(method))
             {
-                return Boolean.valueOf(args[0] instanceof Annotation
-                        && AnnotationUtils.equals((Annotation) proxy, (Annotation) args[0]));
+                return Boolean.valueOf(equals((Annotation) proxy, args[0]));
             }
             if ("toString".equals(method.getName()) && method.getParameterTypes().length == 0)
             {
-                return AnnotationUtils.toString((Annotation) proxy);
+                if (!constant)
+                {
+                    return AnnotationUtils.toString((Annotation) proxy);
+                }
+                String result = toString;
+                if (result == null)
+                {
+                    result = AnnotationUtils.toString((Annotation) proxy);
+                    toString = result;
+                }
+                return result;
             }
             final ReflectionInvocation invocation = new ReflectionInvocation(provider.getObject(), method, args);
-            return methodInterceptor.intercept(invocation);
+            // like those of compiled annotations, array members are copied so that callers cannot change them:
+            return cloneArray(methodInterceptor.intercept(invocation));
+        }
+
+        private int hashCode(Annotation proxy)
+        {
+            if (!constant)
+            {
+                return AnnotationUtils.hashCode(proxy);
+            }
+            int result = hashCode;
+            if (result == 0)
+            {
+                result = AnnotationUtils.hashCode(proxy);
+                hashCode = result;
+            }
+            return result;
         }
 
+        private boolean equals(Annotation proxy, Object other)
+        {
+            if (proxy == other)
+            {
+                return true;
+            }
+            if (!(other instanceof Annotation))
+            {
+                return false;
+            }
+            if (Proxy.isProxyClass(other.getClass()))
+            {
+                // cached hash codes that differ prove inequality without reading any member:
+                final InvocationHandler otherHandler = Proxy.getInvocationHandler(other);
+                if (constant && otherHandler instanceof InterceptorInvocationHandler)
+                {
+                    final InterceptorInvocationHandler otherInterceptorHandler =
+                            (InterceptorInvocationHandler) otherHandler;
+                    if (otherInterceptorHandler.constant
+                            && otherInterceptorHandler.hashCode((Annotation) other) != hashCode(proxy))
+                    {
+                        return false;
+                    }
+                }
+            }
+            return AnnotationUtils.equals(proxy, (Annotation) other);
+        }
     }
 
     private static class ReflectionInvocation implements Invocation
@@ -150,7 +238,8 @@ public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
         {
             @SuppressWarnings("unchecked") // type inference
             final T result = (T) Proxy.newProxyInstance(classLoader, proxyClasses, new InterceptorInvocationHandler(
-                    ObjectProviderUtils.constant(target), interceptor));
+                    ObjectProviderUtils.constant(target), interceptor,
+                    InterceptorInvocationHandler.isConstant(target)));
             return result;
         }
 
@@ -169,7 +258,7 @@ public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
                         {
                             return invocation.proceed();
                         }
-                    }));
+                    }, delegateProvider instanceof ConstantProvider<?>));
             return result;
         }
     };
@@ -219,6 +308,24 @@ public class AnnotationBuilder<A extends Annotation> extends StubBuilder<A>
         }
     }
 
+    /**
+     * Shallow-copy {@code value} if it is an array.
+     *
+     * @param value
+     * @return {@code value} or a copy of it
+     */
+    static Object cloneArray(Object value)
+    {
+        if (value == null || !value.getClass().isArray())
+        {
+            return value;
+        }
+        final int length = Array.getLength(value);
+        final Object result = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, result, 0, length);
+        return result;
+    }
+
     public static <A extends Annotation> A buildDefault(Class<A> type)
     {
         return of(type).build();
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.stub;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Caller-owned pool of canonical annotations built by {@link AnnotationBuilder}. Repeated calls to
+ * {@link #intern(Class, Map)} with the same type and equal member values return the same instance, whose hash code is
+ * computed only once; this makes interned annotations cheap to use as map keys. Members left out of the map and
+ * members set to their default value are equivalent. Interned annotations are retained until {@link #clear()} is
+ * called or the interner itself becomes unreachable, so the pool, and the class loaders of the annotation types it
+ * holds, live exactly as long as its owner wants them to.
+ *
+ * @since 2.1
+ */
+public final class AnnotationInterner
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final ConcurrentMap<InternKey, Annotation> interned = new ConcurrentHashMap<InternKey, Annotation>();
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the canonical instance of annotation {@code type} having the specified member values.
+     *
+     * @param type
+     * @param members
+     * @return A
+     * @throws IllegalArgumentException
+     *             if {@code members} names a member {@code type} does not declare
+     */
+    public <A extends Annotation> A intern(Class<A> type, Map<String, ?> members)
+    {
+        final InternKey key = new InternKey(Validate.notNull(type), normalize(type, Validate.notNull(members)));
+        Annotation result = interned.get(key);
+        if (result == null)
+        {
+            final A built = AnnotationBuilder.of(type).withMembers(key.members()).build();
+            result = interned.putIfAbsent(key, built);
+            if (result == null)
+            {
+                result = built;
+            }
+        }
+        return type.cast(result);
+    }
+
+    /**
+     * Get the number of interned annotations.
+     *
+     * @return int
+     */
+    public int size()
+    {
+        return interned.size();
+    }
+
+    /**
+     * Release all interned annotations.
+     */
+    public void clear()
+    {
+        interned.clear();
+    }
+
+    /**
+     * Complete {@code members} with the default value of every member it leaves out, so that leaving a member out and
+     * setting it to its default value yield the same key.
+     */
+    private static Map<String, Object> normalize(Class<? extends Annotation> type, Map<String, ?> members)
+    {
+        final Map<String, Object> result = new HashMap<String, Object>(members);
+        int known = 0;
+        for (Method method : type.getDeclaredMethods())
+        {
+            if (members.containsKey(method.getName()))
+            {
+                known++;
+            }
+            else if (method.getDefaultValue() != null)
+            {
+                result.put(method.getName(), method.getDefaultValue());
+            }
+        }
+        if (known < members.size())
+        {
+            for (String name : members.keySet())
+            {
+                try
+                {
+                    type.getDeclaredMethod(name);
+                }
+                catch (NoSuchMethodException e)
+                {
+                    throw new IllegalArgumentException(String.format("Could not detect annotation member %1$s",
+                            name));
+                }
+            }
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    /**
+     * Key of an interned annotation: the annotation type plus its member values, ordered by member name.
+     */
+    private static final class InternKey
+    {
+        private final Class<? extends Annotation> type;
+        private final String[] names;
+        private final Object[] values;
+        private final int hashCode;
+
+        InternKey(Class<? extends Annotation> type, Map<String, ?> members)
+        {
+            final TreeMap<String, ?> sorted = new TreeMap<String, Object>(members);
+            this.type = type;
+            this.names = sorted.keySet().toArray(ArrayUtils.EMPTY_STRING_ARRAY);
+            this.values = sorted.values().toArray();
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = AnnotationBuilder.cloneArray(values[i]);
+            }
+            this.hashCode = (31 * type.hashCode() + Arrays.hashCode(names)) * 31 + Arrays.deepHashCode(values);
+        }
+
+        /**
+         * Get the member values of this key; array values are copies shared neither with the caller of
+         * {@link AnnotationInterner#intern(Class, Map)} nor with this key, and the annotation built from them hands out
+         * copies of its array members, so neither an interned annotation nor its key can be changed after the fact.
+         *
+         * @return Map
+         */
+        Map<String, Object> members()
+        {
+            final Map<String, Object> result = new TreeMap<String, Object>();
+            for (int i = 0; i < names.length; i++)
+            {
+                result.put(names[i], AnnotationBuilder.cloneArray(values[i]));
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (o == this)
+            {
+                return true;
+            }
+            if (!(o instanceof InternKey))
+            {
+                return false;
+            }
+            final InternKey other = (InternKey) o;
+            return hashCode == other.hashCode && type.equals(other.type) && Arrays.equals(names, other.names)
+                    && Arrays.deepEquals(values, other.values);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ProxyUtils;
+
+/**
+ * {@link Invoker} backing a stub produced by {@link StubBuilder#compile()} when the proxy factory is not a
+ * {@link StubCompiler}. Trained cases are resolved directly against the invoked method and arguments; untrained
+ * invocations go straight to the fallback {@link Invoker}, without passing through an intermediate target proxy.
+ */
+class CompiledStubInvoker implements Invoker
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final long serialVersionUID = 1L;
+
+    private final StubSwitchInterceptor stubInterceptor;
+    private final Invoker fallback;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    CompiledStubInvoker(StubSwitchInterceptor stubInterceptor, Invoker fallback)
+    {
+        this.stubInterceptor = stubInterceptor;
+        this.fallback = fallback;
+    }
+
+    //******************************************************************************************************************
+    // Invoker Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable
+    {
+        final StubInvocation invocation = new StubInvocation(proxy, method, arguments);
+        final Interceptor interceptor = stubInterceptor.lookup(invocation);
+        return interceptor == null ? invocation.proceed() : interceptor.intercept(invocation);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private final class StubInvocation implements Invocation
+    {
+        private final Object proxy;
+        private final Method method;
+        private final Object[] arguments;
+
+        private StubInvocation(Object proxy, Method method, Object[] arguments)
+        {
+            this.proxy = proxy;
+            this.method = method;
+            this.arguments = ArrayUtils.isEmpty(arguments) ? ProxyUtils.EMPTY_ARGUMENTS : arguments;
+        }
+
+        @Override
+        public Object[] getArguments()
+        {
+            return arguments;
+        }
+
+        @Override
+        public Method getMethod()
+        {
+            return method;
+        }
+
+        @Override
+        public Object getProxy()
+        {
+            return proxy;
+        }
+
+        @Override
+        public Object proceed() throws Throwable
+        {
+            return fallback.invoke(proxy, method, arguments);
+        }
+    }
+}
@@ -27,7 +27,7 @@ import org.apache.commons.lang3.builder.Builder;
 import org.apache.commons.proxy2.Invoker;
 import org.apache.commons.proxy2.ObjectProvider;
 import org.apache.commons.proxy2.ProxyFactory;
-import org.apache.commons.proxy2.interceptor.SwitchInterceptor;
+import org.apache.commons.proxy2.invoker.DelegatingInvoker;
 import org.apache.commons.proxy2.invoker.NullInvoker;
 import org.apache.commons.proxy2.provider.ConstantProvider;
 
@@ -39,7 +39,8 @@ public class StubBuilder<T> implements Builder<T>
 
     private final ProxyFactory proxyFactory;
     private final T target;
-    private final SwitchInterceptor switchInterceptor = new SwitchInterceptor();
+    private final Invoker fallback;
+    private final StubSwitchInterceptor switchInterceptor = new StubSwitchInterceptor();
     private final Set<Class<?>> proxyTypes = new HashSet<Class<?>>();
 
     //******************************************************************************************************************
@@ -55,6 +56,7 @@ public class StubBuilder<T> implements Builder<T>
     {
         this.proxyFactory = proxyFactory;
         this.target = proxyFactory.createInvokerProxy(invoker, type);
+        this.fallback = invoker;
         this.proxyTypes.add(Validate.notNull(type));
     }
 
@@ -62,6 +64,7 @@ public class StubBuilder<T> implements Builder<T>
     {
         this.proxyFactory = proxyFactory;
         this.target = proxyFactory.createDelegatorProxy(provider, type);
+        this.fallback = new DelegatingInvoker<T>(provider);
         this.proxyTypes.add(Validate.notNull(type));
     }
 
@@ -69,6 +72,7 @@ public class StubBuilder<T> implements Builder<T>
     {
         this.proxyFactory = proxyFactory;
         this.target = proxyFactory.createDelegatorProxy(new ConstantProvider<T>(target), type);
+        this.fallback = new DelegatingInvoker<T>(new ConstantProvider<T>(target));
         this.proxyTypes.add(Validate.notNull(type));
     }
 
@@ -83,6 +87,27 @@ public class StubBuilder<T> implements Builder<T>
                 proxyTypes.toArray(ArrayUtils.EMPTY_CLASS_ARRAY));
     }
 
+    /**
+     * Build a stub whose trained behavior and fallback target are served by a single object. If the
+     * {@link ProxyFactory} is a {@link StubCompiler} able to compile the proxy types, the stub is an instance of a
+     * class generated from the trained cases; otherwise it is a single invoker proxy resolving trained cases against
+     * each invocation, calling through to the target {@link Invoker} or delegate only for untrained invocations.
+     *
+     * @return T
+     */
+    public T compile()
+    {
+        final Class<?>[] types = proxyTypes.toArray(ArrayUtils.EMPTY_CLASS_ARRAY);
+        if (proxyFactory instanceof StubCompiler && ((StubCompiler) proxyFactory).canCompile(types))
+        {
+            @SuppressWarnings("unchecked") // the stub implements T, the first proxy type
+            final T result = (T) ((StubCompiler) proxyFactory).compile(new StubDefinition(types, switchInterceptor
+                    .getTrainedCases(), fallback));
+            return result;
+        }
+        return proxyFactory.createInvokerProxy(new CompiledStubInvoker(switchInterceptor, fallback), types);
+    }
+
     public <O> StubBuilder<T> train(BaseTrainer<?, O> trainer)
     {
         final TrainingContext trainingContext = TrainingContext.join(proxyFactory);
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+/**
+ * Generates the class of a stub from its {@link StubDefinition}, so that trained constants are returned and trained
+ * arguments are compared by generated code; implemented by {@link org.apache.commons.proxy2.ProxyFactory}s able to do
+ * so, and used by {@link StubBuilder#compile()}.
+ * 
+ * @since 2.1
+ */
+public interface StubCompiler
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Learn whether this {@link StubCompiler} can compile stubs of the specified types.
+     * 
+     * @param proxyTypes
+     * @return boolean
+     */
+    boolean canCompile(Class<?>... proxyTypes);
+
+    /**
+     * Compile a stub.
+     * 
+     * @param definition
+     * @return an instance of all of {@code definition}'s proxy types
+     */
+    Object compile(StubDefinition definition);
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.proxy2.Invoker;
+
+/**
+ * Everything a {@link StubCompiler} needs to know about a stub: the types it implements, its trained cases, of which
+ * the first matching one in training order handles an invocation, and the {@link Invoker} handling the invocations no
+ * case matches.
+ * 
+ * @since 2.1
+ */
+public final class StubDefinition
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final Class<?>[] proxyTypes;
+    private final List<TrainedCase> trainedCases;
+    private final Invoker fallback;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    StubDefinition(Class<?>[] proxyTypes, List<TrainedCase> trainedCases, Invoker fallback)
+    {
+        this.proxyTypes = proxyTypes;
+        this.trainedCases = Collections.unmodifiableList(new ArrayList<TrainedCase>(trainedCases));
+        this.fallback = fallback;
+    }
+
+    //******************************************************************************************************************
+    // Getter/Setter Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the types the stub implements.
+     * 
+     * @return Class[]
+     */
+    public Class<?>[] getProxyTypes()
+    {
+        return ArrayUtils.clone(proxyTypes);
+    }
+
+    /**
+     * Get the trained cases, in training order.
+     * 
+     * @return {@link List} of {@link TrainedCase}
+     */
+    public List<TrainedCase> getTrainedCases()
+    {
+        return trainedCases;
+    }
+
+    /**
+     * Get the {@link Invoker} handling invocations matched by no case.
+     * 
+     * @return {@link Invoker}
+     */
+    public Invoker getFallback()
+    {
+        return fallback;
+    }
+}
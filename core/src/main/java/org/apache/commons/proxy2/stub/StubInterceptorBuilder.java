@@ -19,7 +19,6 @@ package org.apache.commons.proxy2.stub;
 
 import org.apache.commons.proxy2.Interceptor;
 import org.apache.commons.proxy2.ProxyFactory;
-import org.apache.commons.proxy2.interceptor.SwitchInterceptor;
 
 public class StubInterceptorBuilder
 {
@@ -28,7 +27,7 @@ public class StubInterceptorBuilder
     //******************************************************************************************************************
 
     private final ProxyFactory proxyFactory;
-    private final SwitchInterceptor interceptor = new SwitchInterceptor();
+    private final StubSwitchInterceptor interceptor = new StubSwitchInterceptor();
 
     //******************************************************************************************************************
     // Constructors
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.InvocationKey;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+
+/**
+ * Stub-specific counterpart to {@link org.apache.commons.proxy2.interceptor.SwitchInterceptor}. Cases trained with
+ * exact arguments are indexed by a hash of (method, arguments) so that they are found in constant time; consecutive
+ * exact-argument cases share a single index, and cases trained with argument matchers are evaluated in between. The
+ * first matching case, in training order, wins. The trained cases are also kept in training order, for serialization
+ * and for {@link StubCompiler}s.
+ */
+class StubSwitchInterceptor implements Interceptor
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private final List<TrainedCase> trainedCases = new CopyOnWriteArrayList<TrainedCase>();
+    private final transient List<Case> cases = new CopyOnWriteArrayList<Case>();
+
+    //******************************************************************************************************************
+    // Interceptor Implementation
+    //******************************************************************************************************************
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable
+    {
+        final Interceptor interceptor = lookup(invocation);
+        return interceptor == null ? invocation.proceed() : interceptor.intercept(invocation);
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    /**
+     * Register a case matching invocations of {@code method} whose arguments are deeply equal to {@code arguments}.
+     *
+     * @param method
+     * @param arguments
+     * @param interceptor
+     */
+    void whenInvoked(Method method, Object[] arguments, Interceptor interceptor)
+    {
+        add(new TrainedCase(method, arguments, null, interceptor));
+    }
+
+    /**
+     * Register a case matching invocations accepted by {@code matcher}.
+     *
+     * @param matcher
+     * @param interceptor
+     */
+    void when(InvocationMatcher matcher, Interceptor interceptor)
+    {
+        add(new TrainedCase(null, null, matcher, interceptor));
+    }
+
+    /**
+     * Register a case matching invocations of {@code method} accepted by {@code matcher}, which only accepts
+     * invocations of {@code method}.
+     *
+     * @param method
+     * @param matcher
+     * @param interceptor
+     */
+    void when(Method method, InvocationMatcher matcher, Interceptor interceptor)
+    {
+        add(new TrainedCase(method, null, matcher, interceptor));
+    }
+
+    /**
+     * Get the trained cases, in training order.
+     *
+     * @return {@link List} of {@link TrainedCase}
+     */
+    List<TrainedCase> getTrainedCases()
+    {
+        return Collections.unmodifiableList(trainedCases);
+    }
+
+    private synchronized void add(TrainedCase trainedCase)
+    {
+        trainedCases.add(trainedCase);
+        if (!trainedCase.isExact())
+        {
+            cases.add(new MatcherCase(trainedCase.getMatcher(), trainedCase.getInterceptor()));
+            return;
+        }
+        final Case last = cases.isEmpty() ? null : cases.get(cases.size() - 1);
+        final ExactCases exactCases;
+        if (last instanceof ExactCases)
+        {
+            exactCases = (ExactCases) last;
+        }
+        else
+        {
+            exactCases = new ExactCases();
+            cases.add(exactCases);
+        }
+        exactCases.add(new InvocationKey(trainedCase.getMethod(), trainedCase.getArguments()),
+                trainedCase.getInterceptor());
+    }
+
+    Interceptor lookup(Invocation invocation)
+    {
+        InvocationKey key = null;
+        for (Case currentCase : cases)
+        {
+            final Interceptor result;
+            if (currentCase instanceof ExactCases)
+            {
+                if (key == null)
+                {
+                    key = InvocationKey.forLookup(invocation.getMethod(), invocation.getArguments());
+                }
+                result = ((ExactCases) currentCase).get(key);
+            }
+            else
+            {
+                result = ((MatcherCase) currentCase).get(invocation);
+            }
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private Object readResolve()
+    {
+        final StubSwitchInterceptor result = new StubSwitchInterceptor();
+        for (TrainedCase trainedCase : trainedCases)
+        {
+            result.add(trainedCase);
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private interface Case
+    {
+    }
+
+    private static final class ExactCases implements Case
+    {
+        private final ConcurrentMap<InvocationKey, Interceptor> index
+            = new ConcurrentHashMap<InvocationKey, Interceptor>();
+
+        void add(InvocationKey key, Interceptor interceptor)
+        {
+            // first match wins; later trainings of identical invocations are shadowed, as with sequential matching:
+            index.putIfAbsent(key, interceptor);
+        }
+
+        Interceptor get(InvocationKey key)
+        {
+            return index.get(key);
+        }
+    }
+
+    private static final class MatcherCase implements Case
+    {
+        private final InvocationMatcher matcher;
+        private final Interceptor interceptor;
+
+        MatcherCase(InvocationMatcher matcher, Interceptor interceptor)
+        {
+            this.matcher = matcher;
+            this.interceptor = interceptor;
+        }
+
+        Interceptor get(Invocation invocation)
+        {
+            return matcher.matches(invocation) ? interceptor : null;
+        }
+    }
+}
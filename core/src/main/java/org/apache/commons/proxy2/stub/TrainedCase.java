@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.impl.MethodSignature;
+import org.apache.commons.proxy2.interceptor.ObjectProviderInterceptor;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+import org.apache.commons.proxy2.provider.ConstantProvider;
+
+/**
+ * A case trained into a stub: invocations of a method with exact arguments, or invocations accepted by a matcher,
+ * and the {@link Interceptor} handling them.
+ * 
+ * @since 2.1
+ */
+public final class TrainedCase implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private transient Method method;
+    private final Class<?> declaringClass;
+    private final MethodSignature signature;
+    private final Object[] arguments;
+    private final InvocationMatcher matcher;
+    private final Interceptor interceptor;
+
+    //******************************************************************************************************************
+    // Constructors
+    //******************************************************************************************************************
+
+    TrainedCase(Method method, Object[] arguments, InvocationMatcher matcher, Interceptor interceptor)
+    {
+        this.method = method;
+        this.declaringClass = method == null ? null : method.getDeclaringClass();
+        this.signature = method == null ? null : new MethodSignature(method);
+        this.arguments = arguments == null ? null : ArrayUtils.nullToEmpty(ArrayUtils.clone(arguments));
+        this.matcher = matcher;
+        this.interceptor = interceptor;
+    }
+
+    //******************************************************************************************************************
+    // Getter/Setter Methods
+    //******************************************************************************************************************
+
+    /**
+     * Get the trained method; {@code null} for a matcher case that may accept any method.
+     * 
+     * @return Method
+     */
+    public Method getMethod()
+    {
+        return method;
+    }
+
+    /**
+     * Learn whether this case matches exact arguments, as opposed to using a matcher.
+     * 
+     * @return boolean
+     */
+    public boolean isExact()
+    {
+        return matcher == null;
+    }
+
+    /**
+     * Get the exact arguments matched by this case.
+     * 
+     * @return Object[], {@code null} for a matcher case
+     */
+    public Object[] getArguments()
+    {
+        return ArrayUtils.clone(arguments);
+    }
+
+    /**
+     * Get the matcher of this case.
+     * 
+     * @return {@link InvocationMatcher}, {@code null} for an exact case
+     */
+    public InvocationMatcher getMatcher()
+    {
+        return matcher;
+    }
+
+    /**
+     * Get the interceptor handling matching invocations.
+     * 
+     * @return {@link Interceptor}
+     */
+    public Interceptor getInterceptor()
+    {
+        return interceptor;
+    }
+
+    /**
+     * Learn whether matching invocations return a constant, available from {@link #getConstant()}.
+     * 
+     * @return boolean
+     */
+    public boolean isConstant()
+    {
+        return interceptor instanceof ObjectProviderInterceptor
+                && ((ObjectProviderInterceptor) interceptor).getProvider() instanceof ConstantProvider<?>;
+    }
+
+    /**
+     * Get the constant returned by matching invocations.
+     * 
+     * @return Object
+     * @throws IllegalStateException
+     *             if not {@link #isConstant()}
+     */
+    public Object getConstant()
+    {
+        if (!isConstant())
+        {
+            throw new IllegalStateException("Case does not return a constant.");
+        }
+        return ((ObjectProviderInterceptor) interceptor).getProvider().getObject();
+    }
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        method = signature == null ? null : signature.toMethod(declaringClass);
+    }
+}
@@ -18,11 +18,10 @@ package org.apache.commons.proxy2.stub;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.UUID;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.proxy2.Interceptor;
@@ -30,7 +29,6 @@ import org.apache.commons.proxy2.Invocation;
 import org.apache.commons.proxy2.Invoker;
 import org.apache.commons.proxy2.ProxyFactory;
 import org.apache.commons.proxy2.ProxyUtils;
-import org.apache.commons.proxy2.interceptor.SwitchInterceptor;
 import org.apache.commons.proxy2.interceptor.matcher.ArgumentMatcher;
 import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
 import org.apache.commons.proxy2.invoker.NullInvoker;
@@ -42,11 +40,15 @@ class TrainingContext
     // Fields
     //******************************************************************************************************************
 
+    /**
+     * Training is confined to the calling thread: a {@link TrainingContext} is only ever reachable through this
+     * {@link ThreadLocal}, so none of its state requires synchronization.
+     */
     private static final ThreadLocal<TrainingContext> TRAINING_CONTEXT = new ThreadLocal<TrainingContext>();
 
     private final ProxyFactory proxyFactory;
 
-    private final Deque<TrainingContextFrame<?>> frameDeque = new LinkedList<TrainingContextFrame<?>>();
+    private final Deque<TrainingContextFrame<?>> frameDeque = new ArrayDeque<TrainingContextFrame<?>>();
 
     private final TrainingContext resume;
 
@@ -59,7 +61,7 @@ class TrainingContext
         return TRAINING_CONTEXT.get();
     }
 
-    static synchronized TrainingContext join(ProxyFactory proxyFactory)
+    static TrainingContext join(ProxyFactory proxyFactory)
     {
         final TrainingContext context = new TrainingContext(proxyFactory);
         TRAINING_CONTEXT.set(context);
@@ -82,16 +84,13 @@ class TrainingContext
 
     void part()
     {
-        synchronized (TRAINING_CONTEXT)
+        if (resume == null)
         {
-            if (resume == null)
-            {
-                TRAINING_CONTEXT.remove();
-            }
-            else
-            {
-                TRAINING_CONTEXT.set(resume);
-            }
+            TRAINING_CONTEXT.remove();
+        }
+        else
+        {
+            TRAINING_CONTEXT.set(resume);
         }
     }
 
@@ -114,12 +113,12 @@ class TrainingContext
 
     <T> T push(Class<T> type)
     {
-        return push(type, new SwitchInterceptor());
+        return push(type, new StubSwitchInterceptor());
     }
 
-    <T> T push(Class<T> type, SwitchInterceptor switchInterceptor)
+    <T> T push(Class<T> type, StubSwitchInterceptor stubInterceptor)
     {
-        TrainingContextFrame<T> frame = new TrainingContextFrame<T>(type, switchInterceptor);
+        TrainingContextFrame<T> frame = new TrainingContextFrame<T>(type, stubInterceptor);
         Invoker invoker = new TrainingInvoker(frame);
         frameDeque.push(frame);
         return proxyFactory.createInvokerProxy(invoker, type);
@@ -139,23 +138,6 @@ class TrainingContext
     // Inner Classes
     //******************************************************************************************************************
 
-    private static final class ExactArgumentsMatcher implements InvocationMatcher
-    {
-        private final RecordedInvocation recordedInvocation;
-
-        private ExactArgumentsMatcher(RecordedInvocation recordedInvocation)
-        {
-            this.recordedInvocation = recordedInvocation;
-        }
-
-        @Override
-        public boolean matches(Invocation invocation)
-        {
-            return invocation.getMethod().equals(recordedInvocation.getInvokedMethod())
-                    && Arrays.deepEquals(invocation.getArguments(), recordedInvocation.getArguments());
-        }
-    }
-
     private static final class MatchingArgumentsMatcher implements InvocationMatcher
     {
         private final RecordedInvocation recordedInvocation;
@@ -192,34 +174,38 @@ class TrainingContext
 
     private static final class TrainingContextFrame<T>
     {
-        private final String id = UUID.randomUUID().toString();
+        private final StubSwitchInterceptor stubInterceptor;
 
-        private final SwitchInterceptor stubInterceptor;
+        private final List<ArgumentMatcher<?>> argumentMatchers = new ArrayList<ArgumentMatcher<?>>();
 
-        private final List<ArgumentMatcher<?>> argumentMatchers = new LinkedList<ArgumentMatcher<?>>();
+        private RecordedInvocation exactInvocation = null;
 
-        private InvocationMatcher matcher = null;
+        private MatchingArgumentsMatcher matcher = null;
 
         private final Class<T> type;
 
-        private TrainingContextFrame(Class<T> type, SwitchInterceptor stubInterceptor)
+        private TrainingContextFrame(Class<T> type, StubSwitchInterceptor stubInterceptor)
         {
             this.type = type;
             this.stubInterceptor = stubInterceptor;
         }
 
-        private String getId()
-        {
-            return id;
-        }
-
         void then(Interceptor thenInterceptor)
         {
-            if (matcher == null)
+            if (exactInvocation != null)
+            {
+                stubInterceptor.whenInvoked(exactInvocation.getInvokedMethod(), exactInvocation.getArguments(),
+                        thenInterceptor);
+            }
+            else if (matcher != null)
+            {
+                stubInterceptor.when(matcher.recordedInvocation.getInvokedMethod(), matcher, thenInterceptor);
+            }
+            else
             {
                 throw new IllegalStateException("No when!");
             }
-            stubInterceptor.when(matcher).then(thenInterceptor);
+            exactInvocation = null;
             matcher = null;
         }
 
@@ -231,10 +217,12 @@ class TrainingContext
             final RecordedInvocation invocation = new RecordedInvocation(method, arguments);
             if (ArrayUtils.isEmpty(matchersArray))
             {
-                this.matcher = new ExactArgumentsMatcher(invocation);
+                this.exactInvocation = invocation;
+                this.matcher = null;
             }
             else if (matchersArray.length == arguments.length)
             {
+                this.exactInvocation = null;
                 this.matcher = new MatchingArgumentsMatcher(invocation, matchersArray);
             }
             else
@@ -248,25 +236,23 @@ class TrainingContext
     {
         private static final long serialVersionUID = 1L;
 
-        private final String id;
+        // frames are identified by reference; training proxies never leave the training thread:
+        private final transient TrainingContextFrame<?> frame;
 
         private TrainingInvoker(TrainingContextFrame<?> frame)
         {
-            this.id = frame.getId();
+            this.frame = frame;
         }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable
         {
-            final TrainingContextFrame<?> frame = current().peek();
-            if (!frame.getId().equals(id))
+            final TrainingContext context = current();
+            if (context == null || context.peek() != frame)
             {
                 throw new IllegalStateException("Wrong stub!");
             }
-            else
-            {
-                frame.methodInvoked(method, arguments);
-            }
+            frame.methodInvoked(method, arguments);
 
             final Class<?> type = method.getReturnType();
 
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testLimitGrowsUnderSteadyLatency() throws Throwable
+    {
+        final AdaptiveConcurrencyInterceptor interceptor = new AdaptiveConcurrencyInterceptor(1, 1, 100);
+        for (int i = 0; i < 50; i++)
+        {
+            interceptor.intercept(sleeping(0));
+        }
+        assertTrue(interceptor.getLimit() > 1);
+        assertTrue(interceptor.getRtt(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(interceptor.getNoLoadRtt(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(0, interceptor.getInFlight());
+    }
+
+    @Test
+    public void testLimitShrinksAsLatencyRises() throws Throwable
+    {
+        final AdaptiveConcurrencyInterceptor interceptor = new AdaptiveConcurrencyInterceptor(20, 1, 100);
+        for (int i = 0; i < 5; i++)
+        {
+            interceptor.intercept(sleeping(0));
+        }
+        for (int i = 0; i < 20; i++)
+        {
+            interceptor.intercept(sleeping(5));
+        }
+        assertTrue(interceptor.getLimit() < 20);
+        assertTrue(interceptor.getRtt(TimeUnit.MILLISECONDS) >= 1);
+    }
+
+    @Test
+    public void testRejectsBeyondLimit() throws Throwable
+    {
+        final AdaptiveConcurrencyInterceptor interceptor = new AdaptiveConcurrencyInterceptor(1, 1, 1);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Invocation blocking = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                entered.countDown();
+                release.await();
+                return super.proceed();
+            }
+        };
+        final Thread holder = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    interceptor.intercept(blocking);
+                }
+                catch (Throwable t)
+                {
+                    // ignore
+                }
+            }
+        });
+        holder.start();
+        entered.await();
+        try
+        {
+            interceptor.intercept(sleeping(0));
+            fail();
+        }
+        catch (RejectedInvocationException e)
+        {
+            assertEquals(1, interceptor.getRejectedCount());
+        }
+        finally
+        {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testWaitsForReleasedPermit() throws Throwable
+    {
+        final AdaptiveConcurrencyInterceptor interceptor = new AdaptiveConcurrencyInterceptor(1, 1, 1, 10,
+                TimeUnit.SECONDS);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final Invocation holding = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                entered.countDown();
+                Thread.sleep(100);
+                return super.proceed();
+            }
+        };
+        final Thread holder = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    interceptor.intercept(holding);
+                }
+                catch (Throwable t)
+                {
+                    // ignore
+                }
+            }
+        });
+        holder.start();
+        entered.await();
+        assertEquals("foo", interceptor.intercept(sleeping(0)));
+        holder.join();
+        assertEquals(0, interceptor.getRejectedCount());
+        assertEquals(0, interceptor.getInFlight());
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new AdaptiveConcurrencyInterceptor(10, 1, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidLimits()
+    {
+        new AdaptiveConcurrencyInterceptor(10, 20, 100);
+    }
+
+    private static Invocation sleeping(final long millis) throws NoSuchMethodException
+    {
+        return new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                Thread.sleep(millis);
+                return super.proceed();
+            }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.matcher.invocation.MethodNameMatcher;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class AsynchronousInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testRunsOnExecutor() throws Throwable
+    {
+        final RecordingExecutor executor = new RecordingExecutor();
+        final AsynchronousInterceptor interceptor = new AsynchronousInterceptor(executor);
+        final Future<?> future = (Future<?>) interceptor.intercept(invocation("fetch", "foo"));
+        assertEquals("foo", future.get());
+        assertNotSame(Thread.currentThread(), executor.thread.get());
+    }
+
+    @Test
+    public void testUnwrapsReturnedFuture() throws Throwable
+    {
+        final FutureTask<String> done = new FutureTask<String>(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        }, "bar");
+        done.run();
+        final Future<?> future = (Future<?>) new AsynchronousInterceptor().intercept(invocation("fetch", done));
+        assertEquals("bar", future.get());
+    }
+
+    @Test
+    public void testExceptionPropagated() throws Throwable
+    {
+        final IllegalStateException failure = new IllegalStateException();
+        final Invocation invocation = new MockInvocation(AsyncService.class.getMethod("fetch"), null)
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                throw failure;
+            }
+        };
+        final Future<?> future = (Future<?>) new AsynchronousInterceptor().intercept(invocation);
+        try
+        {
+            future.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testSynchronousMethod() throws Throwable
+    {
+        final RecordingExecutor executor = new RecordingExecutor();
+        assertEquals("foo", new AsynchronousInterceptor(executor).intercept(invocation("fetchNow", "foo")));
+        assertEquals(null, executor.thread.get());
+    }
+
+    @Test
+    public void testRunnableMethodIsSynchronous() throws Throwable
+    {
+        final RecordingExecutor executor = new RecordingExecutor();
+        final Runnable runnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+        assertSame(runnable, new AsynchronousInterceptor(executor).intercept(invocation("task", runnable)));
+        assertEquals(null, executor.thread.get());
+    }
+
+    @Test
+    public void testSerialization() throws Throwable
+    {
+        // RecordingExecutor is not serializable:
+        final AsynchronousInterceptor copy = SerializationUtils.clone(new AsynchronousInterceptor(
+                new RecordingExecutor()));
+        assertEquals("foo", ((Future<?>) copy.intercept(invocation("fetch", "foo"))).get());
+    }
+
+    @Test
+    public void testSerializationWithExecutorCase() throws Throwable
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final AsynchronousInterceptor copy = SerializationUtils.clone(new AsynchronousInterceptor().when(
+                    new MethodNameMatcher("fetch"), executor));
+            assertEquals("foo", ((Future<?>) copy.intercept(invocation("fetch", "foo"))).get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorPerMethod() throws Throwable
+    {
+        final RecordingExecutor defaultExecutor = new RecordingExecutor();
+        final RecordingExecutor fetchExecutor = new RecordingExecutor();
+        final AsynchronousInterceptor interceptor = new AsynchronousInterceptor(defaultExecutor).when(
+                new MethodNameMatcher("fetch"), fetchExecutor);
+        ((Future<?>) interceptor.intercept(invocation("fetch", "foo"))).get();
+        ((Future<?>) interceptor.intercept(invocation("store", "foo"))).get();
+        assertTrue(fetchExecutor.thread.get() != null);
+        assertTrue(defaultExecutor.thread.get() != null);
+        assertEquals(1, fetchExecutor.count);
+        assertEquals(1, defaultExecutor.count);
+    }
+
+    private static Invocation invocation(String name, Object result) throws NoSuchMethodException
+    {
+        return new MockInvocation(AsyncService.class.getMethod(name), result);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface AsyncService
+    {
+        Future<String> fetch();
+
+        Future<String> store();
+
+        String fetchNow();
+
+        Runnable task();
+    }
+
+    private static class RecordingExecutor implements Executor
+    {
+        private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        private int count;
+
+        @Override
+        public void execute(final Runnable command)
+        {
+            count++;
+            final Thread worker = new Thread(command);
+            thread.set(worker);
+            worker.start();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.InvokerException;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class BatchingInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testConcurrentInvocationsBatched() throws Exception
+    {
+        final RepositoryImpl repository = new RepositoryImpl();
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 200,
+                TimeUnit.MILLISECONDS, 10);
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        try
+        {
+            final List<Callable<Object>> calls = new ArrayList<Callable<Object>>();
+            for (int i = 0; i < 10; i++)
+            {
+                final int id = i % 5;
+                calls.add(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        try
+                        {
+                            return interceptor.intercept(invocation(repository, id));
+                        }
+                        catch (Throwable t)
+                        {
+                            throw new Exception(t);
+                        }
+                    }
+                });
+            }
+            final List<Future<Object>> results = executor.invokeAll(calls);
+            for (int i = 0; i < 10; i++)
+            {
+                assertEquals("value" + i % 5, results.get(i).get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertTrue(repository.bulkCalls.get() < 10);
+        assertEquals(repository.requestedKeys.get(), Math.round(interceptor.getBatchSizes().getMean()
+                * interceptor.getBatchSizes().getCount()));
+        assertEquals(repository.bulkCalls.get(), interceptor.getBatchSizes().getCount());
+        assertEquals(repository.bulkCalls.get(), interceptor.getBulkLatencies().getCount());
+    }
+
+    @Test
+    public void testMaxBatchSizeDispatchesImmediately() throws Throwable
+    {
+        final RepositoryImpl repository = new RepositoryImpl();
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 1,
+                TimeUnit.MINUTES, 1);
+        assertEquals("value1", interceptor.intercept(invocation(repository, 1)));
+        assertEquals(1, repository.bulkCalls.get());
+    }
+
+    @Test
+    public void testMissingKey() throws Throwable
+    {
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 0,
+                TimeUnit.MILLISECONDS, 10);
+        assertNull(interceptor.intercept(invocation(new RepositoryImpl(), -1)));
+    }
+
+    @Test(expected = InvokerException.class)
+    public void testMissingKeyForPrimitive() throws Throwable
+    {
+        final BatchingInterceptor interceptor = new BatchingInterceptor(Repository.class.getMethod("size",
+                Integer.class), Repository.class.getMethod("sizes", Collection.class), 0, TimeUnit.MILLISECONDS, 10);
+        interceptor.intercept(new MockInvocation(Repository.class.getMethod("size", Integer.class), null, -1)
+        {
+            @Override
+            public Object getProxy()
+            {
+                return new RepositoryImpl();
+            }
+        });
+    }
+
+    @Test
+    public void testInterruptedLeaderDispatches() throws Exception
+    {
+        final RepositoryImpl repository = new RepositoryImpl();
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 1,
+                TimeUnit.MINUTES, 10);
+        final AtomicReference<Object> leaderResult = new AtomicReference<Object>();
+        final AtomicBoolean leaderInterrupted = new AtomicBoolean();
+        final Thread leader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    leaderResult.set(interceptor.intercept(invocation(repository, 1)));
+                }
+                catch (Throwable t)
+                {
+                    leaderResult.set(t);
+                }
+                leaderInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        };
+        leader.start();
+        Thread.sleep(100);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final Future<Object> follower = executor.submit(new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    try
+                    {
+                        return interceptor.intercept(invocation(repository, 2));
+                    }
+                    catch (Throwable t)
+                    {
+                        throw new Exception(t);
+                    }
+                }
+            });
+            Thread.sleep(100);
+            leader.interrupt();
+            assertEquals("value2", follower.get(10, TimeUnit.SECONDS));
+            leader.join(10000);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals("value1", leaderResult.get());
+        assertTrue(leaderInterrupted.get());
+        assertEquals(1, repository.bulkCalls.get());
+    }
+
+    @Test
+    public void testBulkFailure() throws Throwable
+    {
+        final IllegalStateException failure = new IllegalStateException();
+        final RepositoryImpl repository = new RepositoryImpl()
+        {
+            @Override
+            public Map<Integer, String> getAll(Collection<Integer> ids)
+            {
+                throw failure;
+            }
+        };
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 0,
+                TimeUnit.MILLISECONDS, 10);
+        try
+        {
+            interceptor.intercept(invocation(repository, 1));
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void testOtherMethodProceeds() throws Throwable
+    {
+        final BatchingInterceptor interceptor = new BatchingInterceptor(getMethod(), getAllMethod(), 0,
+                TimeUnit.MILLISECONDS, 10);
+        assertEquals("foo", interceptor.intercept(new MockInvocation(Repository.class.getMethod("name"), "foo")));
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        assertSerializable(new BatchingInterceptor(getMethod(), getAllMethod(), 0, TimeUnit.MILLISECONDS, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidBulkMethod() throws Exception
+    {
+        new BatchingInterceptor(getMethod(), getMethod(), 0, TimeUnit.MILLISECONDS, 10);
+    }
+
+    private static Method getMethod() throws NoSuchMethodException
+    {
+        return Repository.class.getMethod("get", Integer.class);
+    }
+
+    private static Method getAllMethod() throws NoSuchMethodException
+    {
+        return Repository.class.getMethod("getAll", Collection.class);
+    }
+
+    private static Invocation invocation(final Repository repository, Integer id) throws NoSuchMethodException
+    {
+        return new MockInvocation(getMethod(), null, id)
+        {
+            @Override
+            public Object getProxy()
+            {
+                return repository;
+            }
+        };
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Repository
+    {
+        String get(Integer id);
+
+        Map<Integer, String> getAll(Collection<Integer> ids);
+
+        String name();
+
+        int size(Integer id);
+
+        Map<Integer, Integer> sizes(Collection<Integer> ids);
+    }
+
+    public static class RepositoryImpl implements Repository
+    {
+        private final AtomicInteger bulkCalls = new AtomicInteger();
+        private final AtomicInteger requestedKeys = new AtomicInteger();
+
+        @Override
+        public String get(Integer id)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Integer, String> getAll(Collection<Integer> ids)
+        {
+            bulkCalls.incrementAndGet();
+            requestedKeys.addAndGet(ids.size());
+            final Map<Integer, String> result = new HashMap<Integer, String>();
+            for (Integer id : ids)
+            {
+                if (id >= 0)
+                {
+                    result.put(id, "value" + id);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String name()
+        {
+            return "repository";
+        }
+
+        @Override
+        public int size(Integer id)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<Integer, Integer> sizes(Collection<Integer> ids)
+        {
+            return new HashMap<Integer, Integer>();
+        }
+    }
+}
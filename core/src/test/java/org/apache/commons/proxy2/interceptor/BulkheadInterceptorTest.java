@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+import org.apache.commons.proxy2.interceptor.matcher.invocation.MethodNameMatcher;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class BulkheadInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testRejectsBeyondCap() throws Throwable
+    {
+        final BulkheadInterceptor interceptor = new BulkheadInterceptor(1);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = hold(interceptor, entered, release);
+        entered.await();
+        assertEquals(1, interceptor.getActiveCount());
+        try
+        {
+            interceptor.intercept(echoBack());
+            fail();
+        }
+        catch (RejectedInvocationException e)
+        {
+            assertEquals(1, interceptor.getRejectedCount());
+            assertEquals(0, interceptor.getQueuedCount());
+        }
+        release.countDown();
+        holder.join();
+        assertEquals("foo", interceptor.intercept(echoBack()));
+        assertEquals(0, interceptor.getActiveCount());
+    }
+
+    @Test
+    public void testWaitsForPermit() throws Throwable
+    {
+        final BulkheadInterceptor interceptor = new BulkheadInterceptor(1, 10, TimeUnit.SECONDS);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = hold(interceptor, entered, release);
+        entered.await();
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e)
+                {
+                    // proceed
+                }
+                release.countDown();
+            }
+        }).start();
+        assertEquals("foo", interceptor.intercept(echoBack()));
+        holder.join();
+        assertEquals(1, interceptor.getQueuedCount());
+        assertEquals(0, interceptor.getRejectedCount());
+    }
+
+    @Test(expected = RejectedInvocationException.class)
+    public void testPerMethodWithSwitchInterceptor() throws Throwable
+    {
+        final SwitchInterceptor interceptor = new SwitchInterceptor().when(new MethodNameMatcher("echoBack")).then(
+                new BulkheadInterceptor(1, 1, TimeUnit.MILLISECONDS));
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = hold(interceptor, entered, release);
+        entered.await();
+        try
+        {
+            assertEquals(null, interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null)));
+            interceptor.intercept(echoBack());
+        }
+        finally
+        {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new BulkheadInterceptor(1));
+    }
+
+    private static Invocation echoBack() throws NoSuchMethodException
+    {
+        return new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo");
+    }
+
+    private static Thread hold(final Interceptor interceptor, final CountDownLatch entered,
+            final CountDownLatch release) throws NoSuchMethodException
+    {
+        final Invocation blocking = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                entered.countDown();
+                release.await();
+                return super.proceed();
+            }
+        };
+        final Thread result = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    interceptor.intercept(blocking);
+                }
+                catch (Throwable t)
+                {
+                    // ignore
+                }
+            }
+        });
+        result.start();
+        return result;
+    }
+}
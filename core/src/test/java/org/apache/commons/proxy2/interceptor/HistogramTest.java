@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.junit.Test;
+
+public class HistogramTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testStatistics()
+    {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.0);
+        assertEquals(51, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testBuckets()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(8);
+        histogram.record(9);
+        histogram.record(16);
+        histogram.record(17);
+        histogram.record(Long.MAX_VALUE);
+        final long[] buckets = histogram.getBucketCounts();
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[3]);
+        assertEquals(1, buckets[8]);
+        assertEquals(1, buckets[9]);
+        assertEquals(2, buckets[16]);
+        assertEquals(1, buckets[buckets.length - 1]);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testHighestTrackableValue()
+    {
+        final Histogram histogram = new Histogram(100);
+        histogram.record(50);
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+        final long[] buckets = histogram.getBucketCounts();
+        assertEquals(2, buckets[buckets.length - 1]);
+        assertEquals(3, histogram.getCount());
+        assertEquals(51, histogram.getValueAtPercentile(33));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddWithDifferentRange()
+    {
+        new Histogram().add(new Histogram(100));
+    }
+
+    @Test
+    public void testReset()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue()
+    {
+        new Histogram().record(-1);
+    }
+}
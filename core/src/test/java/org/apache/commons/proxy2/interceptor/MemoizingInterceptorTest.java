@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.interceptor.matcher.InvocationMatcher;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class MemoizingInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testHitsAndMisses() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(10);
+        final CountingInvocation foo = echoBack("foo");
+        assertEquals("foo", interceptor.intercept(foo));
+        assertEquals("foo", interceptor.intercept(echoBack("foo")));
+        assertEquals("bar", interceptor.intercept(echoBack("bar")));
+        assertEquals(1, foo.count);
+        assertEquals(1, interceptor.getHitCount());
+        assertEquals(2, interceptor.getMissCount());
+        assertEquals(1.0 / 3, interceptor.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testArrayArguments() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(10);
+        final Method method = Echo.class.getMethod("echoBack", String[][].class);
+        interceptor.intercept(new CountingInvocation(method, "a", new Object[] { new String[][] { { "x" } } }));
+        final CountingInvocation second = new CountingInvocation(method, "b", new Object[] { new String[][] { { "x" } } });
+        assertEquals("a", interceptor.intercept(second));
+        assertEquals(0, second.count);
+    }
+
+    @Test
+    public void testSegmentedCacheBounded() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(100);
+        for (int i = 0; i < 1000; i++)
+        {
+            interceptor.intercept(echoBack(String.valueOf(i)));
+        }
+        assertEquals(1000, interceptor.getMissCount());
+        assertTrue(interceptor.size() <= 100);
+        assertEquals(1000 - interceptor.size(), interceptor.getEvictionCount());
+        final CountingInvocation last = echoBack("999");
+        interceptor.intercept(last);
+        assertEquals(0, last.count);
+        interceptor.clear();
+        assertEquals(0, interceptor.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(2);
+        interceptor.intercept(echoBack("a"));
+        interceptor.intercept(echoBack("b"));
+        interceptor.intercept(echoBack("a"));
+        interceptor.intercept(echoBack("c"));
+        assertEquals(2, interceptor.size());
+        assertEquals(1, interceptor.getEvictionCount());
+        final CountingInvocation a = echoBack("a");
+        interceptor.intercept(a);
+        assertEquals(0, a.count);
+        final CountingInvocation b = echoBack("b");
+        interceptor.intercept(b);
+        assertEquals(1, b.count);
+    }
+
+    @Test
+    public void testExpiry() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(null, 10, 1, TimeUnit.MILLISECONDS);
+        interceptor.intercept(echoBack("foo"));
+        Thread.sleep(20);
+        final CountingInvocation foo = echoBack("foo");
+        interceptor.intercept(foo);
+        assertEquals(1, foo.count);
+        assertEquals(1, interceptor.getEvictionCount());
+    }
+
+    @Test
+    public void testMatcher() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(new InvocationMatcher()
+        {
+            @Override
+            public boolean matches(Invocation invocation)
+            {
+                return !"skip".equals(invocation.getArguments()[0]);
+            }
+        }, 10);
+        interceptor.intercept(echoBack("skip"));
+        final CountingInvocation skip = echoBack("skip");
+        interceptor.intercept(skip);
+        assertEquals(1, skip.count);
+        assertEquals(0, interceptor.getMissCount());
+    }
+
+    @Test
+    public void testNullResult() throws Throwable
+    {
+        final MemoizingInterceptor interceptor = new MemoizingInterceptor(10);
+        final Method method = Echo.class.getMethod("echoBack", String.class);
+        assertNull(interceptor.intercept(new CountingInvocation(method, null, new Object[] { null })));
+        final CountingInvocation second = new CountingInvocation(method, "x", new Object[] { null });
+        assertNull(interceptor.intercept(second));
+        assertEquals(0, second.count);
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new MemoizingInterceptor(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidMaxSize()
+    {
+        new MemoizingInterceptor(0);
+    }
+
+    private static CountingInvocation echoBack(String value) throws NoSuchMethodException
+    {
+        return new CountingInvocation(Echo.class.getMethod("echoBack", String.class), value, new Object[] { value });
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static class CountingInvocation extends MockInvocation
+    {
+        private int count;
+
+        CountingInvocation(Method method, Object returnValue, Object[] arguments)
+        {
+            super(method, returnValue, arguments);
+        }
+
+        @Override
+        public Object proceed() throws Throwable
+        {
+            count++;
+            return super.proceed();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.proxy2.Interceptor;
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+
+/**
+ * Measures the cost per invocation of a {@link MetricsInterceptor} against an interceptor that merely proceeds, with
+ * 1, 2, 4, ... threads up to twice the available processors, all invoking the same method. Not run as part of the
+ * build; run its {@code main} method with the test classpath, optionally passing the number of invocations per thread
+ * and measurement round.
+ */
+public class MetricsInterceptorBenchmark
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final int ROUNDS = 5;
+
+    //******************************************************************************************************************
+    // Static Methods
+    //******************************************************************************************************************
+
+    public static void main(String[] args) throws Exception
+    {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        final Invocation invocation = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo");
+        final Interceptor baseline = new Interceptor()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Object intercept(Invocation invocation) throws Throwable
+            {
+                return invocation.proceed();
+            }
+        };
+        final Interceptor metrics = new MetricsInterceptor();
+        final int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            // the first measurements of each kind only warm up:
+            measure(baseline, invocation, threads, iterations);
+            measure(metrics, invocation, threads, iterations);
+            double baselineNanos = Double.MAX_VALUE;
+            double metricsNanos = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++)
+            {
+                baselineNanos = Math.min(baselineNanos, measure(baseline, invocation, threads, iterations));
+                metricsNanos = Math.min(metricsNanos, measure(metrics, invocation, threads, iterations));
+            }
+            System.out.println(String.format("%2d threads: baseline %6.1f ns/call, metrics %6.1f ns/call, "
+                    + "overhead %6.1f ns/call", Integer.valueOf(threads), Double.valueOf(baselineNanos),
+                    Double.valueOf(metricsNanos), Double.valueOf(metricsNanos - baselineNanos)));
+        }
+    }
+
+    /**
+     * Run {@code iterations} invocations on each of {@code threads} threads at once.
+     * 
+     * @return mean wall time per invocation and thread, in nanoseconds
+     */
+    private static double measure(final Interceptor interceptor, final Invocation invocation, int threads,
+            final int iterations) throws InterruptedException
+    {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong elapsed = new AtomicLong();
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ready.countDown();
+                        go.await();
+                        final long start = System.nanoTime();
+                        for (int j = 0; j < iterations; j++)
+                        {
+                            interceptor.intercept(invocation);
+                        }
+                        elapsed.addAndGet(System.nanoTime() - start);
+                    }
+                    catch (Throwable t)
+                    {
+                        t.printStackTrace();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        ready.await();
+        go.countDown();
+        done.await();
+        return (double) elapsed.get() / threads / iterations;
+    }
+}
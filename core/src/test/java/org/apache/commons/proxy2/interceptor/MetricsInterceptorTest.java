@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class MetricsInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testCallsAndErrors() throws Throwable
+    {
+        final MetricsInterceptor interceptor = new MetricsInterceptor();
+        final Method echoBack = Echo.class.getMethod("echoBack", String.class);
+        for (int i = 0; i < 10; i++)
+        {
+            interceptor.intercept(new MockInvocation(echoBack, "foo", "foo"));
+        }
+        try
+        {
+            interceptor.intercept(new MockInvocation(echoBack, null, "foo")
+            {
+                @Override
+                public Object proceed() throws Throwable
+                {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        final MethodMetrics.Snapshot snapshot = interceptor.getRegistry().getMetrics(echoBack).snapshot();
+        assertEquals(11, snapshot.getCallCount());
+        assertEquals(1, snapshot.getErrorCount());
+        assertEquals(0, snapshot.getInFlight());
+        assertTrue(snapshot.getLatencies().getMax() >= snapshot.getLatencies().getValueAtPercentile(50));
+        assertTrue(snapshot.toString().startsWith("echoBack: calls=11, errors=1"));
+    }
+
+    @Test
+    public void testInFlight() throws Throwable
+    {
+        final MetricsInterceptor interceptor = new MetricsInterceptor();
+        final Method echoBack = Echo.class.getMethod("echoBack", String.class);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Invocation blocking = new MockInvocation(echoBack, "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                entered.countDown();
+                release.await();
+                return super.proceed();
+            }
+        };
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    interceptor.intercept(blocking);
+                }
+                catch (Throwable t)
+                {
+                    // ignore
+                }
+            }
+        });
+        thread.start();
+        entered.await();
+        assertEquals(1, interceptor.getRegistry().getMetrics(echoBack).snapshot().getInFlight());
+        release.countDown();
+        thread.join();
+        assertEquals(0, interceptor.getRegistry().getMetrics(echoBack).snapshot().getInFlight());
+    }
+
+    @Test
+    public void testSharedRegistrySnapshotAndReset() throws Throwable
+    {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final Method echoBack = Echo.class.getMethod("echoBack", String.class);
+        final Method echo = Echo.class.getMethod("echo");
+        new MetricsInterceptor(registry).intercept(new MockInvocation(echoBack, "foo", "foo"));
+        new MetricsInterceptor(registry).intercept(new MockInvocation(echoBack, "foo", "foo"));
+        new MetricsInterceptor(registry).intercept(new MockInvocation(echo, null));
+        final Map<Method, MethodMetrics.Snapshot> snapshot = registry.snapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.get(echoBack).getCallCount());
+        assertEquals(1, snapshot.get(echo).getCallCount());
+        registry.reset();
+        assertEquals(0, registry.getMetrics(echoBack).snapshot().getCallCount());
+        assertEquals(2, registry.getMetrics().size());
+    }
+
+    @Test
+    public void testTimingInterval() throws Throwable
+    {
+        final MetricsInterceptor interceptor = new MetricsInterceptor(new MetricsRegistry(4));
+        final Method echoBack = Echo.class.getMethod("echoBack", String.class);
+        for (int i = 0; i < 10; i++)
+        {
+            interceptor.intercept(new MockInvocation(echoBack, "foo", "foo"));
+        }
+        final MethodMetrics.Snapshot snapshot = interceptor.getRegistry().getMetrics(echoBack).snapshot();
+        assertEquals(10, snapshot.getCallCount());
+        assertEquals(3, snapshot.getLatencies().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimingIntervalNotPowerOfTwo()
+    {
+        new MetricsRegistry(3);
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new MetricsInterceptor());
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class OffHeapMemoizingInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testHitReturnsCopy() throws Throwable
+    {
+        final OffHeapMemoizingInterceptor interceptor = new OffHeapMemoizingInterceptor(4096);
+        final Date date = new Date();
+        assertEquals(date, interceptor.intercept(echoBack("foo", date)));
+        final CountingInvocation again = echoBack("foo", null);
+        final Object cached = interceptor.intercept(again);
+        assertEquals(date, cached);
+        assertNotSame(date, cached);
+        assertEquals(0, again.count);
+        assertEquals(1, interceptor.getHitCount());
+        assertEquals(1, interceptor.getMissCount());
+    }
+
+    @Test
+    public void testOldestOverwritten() throws Throwable
+    {
+        final OffHeapMemoizingInterceptor interceptor = new OffHeapMemoizingInterceptor(null,
+                ByteBuffer.allocate(256));
+        for (int i = 0; i < 100; i++)
+        {
+            interceptor.intercept(echoBack(String.valueOf(i), String.valueOf(i)));
+        }
+        final CountingInvocation first = echoBack("0", "0");
+        interceptor.intercept(first);
+        assertEquals(1, first.count);
+        final CountingInvocation last = echoBack("99", null);
+        assertEquals("99", interceptor.intercept(last));
+        assertEquals(0, last.count);
+        assertEquals(true, interceptor.size() < 100);
+    }
+
+    @Test
+    public void testNonSerializableResultNotCached() throws Throwable
+    {
+        final OffHeapMemoizingInterceptor interceptor = new OffHeapMemoizingInterceptor(4096);
+        interceptor.intercept(echoBack("foo", new Object()));
+        final CountingInvocation again = echoBack("foo", new Object());
+        interceptor.intercept(again);
+        assertEquals(1, again.count);
+    }
+
+    @Test
+    public void testOversizedResultNotCached() throws Throwable
+    {
+        final OffHeapMemoizingInterceptor interceptor = new OffHeapMemoizingInterceptor(64);
+        final ArrayList<Integer> large = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++)
+        {
+            large.add(i);
+        }
+        interceptor.intercept(echoBack("foo", large));
+        assertEquals(0, interceptor.size());
+    }
+
+    @Test
+    public void testClear() throws Throwable
+    {
+        final OffHeapMemoizingInterceptor interceptor = new OffHeapMemoizingInterceptor(4096);
+        interceptor.intercept(echoBack("foo", "foo"));
+        assertEquals(1, interceptor.size());
+        interceptor.clear();
+        assertEquals(0, interceptor.size());
+    }
+
+    @Test
+    public void testRecoverFromStorage() throws Throwable
+    {
+        final ByteBuffer storage = ByteBuffer.allocate(4096);
+        final OffHeapMemoizingInterceptor first = new OffHeapMemoizingInterceptor(null, storage);
+        first.intercept(echoBack("foo", "foo"));
+        first.intercept(echoBack("bar", "bar"));
+
+        final OffHeapMemoizingInterceptor second = new OffHeapMemoizingInterceptor(null, storage);
+        assertEquals(2, second.size());
+        final CountingInvocation foo = echoBack("foo", null);
+        assertEquals("foo", second.intercept(foo));
+        assertEquals(0, foo.count);
+        final CountingInvocation bar = echoBack("bar", null);
+        assertEquals("bar", second.intercept(bar));
+        assertEquals(0, bar.count);
+
+        second.clear();
+        assertEquals(0, new OffHeapMemoizingInterceptor(null, storage).size());
+    }
+
+    @Test
+    public void testRecoverAfterWrapping() throws Throwable
+    {
+        final ByteBuffer storage = ByteBuffer.allocate(1024);
+        final OffHeapMemoizingInterceptor first = new OffHeapMemoizingInterceptor(null, storage);
+        for (int i = 0; i < 100; i++)
+        {
+            first.intercept(echoBack(String.valueOf(i), String.valueOf(i)));
+        }
+        final OffHeapMemoizingInterceptor second = new OffHeapMemoizingInterceptor(null, storage);
+        assertEquals(first.size(), second.size());
+        final CountingInvocation last = echoBack("99", null);
+        assertEquals("99", second.intercept(last));
+        assertEquals(0, last.count);
+        final CountingInvocation oldest = echoBack("0", "0");
+        second.intercept(oldest);
+        assertEquals(1, oldest.count);
+    }
+
+    @Test
+    public void testRecoveryStopsAtDamagedRecord() throws Throwable
+    {
+        final ByteBuffer storage = ByteBuffer.allocate(4096);
+        final OffHeapMemoizingInterceptor first = new OffHeapMemoizingInterceptor(null, storage);
+        first.intercept(echoBack("foo", "foo"));
+        first.intercept(echoBack("bar", "bar"));
+        first.intercept(echoBack("baz", "baz"));
+        // flip a byte inside the record of "foo", the first one after the 16-byte buffer header:
+        storage.put(40, (byte) (storage.get(40) ^ 0xFF));
+
+        final OffHeapMemoizingInterceptor second = new OffHeapMemoizingInterceptor(null, storage);
+        assertEquals(2, second.size());
+        final CountingInvocation foo = echoBack("foo", "foo");
+        second.intercept(foo);
+        assertEquals(1, foo.count);
+    }
+
+    @Test
+    public void testUnrecognizedStorageInitialized() throws Throwable
+    {
+        final ByteBuffer storage = ByteBuffer.allocate(1024);
+        new OffHeapMemoizingInterceptor(null, storage).intercept(echoBack("foo", "foo"));
+        assertEquals(0, new OffHeapMemoizingInterceptor(null, ByteBuffer.allocate(2048)).size());
+        final ByteBuffer larger = ByteBuffer.allocate(2048);
+        larger.put(storage);
+        assertEquals(0, new OffHeapMemoizingInterceptor(null, larger).size());
+    }
+
+    @Test
+    public void testNonSerializableArgumentsNotRecovered() throws Throwable
+    {
+        final ByteBuffer storage = ByteBuffer.allocate(4096);
+        final OffHeapMemoizingInterceptor first = new OffHeapMemoizingInterceptor(null, storage);
+        first.intercept(new CountingInvocation(Echo.class.getMethod("echoBack", String.class), "result",
+                new Object[] { new Object() }));
+        assertEquals(1, first.size());
+        assertEquals(0, new OffHeapMemoizingInterceptor(null, storage).size());
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new OffHeapMemoizingInterceptor(1024));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidCapacity()
+    {
+        new OffHeapMemoizingInterceptor(0);
+    }
+
+    private static CountingInvocation echoBack(String argument, Object result) throws NoSuchMethodException
+    {
+        return new CountingInvocation(Echo.class.getMethod("echoBack", String.class), result,
+                new Object[] { argument });
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static class CountingInvocation extends MockInvocation
+    {
+        private int count;
+
+        CountingInvocation(Method method, Object returnValue, Object[] arguments)
+        {
+            super(method, returnValue, arguments);
+        }
+
+        @Override
+        public Object proceed() throws Throwable
+        {
+            count++;
+            return super.proceed();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.exception.RejectedInvocationException;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class RateLimitingInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testBurstThenReject() throws Throwable
+    {
+        final RateLimitingInterceptor interceptor = new RateLimitingInterceptor(1, 1, TimeUnit.HOURS, 3, 0);
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals("foo", interceptor.intercept(echoBack()));
+        }
+        try
+        {
+            interceptor.intercept(echoBack());
+            fail();
+        }
+        catch (RejectedInvocationException e)
+        {
+            assertEquals(1, interceptor.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testBoundedWait() throws Throwable
+    {
+        final RateLimitingInterceptor interceptor = new RateLimitingInterceptor(20, 1, TimeUnit.SECONDS, 1,
+                1000);
+        final long start = System.nanoTime();
+        interceptor.intercept(echoBack());
+        interceptor.intercept(echoBack());
+        interceptor.intercept(echoBack());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(2, interceptor.getQueuedCount());
+        assertEquals(0, interceptor.getRejectedCount());
+    }
+
+    @Test
+    public void testPermitsReplenished() throws Throwable
+    {
+        final RateLimitingInterceptor interceptor = new RateLimitingInterceptor(100, 1, TimeUnit.SECONDS);
+        interceptor.intercept(echoBack());
+        Thread.sleep(20);
+        interceptor.intercept(echoBack());
+        assertEquals(0, interceptor.getRejectedCount());
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new RateLimitingInterceptor(1, 1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidPermits()
+    {
+        new RateLimitingInterceptor(0, 1, TimeUnit.SECONDS);
+    }
+
+    private static Invocation echoBack() throws NoSuchMethodException
+    {
+        return new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo");
+    }
+}
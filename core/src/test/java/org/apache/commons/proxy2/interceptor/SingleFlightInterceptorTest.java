@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class SingleFlightInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testDuplicatesCollapsed() throws Throwable
+    {
+        final SingleFlightInterceptor interceptor = new SingleFlightInterceptor();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger proceeded = new AtomicInteger();
+        final Invocation blocking = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "result",
+                "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                proceeded.incrementAndGet();
+                entered.countDown();
+                release.await();
+                return super.proceed();
+            }
+        };
+        final AtomicReference<Object> leaderResult = new AtomicReference<Object>();
+        final Thread leader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    leaderResult.set(interceptor.intercept(blocking));
+                }
+                catch (Throwable t)
+                {
+                    leaderResult.set(t);
+                }
+            }
+        });
+        leader.start();
+        entered.await();
+        assertEquals(1, interceptor.getInFlightCount());
+        final AtomicReference<Object> followerResult = new AtomicReference<Object>();
+        final Thread follower = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    followerResult.set(interceptor.intercept(blocking));
+                }
+                catch (Throwable t)
+                {
+                    followerResult.set(t);
+                }
+            }
+        });
+        follower.start();
+        while (interceptor.getCollapsedCount() == 0)
+        {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        leader.join();
+        follower.join();
+        assertEquals("result", leaderResult.get());
+        assertEquals("result", followerResult.get());
+        assertEquals(1, proceeded.get());
+        assertEquals(0.5, interceptor.getCollapseRatio(), 0.0);
+        assertEquals(0, interceptor.getInFlightCount());
+    }
+
+    @Test
+    public void testNothingRetained() throws Throwable
+    {
+        final SingleFlightInterceptor interceptor = new SingleFlightInterceptor();
+        final AtomicInteger proceeded = new AtomicInteger();
+        final Invocation invocation = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "result",
+                "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                proceeded.incrementAndGet();
+                return super.proceed();
+            }
+        };
+        interceptor.intercept(invocation);
+        interceptor.intercept(invocation);
+        assertEquals(2, proceeded.get());
+        assertEquals(0, interceptor.getCollapsedCount());
+    }
+
+    @Test
+    public void testFailurePropagated() throws Throwable
+    {
+        final IllegalStateException failure = new IllegalStateException();
+        final Invocation invocation = new MockInvocation(Echo.class.getMethod("echoBack", String.class), null, "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                throw failure;
+            }
+        };
+        try
+        {
+            new SingleFlightInterceptor().intercept(invocation);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new SingleFlightInterceptor());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpanExporterTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private File file;
+
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Before
+    public void createFile() throws IOException
+    {
+        file = File.createTempFile("spans", ".json");
+    }
+
+    @After
+    public void deleteFile()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testExport() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        interceptor.intercept(new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo"));
+        final SpanExporter exporter = new SpanExporter(interceptor, file, "test");
+        assertEquals(1, exporter.export());
+        assertEquals(0, exporter.export());
+        final List<String> lines = readLines();
+        assertEquals(1, lines.size());
+        final String json = lines.get(0);
+        assertTrue(json.startsWith("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\","
+                + "\"value\":{\"stringValue\":\"test\"}}]}"));
+        assertTrue(json.contains("\"name\":\"Echo.echoBack\""));
+        assertTrue(json.contains("{\"key\":\"code.function\",\"value\":{\"stringValue\":\"echoBack\"}}"));
+        assertTrue(json.contains("\"status\":{\"code\":1}"));
+        assertTrue(!json.contains("parentSpanId"));
+    }
+
+    @Test
+    public void testPeriodicExportAndClose() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        final SpanExporter exporter = new SpanExporter(interceptor, file, "test");
+        exporter.start(10, TimeUnit.MILLISECONDS);
+        interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null));
+        exporter.close();
+        assertEquals(1, readLines().size());
+    }
+
+    @Test
+    public void testFailedExportKeepsSpans() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        final SpanExporter exporter = new SpanExporter(interceptor, file, "test");
+        interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null));
+        // a directory cannot be appended to:
+        assertTrue(file.delete() && file.mkdir());
+        try
+        {
+            exporter.export();
+            fail();
+        }
+        catch (IOException e)
+        {
+            assertEquals(1, exporter.getPendingCount());
+        }
+        assertTrue(file.delete());
+        interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null));
+        assertEquals(2, exporter.export());
+        assertEquals(0, exporter.getPendingCount());
+        assertEquals(1, readLines().size());
+    }
+
+    @Test
+    public void testPeriodicExportSurvivesFailures() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        final AtomicInteger failures = new AtomicInteger();
+        final SpanExporter exporter = new SpanExporter(interceptor, file, "test")
+        {
+            @Override
+            String toJson(List<Span> spans)
+            {
+                if (failures.incrementAndGet() == 1)
+                {
+                    throw new IllegalStateException();
+                }
+                return super.toJson(spans);
+            }
+        };
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+        {
+            @Override
+            public void uncaughtException(Thread t, Throwable e)
+            {
+                // expected
+            }
+        });
+        try
+        {
+            interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null));
+            exporter.start(10, TimeUnit.MILLISECONDS);
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (readLines().isEmpty() && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            exporter.close();
+        }
+        finally
+        {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertTrue(exporter.getLastFailure() instanceof IllegalStateException);
+        assertEquals(1, readLines().size());
+    }
+
+    private List<String> readLines() throws IOException
+    {
+        final List<String> result = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                result.add(line);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return result;
+    }
+}
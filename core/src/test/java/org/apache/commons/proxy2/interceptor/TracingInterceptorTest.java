@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.proxy2.Invocation;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.MockInvocation;
+import org.junit.Test;
+
+public class TracingInterceptorTest extends AbstractTestCase
+{
+    //******************************************************************************************************************
+    // Other Methods
+    //******************************************************************************************************************
+
+    @Test
+    public void testNestedSpans() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        final Invocation inner = new MockInvocation(Echo.class.getMethod("echo"), null);
+        final Invocation outer = new MockInvocation(Echo.class.getMethod("echoBack", String.class), "foo", "foo")
+        {
+            @Override
+            public Object proceed() throws Throwable
+            {
+                interceptor.intercept(inner);
+                return super.proceed();
+            }
+        };
+        assertEquals("foo", interceptor.intercept(outer));
+        final List<Span> spans = new ArrayList<Span>();
+        assertEquals(2, interceptor.drainTo(spans));
+        final Span child = spans.get(0);
+        final Span parent = spans.get(1);
+        assertEquals("echo", child.getMethod().getName());
+        assertEquals("echoBack", parent.getMethod().getName());
+        assertNull(parent.getParentSpanId());
+        assertEquals(parent.getSpanId(), child.getParentSpanId());
+        assertEquals(parent.getTraceId(), child.getTraceId());
+        assertEquals(32, parent.getTraceId().length());
+        assertEquals(16, parent.getSpanId().length());
+        assertTrue(parent.getDurationNanos() >= child.getDurationNanos());
+        assertTrue(parent.isSuccessful());
+        assertEquals(0, interceptor.drainTo(spans));
+    }
+
+    @Test
+    public void testUnsampled() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(0.0, 16);
+        for (int i = 0; i < 10; i++)
+        {
+            interceptor.intercept(echo());
+        }
+        assertEquals(0, interceptor.drainTo(new ArrayList<Span>()));
+    }
+
+    @Test
+    public void testSeparateTraces() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        interceptor.intercept(echo());
+        interceptor.intercept(echo());
+        final List<Span> spans = new ArrayList<Span>();
+        interceptor.drainTo(spans);
+        assertTrue(!spans.get(0).getTraceId().equals(spans.get(1).getTraceId()));
+    }
+
+    @Test
+    public void testError() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        try
+        {
+            interceptor.intercept(new MockInvocation(Echo.class.getMethod("echo"), null)
+            {
+                @Override
+                public Object proceed() throws Throwable
+                {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        final List<Span> spans = new ArrayList<Span>();
+        interceptor.drainTo(spans);
+        assertEquals(IllegalStateException.class.getName(), spans.get(0).getError());
+    }
+
+    @Test
+    public void testDropsWhenFull() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 2);
+        for (int i = 0; i < 5; i++)
+        {
+            interceptor.intercept(echo());
+        }
+        assertEquals(3, interceptor.getDroppedCount());
+        assertEquals(2, interceptor.drainTo(new ArrayList<Span>()));
+        interceptor.intercept(echo());
+        assertEquals(1, interceptor.drainTo(new ArrayList<Span>()));
+    }
+
+    @Test
+    public void testOtherThreads() throws Throwable
+    {
+        final TracingInterceptor interceptor = new TracingInterceptor(1.0, 16);
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    interceptor.intercept(echo());
+                }
+                catch (Throwable t)
+                {
+                    throw new AssertionError(t);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        interceptor.intercept(echo());
+        assertEquals(2, interceptor.drainTo(new ArrayList<Span>()));
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new TracingInterceptor(0.5, 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidSampleRate()
+    {
+        new TracingInterceptor(1.5, 16);
+    }
+
+    private static Invocation echo() throws NoSuchMethodException
+    {
+        final Method method = Echo.class.getMethod("echo");
+        return new MockInvocation(method, null);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.junit.Test;
+
+public class DuckTypingInvokerTest extends AbstractTestCase
+{
+    @Test
+    public void testInvokesMatchingMethod() throws Throwable
+    {
+        final DuckTypingInvoker invoker = new DuckTypingInvoker(ObjectProviderUtils.constant(new LegacyDuck()));
+        final Method quack = Duck.class.getMethod("quack");
+        assertEquals("Quack", invoker.invoke(null, quack, null));
+        assertEquals("Quack", invoker.invoke(null, quack, null));
+    }
+
+    @Test
+    public void testChangingTargetClass() throws Throwable
+    {
+        final DuckTypingInvoker invoker = new DuckTypingInvoker(new ObjectProvider<Object>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            private int count;
+
+            @Override
+            public Object getObject()
+            {
+                return count++ % 2 == 0 ? new LegacyDuck() : new RubberDuck();
+            }
+        });
+        final Method quack = Duck.class.getMethod("quack");
+        assertEquals("Quack", invoker.invoke(null, quack, null));
+        assertEquals("Squeak", invoker.invoke(null, quack, null));
+        assertEquals("Quack", invoker.invoke(null, quack, null));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMissingMethod() throws Throwable
+    {
+        new DuckTypingInvoker(ObjectProviderUtils.constant(new LegacyDuck())).invoke(null,
+                Duck.class.getMethod("fly"), null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIncompatibleReturnType() throws Throwable
+    {
+        new DuckTypingInvoker(ObjectProviderUtils.constant(new LegacyDuck())).invoke(null,
+                Duck.class.getMethod("weight"), null);
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new DuckTypingInvoker(ObjectProviderUtils.constant("duck")));
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Duck
+    {
+        String quack();
+
+        void fly();
+
+        long weight();
+    }
+
+    public static class LegacyDuck
+    {
+        public String quack()
+        {
+            return "Quack";
+        }
+
+        public int weight()
+        {
+            return 1;
+        }
+    }
+
+    public static class RubberDuck
+    {
+        public String quack()
+        {
+            return "Squeak";
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class HedgingInvokerTest extends AbstractTestCase
+{
+    @Test
+    public void testHedgesSlowDelegate() throws Throwable
+    {
+        final SlowEcho slow = new SlowEcho("slow");
+        final HedgingInvoker<Echo> invoker = new HedgingInvoker<Echo>(10, TimeUnit.MILLISECONDS, provider(slow),
+                provider(new PrefixEcho("fast")));
+        final long start = System.nanoTime();
+        assertEquals("fast:foo", invoker.invoke(null, echoBack(), new Object[] { "foo" }));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, invoker.getHedgeCount());
+        assertTrue(slow.interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNoHedgeWhenFast() throws Throwable
+    {
+        final HedgingInvoker<Echo> invoker = new HedgingInvoker<Echo>(1, TimeUnit.SECONDS, provider(new PrefixEcho(
+                "a")), provider(new PrefixEcho("b")));
+        assertEquals("a:foo", invoker.invoke(null, echoBack(), new Object[] { "foo" }));
+        assertEquals("b:foo", invoker.invoke(null, echoBack(), new Object[] { "foo" }));
+        assertEquals(0, invoker.getHedgeCount());
+        assertEquals(2, invoker.getInvocationCount());
+        assertEquals(2, invoker.getLatencies(echoBack()).getCount());
+    }
+
+    @Test
+    public void testFailureTriesNextDelegate() throws Throwable
+    {
+        final HedgingInvoker<Echo> invoker = new HedgingInvoker<Echo>(1, TimeUnit.SECONDS, provider(new FailingEcho()),
+                provider(new PrefixEcho("b")));
+        assertEquals("b:foo", invoker.invoke(null, echoBack(), new Object[] { "foo" }));
+        assertEquals(0, invoker.getHedgeCount());
+        assertEquals(2, invoker.getLatencies(echoBack()).getCount());
+    }
+
+    @Test
+    public void testLatenciesForgotten() throws Throwable
+    {
+        final HedgingInvoker<Echo> invoker = new HedgingInvoker<Echo>(Arrays.asList(provider(new PrefixEcho("a")),
+                provider(new PrefixEcho("b"))), 95.0, 1000, 50, TimeUnit.MILLISECONDS, null);
+        invoker.invoke(null, echoBack(), new Object[] { "foo" });
+        assertEquals(1, invoker.getLatencies(echoBack()).getCount());
+        Thread.sleep(60);
+        assertEquals(0, invoker.getLatencies(echoBack()).getCount());
+    }
+
+    @Test
+    public void testAllFail() throws Throwable
+    {
+        final HedgingInvoker<Echo> invoker = new HedgingInvoker<Echo>(1, TimeUnit.SECONDS, provider(new FailingEcho()),
+                provider(new FailingEcho()));
+        try
+        {
+            invoker.invoke(null, echoBack(), new Object[] { "foo" });
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("foo", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new HedgingInvoker<Echo>(1, TimeUnit.SECONDS, provider(new PrefixEcho("a")),
+                provider(new PrefixEcho("b"))));
+    }
+
+    @Test
+    public void testSerializationWithExecutor() throws Throwable
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final HedgingInvoker<Echo> copy = SerializationUtils.clone(new HedgingInvoker<Echo>(Arrays.asList(
+                    provider(new PrefixEcho("a")), provider(new PrefixEcho("b"))), 95.0, 1, TimeUnit.SECONDS,
+                    executor));
+            assertEquals("a:foo", copy.invoke(null, echoBack(), new Object[] { "foo" }));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithSingleDelegate()
+    {
+        new HedgingInvoker<Echo>(1, TimeUnit.SECONDS, provider(new PrefixEcho("a")));
+    }
+
+    private static Method echoBack() throws NoSuchMethodException
+    {
+        return Echo.class.getMethod("echoBack", String.class);
+    }
+
+    private static ObjectProvider<Echo> provider(Echo echo)
+    {
+        return ObjectProviderUtils.constant(echo);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static class PrefixEcho extends EchoImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String prefix;
+
+        PrefixEcho(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            return prefix + ":" + message;
+        }
+    }
+
+    private static class SlowEcho extends PrefixEcho
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch interrupted = new CountDownLatch(1);
+
+        SlowEcho(String prefix)
+        {
+            super(prefix);
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            try
+            {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            }
+            catch (InterruptedException e)
+            {
+                interrupted.countDown();
+            }
+            return super.echoBack(message);
+        }
+    }
+
+    private static class FailingEcho extends EchoImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String echoBack(String message)
+        {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.invoker.LoadBalancingInvoker.Strategy;
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class LoadBalancingInvokerTest extends AbstractTestCase
+{
+    private static final Object[] ARGS = { "foo" };
+
+    @Test
+    public void testRoundRobin() throws Throwable
+    {
+        final LoadBalancingInvoker<Echo> invoker = new LoadBalancingInvoker<Echo>(Strategy.ROUND_ROBIN,
+                provider(new NamedEcho("a")), provider(new NamedEcho("b")), provider(new NamedEcho("c")));
+        final StringBuilder names = new StringBuilder();
+        for (int i = 0; i < 6; i++)
+        {
+            names.append(invoker.invoke(null, echo(), ARGS));
+        }
+        assertEquals("abcabc", names.toString());
+    }
+
+    @Test
+    public void testLeastOutstanding() throws Throwable
+    {
+        final BlockingEcho blocking = new BlockingEcho("a");
+        final LoadBalancingInvoker<Echo> invoker = new LoadBalancingInvoker<Echo>(Strategy.LEAST_OUTSTANDING,
+                provider(blocking), provider(new NamedEcho("b")));
+        final Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    invoker.invoke(null, echo(), ARGS);
+                }
+                catch (Throwable t)
+                {
+                    throw new RuntimeException(t);
+                }
+            }
+        };
+        thread.start();
+        assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, invoker.getOutstandingCount(0));
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals("b", invoker.invoke(null, echo(), ARGS));
+        }
+        blocking.release.countDown();
+        thread.join();
+        assertEquals(0, invoker.getOutstandingCount(0));
+    }
+
+    @Test
+    public void testEwmaPrefersFasterDelegate() throws Throwable
+    {
+        final LoadBalancingInvoker<Echo> invoker = new LoadBalancingInvoker<Echo>(Strategy.EWMA, provider(new SlowEcho(
+                "slow")), provider(new NamedEcho("fast")));
+        invoker.invoke(null, echo(), ARGS);
+        invoker.invoke(null, echo(), ARGS);
+        assertTrue(invoker.getAverageLatency(0, TimeUnit.NANOSECONDS) > invoker.getAverageLatency(1,
+                TimeUnit.NANOSECONDS));
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals("fast", invoker.invoke(null, echo(), ARGS));
+        }
+    }
+
+    @Test
+    public void testEwmaReprobesAfterDecay() throws Throwable
+    {
+        final LoadBalancingInvoker<Echo> invoker = new LoadBalancingInvoker<Echo>(Strategy.EWMA, 50,
+                TimeUnit.MILLISECONDS, Arrays.asList(provider(new SlowEcho("slow")), provider(new NamedEcho("fast"))));
+        invoker.invoke(null, echo(), ARGS);
+        invoker.invoke(null, echo(), ARGS);
+        assertEquals("fast", invoker.invoke(null, echo(), ARGS));
+        // the fast delegate keeps being measured, while the slow one's estimate decays until it is tried again:
+        boolean reprobed = false;
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (!reprobed && System.currentTimeMillis() < deadline)
+        {
+            reprobed = "slow".equals(invoker.invoke(null, echo(), ARGS));
+        }
+        assertTrue(reprobed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionPropagated() throws Throwable
+    {
+        new LoadBalancingInvoker<Echo>(Strategy.LEAST_OUTSTANDING, provider(new EchoImpl())).invoke(null,
+                Echo.class.getMethod("illegalArgument"), null);
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        assertSerializable(new LoadBalancingInvoker<Echo>(Strategy.EWMA, provider(new NamedEcho("a"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithNoDelegates()
+    {
+        new LoadBalancingInvoker<Echo>(Strategy.ROUND_ROBIN);
+    }
+
+    private static Method echo() throws NoSuchMethodException
+    {
+        return Echo.class.getMethod("echoBack", String.class);
+    }
+
+    private static ObjectProvider<Echo> provider(Echo echo)
+    {
+        return ObjectProviderUtils.constant(echo);
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static class NamedEcho extends EchoImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        NamedEcho(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            return name;
+        }
+    }
+
+    private static class SlowEcho extends NamedEcho
+    {
+        private static final long serialVersionUID = 1L;
+
+        SlowEcho(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            try
+            {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return super.echoBack(message);
+        }
+    }
+
+    private static class BlockingEcho extends NamedEcho
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch entered = new CountDownLatch(1);
+        private final transient CountDownLatch release = new CountDownLatch(1);
+
+        BlockingEcho(String name)
+        {
+            super(name);
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            entered.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return super.echoBack(message);
+        }
+    }
+}
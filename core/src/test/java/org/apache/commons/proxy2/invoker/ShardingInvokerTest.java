@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.invoker.ShardingInvoker.Hashing;
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class ShardingInvokerTest extends AbstractTestCase
+{
+    @Test
+    public void testRoutesByFirstArgument() throws Throwable
+    {
+        for (Hashing hashing : Hashing.values())
+        {
+            final ShardingInvoker<Echo> invoker = new ShardingInvoker<Echo>(hashing, 0, shards(4));
+            for (int i = 0; i < 100; i++)
+            {
+                final String key = "tenant" + i;
+                assertEquals(String.valueOf(invoker.getShard(key)),
+                        invoker.invoke(null, Echo.class.getMethod("echoBack", String.class), new Object[] { key }));
+            }
+        }
+    }
+
+    @Test
+    public void testRouteBy() throws Throwable
+    {
+        final Method method = Echo.class.getMethod("echoBack", String.class, String.class);
+        final ShardingInvoker<Echo> invoker = new ShardingInvoker<Echo>(Hashing.RENDEZVOUS, 0, shards(8)).routeBy(
+                method, 1);
+        for (int i = 0; i < 100; i++)
+        {
+            final String key = "account" + i;
+            assertEquals(String.valueOf(invoker.getShard(key)),
+                    invoker.invoke(null, method, new Object[] { "ignored" + i, key }));
+        }
+    }
+
+    @Test
+    public void testMethodWithoutArguments() throws Throwable
+    {
+        final ShardingInvoker<Echo> invoker = new ShardingInvoker<Echo>(Hashing.CONSISTENT, 0, shards(4));
+        invoker.invoke(null, Echo.class.getMethod("echo"), null);
+    }
+
+    @Test
+    public void testEvenSpread()
+    {
+        for (Hashing hashing : Hashing.values())
+        {
+            final ShardingInvoker<Echo> invoker = new ShardingInvoker<Echo>(hashing, 0, shards(4));
+            final int[] counts = new int[4];
+            for (int i = 0; i < 10000; i++)
+            {
+                counts[invoker.getShard(Integer.valueOf(i))]++;
+            }
+            for (int count : counts)
+            {
+                assertTrue(hashing + ": " + count, count > 1500 && count < 3500);
+            }
+        }
+    }
+
+    @Test
+    public void testAddingShardOnlyMovesKeysToIt()
+    {
+        for (Hashing hashing : Hashing.values())
+        {
+            final ShardingInvoker<Echo> before = new ShardingInvoker<Echo>(hashing, 0, shards(4));
+            final ShardingInvoker<Echo> after = new ShardingInvoker<Echo>(hashing, 0, shards(5));
+            int moved = 0;
+            for (int i = 0; i < 10000; i++)
+            {
+                final int shard = after.getShard(Integer.valueOf(i));
+                if (shard != before.getShard(Integer.valueOf(i)))
+                {
+                    assertEquals(4, shard);
+                    moved++;
+                }
+            }
+            assertTrue(hashing + ": " + moved, moved > 1000 && moved < 3000);
+        }
+    }
+
+    @Test
+    public void testRemovingNamedShardOnlyMovesItsKeys()
+    {
+        for (Hashing hashing : Hashing.values())
+        {
+            final Map<String, ObjectProvider<Echo>> shards = namedShards("alpha", "beta", "gamma", "delta");
+            final ShardingInvoker<Echo> before = new ShardingInvoker<Echo>(hashing, 0, shards);
+            shards.remove("beta");
+            final ShardingInvoker<Echo> after = new ShardingInvoker<Echo>(hashing, 0, shards);
+            int moved = 0;
+            for (int i = 0; i < 10000; i++)
+            {
+                final String owner = before.getShardName(before.getShard(Integer.valueOf(i)));
+                if (!owner.equals(after.getShardName(after.getShard(Integer.valueOf(i)))))
+                {
+                    assertEquals("beta", owner);
+                    moved++;
+                }
+            }
+            assertTrue(hashing + ": " + moved, moved > 1500 && moved < 3500);
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Throwable
+    {
+        final Method method = Echo.class.getMethod("echoBack", String.class, String.class);
+        final ShardingInvoker<Echo> invoker = new ShardingInvoker<Echo>(Hashing.CONSISTENT, 0, shards(4)).routeBy(
+                method, 1);
+        final ShardingInvoker<Echo> copy = SerializationUtils.clone(invoker);
+        for (int i = 0; i < 20; i++)
+        {
+            final String key = "key" + i;
+            assertEquals(String.valueOf(invoker.getShard(key)),
+                    copy.invoke(null, method, new Object[] { "ignored", key }));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteByInvalidIndex() throws Throwable
+    {
+        new ShardingInvoker<Echo>(Hashing.CONSISTENT, 0, shards(2)).routeBy(Echo.class.getMethod("echo"), 0);
+    }
+
+    private static Map<String, ObjectProvider<Echo>> namedShards(String... names)
+    {
+        final Map<String, ObjectProvider<Echo>> result = new LinkedHashMap<String, ObjectProvider<Echo>>();
+        for (String name : names)
+        {
+            result.put(name, ObjectProviderUtils.<Echo> constant(new ShardEcho(name)));
+        }
+        return result;
+    }
+
+    private static List<ObjectProvider<Echo>> shards(int count)
+    {
+        final List<ObjectProvider<Echo>> result = new ArrayList<ObjectProvider<Echo>>();
+        for (int i = 0; i < count; i++)
+        {
+            result.add(ObjectProviderUtils.<Echo> constant(new ShardEcho(String.valueOf(i))));
+        }
+        return result;
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    private static class ShardEcho extends EchoImpl
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        ShardEcho(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String echoBack(String message)
+        {
+            return name;
+        }
+
+        @Override
+        public String echoBack(String message1, String message2)
+        {
+            return name;
+        }
+    }
+}
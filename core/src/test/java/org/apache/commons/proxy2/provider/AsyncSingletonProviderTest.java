@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncSingletonProviderTest extends AbstractTestCase
+{
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testGetObject() throws Exception
+    {
+        final CountingProvider<EchoImpl> counter = new CountingProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class));
+        final AsyncSingletonProvider<EchoImpl> provider = new AsyncSingletonProvider<EchoImpl>(counter, executor);
+        final EchoImpl echo = provider.getObject();
+        assertTrue(provider.isDone());
+        assertSame(echo, provider.getObject());
+        assertEquals(1, counter.getCount());
+    }
+
+    @Test
+    public void testInitializesInBackground() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AsyncSingletonProvider<String> provider = new AsyncSingletonProvider<String>(
+                new ObjectProvider<String>()
+                {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public String getObject()
+                    {
+                        try
+                        {
+                            latch.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            throw new ObjectProviderException(e);
+                        }
+                        return "Hello";
+                    }
+                }, executor);
+        assertFalse(provider.isDone());
+        latch.countDown();
+        assertEquals("Hello", provider.getObject());
+    }
+
+    @Test(expected = ObjectProviderException.class)
+    public void testFailure()
+    {
+        new AsyncSingletonProvider<Object>(new BeanProvider<Object>(ObjectProvider.class), executor).getObject();
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        final AsyncSingletonProvider<String> provider = new AsyncSingletonProvider<String>(
+                new ConstantProvider<String>("Hello"), executor);
+        assertEquals("Hello", SerializationUtils.clone(provider).getObject());
+    }
+}
@@ -17,8 +17,12 @@
 
 package org.apache.commons.proxy2.provider;
 
+import static org.junit.Assert.assertNotSame;
+
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.proxy2.exception.ObjectProviderException;
 import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.EchoImpl;
 import org.junit.Test;
 
 public class BeanProviderTest extends AbstractTestCase
@@ -40,12 +44,25 @@ public class BeanProviderTest extends AbstractTestCase
         new BeanProvider<MyBean>(MyBean.class).getObject();
     }
 
+    @Test
+    public void testNewInstancePerCall()
+    {
+        final BeanProvider<EchoImpl> p = SerializationUtils.clone(new BeanProvider<EchoImpl>(EchoImpl.class));
+        assertNotSame(p.getObject(), p.getObject());
+    }
+
     @Test
     public void testSerialization()
     {
         assertSerializable(new BeanProvider<MyBean>(MyBean.class));
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void testWithThrowingConstructor()
+    {
+        new BeanProvider<ThrowingBean>(ThrowingBean.class).getObject();
+    }
+
     @Test(expected = NullPointerException.class)
     public void testWithNullBeanClass()
     {
@@ -64,4 +81,12 @@ public class BeanProviderTest extends AbstractTestCase
 
         }
     }
+
+    public static class ThrowingBean
+    {
+        public ThrowingBean()
+        {
+            throw new IllegalStateException();
+        }
+    }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import static org.junit.Assert.fail;
 
 import java.util.Date;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.proxy2.exception.ObjectProviderException;
 import org.apache.commons.proxy2.util.AbstractTestCase;
 import org.junit.Test;
@@ -40,6 +41,15 @@ public class CloningProviderTest extends AbstractTestCase
         assertSerializable(new CloningProvider<Date>(new Date()));
     }
 
+    @Test
+    public void testSerializedProviderClones()
+    {
+        final Date now = new Date();
+        final CloningProvider<Date> provider = SerializationUtils.clone(new CloningProvider<Date>(now));
+        assertEquals(now, provider.getObject());
+        assertNotSame(provider.getObject(), provider.getObject());
+    }
+
     @Test
     public void testValidCloneable()
     {
@@ -17,9 +17,14 @@
 
 package org.apache.commons.proxy2.provider;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.proxy2.exception.ObjectProviderException;
 
 import org.apache.commons.proxy2.util.AbstractTestCase;
 import org.apache.commons.proxy2.util.EchoImpl;
@@ -27,6 +32,21 @@ import org.junit.Test;
 
 public class ObjectProviderUtilsTest extends AbstractTestCase
 {
+    @Test
+    public void testAsyncSingleton() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            assertTrue(ObjectProviderUtils.asyncSingleton(new ConstantProvider<Object>("Hello"), executor)
+                    instanceof AsyncSingletonProvider);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testBean() throws Exception
     {
@@ -56,4 +76,39 @@ public class ObjectProviderUtilsTest extends AbstractTestCase
     {
         assertTrue(ObjectProviderUtils.singleton(new ConstantProvider<Object>("Hello")) instanceof SingletonProvider);
     }
+
+    @Test
+    public void testWarmUp() throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final CountingProvider<Object> first = new CountingProvider<Object>(new ConstantProvider<Object>("Hello"));
+            final CountingProvider<Object> second = new CountingProvider<Object>(new ConstantProvider<Object>("World"));
+            final SingletonProvider<Object> singleton = new SingletonProvider<Object>(first);
+            ObjectProviderUtils.warmUp(executor, singleton, new SingletonProvider<Object>(second));
+            assertEquals(1, first.getCount());
+            assertEquals(1, second.getCount());
+            assertEquals("Hello", singleton.getObject());
+            assertEquals(1, first.getCount());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = ObjectProviderException.class)
+    public void testWarmUpFailure() throws Exception
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            ObjectProviderUtils.warmUp(executor, new BeanProvider<Object>(Runnable.class));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
 }
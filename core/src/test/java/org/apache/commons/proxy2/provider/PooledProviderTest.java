@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class PooledProviderTest extends AbstractTestCase
+{
+    @Test
+    public void testBorrowAndReturn()
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                2);
+        final EchoImpl first = pool.getObject();
+        final EchoImpl second = pool.getObject();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getActiveCount());
+        assertEquals(1.0, pool.getUtilization(), 0.0);
+        pool.returnObject(first);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(first, pool.getObject());
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(3, pool.getBorrowCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReturnForeignObject()
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                1);
+        pool.getObject();
+        pool.returnObject(new EchoImpl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReturnEqualObject()
+    {
+        final PooledProvider<String> pool = new PooledProvider<String>(new ObjectProvider<String>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String getObject()
+            {
+                return new String("pooled");
+            }
+        }, 1);
+        pool.returnObject(new String(pool.getObject()));
+    }
+
+    @Test
+    public void testConcurrentBorrowAndReturn() throws InterruptedException
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                2);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 1000; j++)
+                    {
+                        pool.returnObject(pool.getObject());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(4000, pool.getBorrowCount());
+        assertEquals(pool.getCreatedCount(), pool.getIdleCount());
+    }
+
+    @Test
+    public void testReturnTwice()
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                2);
+        final EchoImpl borrowed = pool.getObject();
+        pool.returnObject(borrowed);
+        try
+        {
+            pool.returnObject(borrowed);
+            fail("Duplicate return accepted.");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test(expected = ObjectProviderException.class)
+    public void testExhausted()
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                1, 10, TimeUnit.MILLISECONDS);
+        pool.getObject();
+        pool.getObject();
+    }
+
+    @Test
+    public void testFactoryFailureReleasesPermit()
+    {
+        final PooledProvider<Object> pool = new PooledProvider<Object>(new BeanProvider<Object>(Runnable.class), 1,
+                0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                pool.getObject();
+            }
+            catch (ObjectProviderException e)
+            {
+                assertEquals(0, pool.getActiveCount());
+            }
+        }
+    }
+
+    @Test
+    public void testInvoker() throws Throwable
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                1);
+        final Invoker invoker = pool.invoker();
+        final Method echoBack = Echo.class.getMethod("echoBack", String.class);
+        assertEquals("Hello", invoker.invoke(null, echoBack, new Object[] { "Hello" }));
+        assertEquals("World", invoker.invoke(null, echoBack, new Object[] { "World" }));
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvokerPropagatesException() throws Throwable
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                1, 0, TimeUnit.MILLISECONDS);
+        try
+        {
+            pool.invoker().invoke(null, Echo.class.getMethod("illegalArgument"), new Object[0]);
+        }
+        finally
+        {
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        final PooledProvider<EchoImpl> pool = new PooledProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class),
+                1);
+        pool.getObject();
+        final PooledProvider<EchoImpl> copy = SerializationUtils.clone(pool);
+        assertEquals(0, copy.getActiveCount());
+        copy.getObject();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.exception.ObjectProviderException;
+import org.apache.commons.proxy2.invoker.DelegatingInvoker;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.Echo;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class ScopedProviderTest extends AbstractTestCase
+{
+    @Test
+    public void testNestedScopes() throws Exception
+    {
+        final ScopedProvider<Echo> provider = new ScopedProvider<Echo>();
+        final Echo outer = new EchoImpl();
+        final Echo inner = new EchoImpl();
+        assertFalse(provider.isBound());
+        provider.runWith(outer, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                assertSame(outer, provider.getObject());
+                try
+                {
+                    assertSame(inner, provider.callWith(inner, new Callable<Echo>()
+                    {
+                        @Override
+                        public Echo call()
+                        {
+                            return provider.getObject();
+                        }
+                    }));
+                }
+                catch (Exception e)
+                {
+                    throw new AssertionError(e);
+                }
+                assertSame(outer, provider.getObject());
+            }
+        });
+        assertFalse(provider.isBound());
+    }
+
+    @Test
+    public void testDelegatingInvoker() throws Throwable
+    {
+        final ScopedProvider<Echo> provider = new ScopedProvider<Echo>();
+        final DelegatingInvoker<Echo> invoker = new DelegatingInvoker<Echo>(provider);
+        assertEquals("foo", provider.callWith(new EchoImpl(), new Callable<Object>()
+        {
+            @Override
+            public Object call() throws Exception
+            {
+                try
+                {
+                    assertTrue(provider.isBound());
+                    return invoker.invoke(null, Echo.class.getMethod("echoBack", String.class),
+                            new Object[] { "foo" });
+                }
+                catch (Throwable t)
+                {
+                    throw new Exception(t);
+                }
+            }
+        }));
+    }
+
+    @Test
+    public void testExceptionsPropagateAndUnbind() throws Exception
+    {
+        final ScopedProvider<Echo> provider = new ScopedProvider<Echo>();
+        final IOException checked = new IOException();
+        try
+        {
+            provider.callWith(new EchoImpl(), new Callable<Object>()
+            {
+                @Override
+                public Object call() throws Exception
+                {
+                    throw checked;
+                }
+            });
+            fail("Exception swallowed.");
+        }
+        catch (IOException e)
+        {
+            assertSame(checked, e);
+        }
+        assertFalse(provider.isBound());
+        try
+        {
+            provider.runWith(new EchoImpl(), new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new IllegalStateException();
+                }
+            });
+            fail("Exception swallowed.");
+        }
+        catch (IllegalStateException e)
+        {
+            assertFalse(provider.isBound());
+        }
+    }
+
+    @Test
+    public void testBackingMatchesPlatform()
+    {
+        boolean scopedValues;
+        try
+        {
+            Class.forName("java.lang.ScopedValue");
+            scopedValues = true;
+        }
+        catch (ClassNotFoundException e)
+        {
+            scopedValues = false;
+        }
+        if (!scopedValues)
+        {
+            assertFalse(new ScopedProvider<Echo>().isScopedValueBacked());
+        }
+        assertEquals(new ScopedProvider<Echo>().isScopedValueBacked(), SerializationUtils.clone(
+                new ScopedProvider<Echo>()).isScopedValueBacked());
+    }
+
+    @Test(expected = ObjectProviderException.class)
+    public void testUnbound()
+    {
+        new ScopedProvider<Echo>().getObject();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class StripedProviderTest extends AbstractTestCase
+{
+    @Test
+    public void testStripesBoundObjectCount() throws Exception
+    {
+        final StripedProvider<EchoImpl> provider = new StripedProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class), 2, null);
+        final Set<EchoImpl> seen = Collections.newSetFromMap(new ConcurrentHashMap<EchoImpl, Boolean>());
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 16; i++)
+        {
+            threads.add(new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    seen.add(provider.getObject());
+                }
+            }));
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertTrue(seen.size() <= 2);
+        assertSame(provider.getObject(), provider.getObject());
+    }
+
+    @Test
+    public void testDispose()
+    {
+        final List<EchoImpl> disposed = new ArrayList<EchoImpl>();
+        final StripedProvider<EchoImpl> provider = new StripedProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class), 4, new ThreadLocalProviderTest.RecordingDisposer(disposed));
+        final EchoImpl object = provider.getObject();
+        provider.dispose();
+        assertEquals(1, disposed.size());
+        assertSame(object, disposed.get(0));
+    }
+
+    @Test
+    public void testDefaultStripes()
+    {
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                new StripedProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class)).getStripes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidStripes()
+    {
+        new StripedProvider<EchoImpl>(new BeanProvider<EchoImpl>(EchoImpl.class), 0, null);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.proxy2.util.AbstractTestCase;
+import org.apache.commons.proxy2.util.EchoImpl;
+import org.junit.Test;
+
+public class ThreadLocalProviderTest extends AbstractTestCase
+{
+    @Test
+    public void testOneObjectPerThread() throws Exception
+    {
+        final ThreadLocalProvider<EchoImpl> provider = new ThreadLocalProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class));
+        final EchoImpl mine = provider.getObject();
+        assertSame(mine, provider.getObject());
+        final AtomicReference<EchoImpl> theirs = new AtomicReference<EchoImpl>();
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                theirs.set(provider.getObject());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(mine, theirs.get());
+    }
+
+    @Test
+    public void testRemoveAndDispose() throws Exception
+    {
+        final List<EchoImpl> disposed = new ArrayList<EchoImpl>();
+        final ThreadLocalProvider<EchoImpl> provider = new ThreadLocalProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class), new RecordingDisposer(disposed));
+        final EchoImpl first = provider.getObject();
+        provider.remove();
+        assertEquals(1, disposed.size());
+        assertSame(first, disposed.get(0));
+        final EchoImpl second = provider.getObject();
+        assertNotSame(first, second);
+        provider.dispose();
+        assertEquals(2, disposed.size());
+        assertSame(second, disposed.get(1));
+        assertNotSame(second, provider.getObject());
+    }
+
+    @Test
+    public void testTerminatedThreadObjectDisposed() throws Exception
+    {
+        final List<EchoImpl> disposed = new ArrayList<EchoImpl>();
+        final ThreadLocalProvider<EchoImpl> provider = new ThreadLocalProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class), new RecordingDisposer(disposed));
+        final AtomicReference<EchoImpl> theirs = new AtomicReference<EchoImpl>();
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                theirs.set(provider.getObject());
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(0, disposed.size());
+        final EchoImpl mine = provider.getObject();
+        assertEquals(1, disposed.size());
+        assertSame(theirs.get(), disposed.get(0));
+        provider.dispose();
+        assertEquals(2, disposed.size());
+        assertSame(mine, disposed.get(1));
+    }
+
+    @Test
+    public void testSerialization()
+    {
+        final ThreadLocalProvider<EchoImpl> provider = new ThreadLocalProvider<EchoImpl>(new BeanProvider<EchoImpl>(
+                EchoImpl.class));
+        provider.getObject();
+        final ThreadLocalProvider<EchoImpl> copy = SerializationUtils.clone(provider);
+        assertNotSame(provider.getObject(), copy.getObject());
+        assertSame(copy.getObject(), copy.getObject());
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    static class RecordingDisposer implements Disposer<EchoImpl>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<EchoImpl> disposed;
+
+        RecordingDisposer(List<EchoImpl> disposed)
+        {
+            this.disposed = disposed;
+        }
+
+        @Override
+        public synchronized void dispose(EchoImpl object)
+        {
+            disposed.add(object);
+        }
+    }
+}
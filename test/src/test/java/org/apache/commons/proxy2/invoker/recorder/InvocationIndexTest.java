@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker.recorder;
+
+import static org.apache.commons.proxy2.interceptor.matcher.argument.ArgumentMatcherUtils.any;
+import static org.apache.commons.proxy2.interceptor.matcher.argument.ArgumentMatcherUtils.eq;
+import static org.apache.commons.proxy2.interceptor.matcher.argument.ArgumentMatcherUtils.gte;
+import static org.apache.commons.proxy2.interceptor.matcher.argument.ArgumentMatcherUtils.lt;
+import static org.apache.commons.proxy2.interceptor.matcher.argument.ArgumentMatcherUtils.startsWith;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.apache.commons.proxy2.ProxyUtils;
+import org.apache.commons.proxy2.interceptor.matcher.ArgumentMatcher;
+import org.apache.commons.proxy2.invoker.RecordedInvocation;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvocationIndexTest
+{
+    private InvocationIndex index;
+    private Service service;
+    private Method transfer;
+    private Method tag;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        index = new InvocationIndex();
+        service = new InvocationRecorder(ProxyUtils.proxyFactory(), index).proxy(Service.class);
+        transfer = Service.class.getMethod("transfer", String.class, Integer.class);
+        tag = Service.class.getMethod("tag", String[].class);
+    }
+
+    @Test
+    public void testCount()
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            service.transfer("account" + i % 10, Integer.valueOf(i));
+        }
+        assertEquals(100, index.count(transfer, null, null));
+        assertEquals(10, index.count(transfer, eq("account3"), any()));
+        assertEquals(1, index.count(transfer, eq("account3"), eq(Integer.valueOf(43))));
+        assertEquals(0, index.count(transfer, eq("account3"), eq(Integer.valueOf(44))));
+        assertEquals(5, index.count(transfer, startsWith("account"), lt(Integer.valueOf(5))));
+        assertEquals(3, index.count(transfer, eq("account7"), gte(Integer.valueOf(70))));
+        assertEquals(0, index.count(tag, (ArgumentMatcher<?>) null));
+    }
+
+    @Test
+    public void testExists()
+    {
+        service.transfer("a", Integer.valueOf(1));
+        service.transfer(null, null);
+        assertTrue(index.exists(transfer, eq("a"), null));
+        assertTrue(index.exists(transfer, eq((String) null), eq((Integer) null)));
+        assertFalse(index.exists(transfer, eq("b"), null));
+    }
+
+    @Test
+    public void testArrayArguments()
+    {
+        service.tag(new String[] { "x", "y" });
+        service.tag(new String[] { "x", "y" });
+        service.tag(new String[] { "z" });
+        assertEquals(3, index.count(tag, (ArgumentMatcher<?>) null));
+        assertEquals(1, index.count(tag, new ArgumentMatcher<String[]>()
+        {
+            @Override
+            public boolean matches(String[] argument)
+            {
+                return argument.length == 1;
+            }
+        }));
+    }
+
+    @Test
+    public void testMatchersCheckedAgainstActualArguments()
+    {
+        final String first = new String("a");
+        final String second = new String("a");
+        service.transfer(first, Integer.valueOf(1));
+        service.transfer(second, Integer.valueOf(2));
+        service.transfer("b", Integer.valueOf(3));
+        // both "a" arguments share one postings key, the first of them:
+        final ArgumentMatcher<String> sameAsFirst = new ArgumentMatcher<String>()
+        {
+            @Override
+            public boolean matches(String argument)
+            {
+                return argument == first;
+            }
+        };
+        assertEquals(1, index.count(transfer, sameAsFirst, null));
+        assertEquals(1, index.find(transfer, 0L, Long.MAX_VALUE, sameAsFirst, null).size());
+        assertTrue(index.exists(transfer, sameAsFirst, null));
+        assertEquals(1, index.count(transfer, sameAsFirst, lt(Integer.valueOf(3))));
+    }
+
+    @Test
+    public void testArrayArgumentMutatedAfterRecording()
+    {
+        final String[] tags = { "x" };
+        service.tag(tags);
+        tags[0] = "y";
+        service.tag(new String[] { "x" });
+        // the mutated array stays under its recorded value, so equal arrays still share a consistent key:
+        assertEquals(2, index.count(tag, (ArgumentMatcher<?>) null));
+        assertEquals(1, index.count(tag, new ArgumentMatcher<String[]>()
+        {
+            @Override
+            public boolean matches(String[] argument)
+            {
+                return "x".equals(argument[0]);
+            }
+        }));
+    }
+
+    @Test
+    public void testRange()
+    {
+        service.transfer("a", Integer.valueOf(1));
+        service.transfer("a", Integer.valueOf(2));
+        final long checkpoint = index.getSequence();
+        service.transfer("a", Integer.valueOf(3));
+        service.tag(new String[0]);
+        service.transfer("b", Integer.valueOf(4));
+        final List<RecordedInvocation> found = index.find(transfer, checkpoint, Long.MAX_VALUE, eq("a"), null);
+        assertEquals(1, found.size());
+        assertArrayEquals(new Object[] { "a", Integer.valueOf(3) }, found.get(0).getArguments());
+        assertEquals(2, index.find(transfer, checkpoint, Long.MAX_VALUE, null, null).size());
+        assertEquals(2, index.find(transfer, 0L, checkpoint, null, null).size());
+        assertEquals(5L, index.getSequence());
+    }
+
+    @Test
+    public void testClear()
+    {
+        service.transfer("a", Integer.valueOf(1));
+        index.clear();
+        assertFalse(index.exists(transfer, null, null));
+        assertEquals(1L, index.getSequence());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongMatcherCount()
+    {
+        index.count(transfer, eq("a"));
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Service
+    {
+        void transfer(String account, Integer amount);
+
+        void tag(String[] tags);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.invoker.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.proxy2.ProxyUtils;
+import org.apache.commons.proxy2.invoker.RecordedInvocation;
+import org.junit.Test;
+
+public class InvocationRecorderTest
+{
+    @Test
+    public void testRecordsFluentChain()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        recorder.proxy(Builder.class).name("foo").child().size(3).build();
+        final List<RecordedInvocation> invocations = recorder.getRecordedInvocations();
+        assertEquals(4, invocations.size());
+        assertEquals("name", invocations.get(0).getInvokedMethod().getName());
+        assertEquals("child", invocations.get(1).getInvokedMethod().getName());
+        assertEquals("size", invocations.get(2).getInvokedMethod().getName());
+        assertEquals("build", invocations.get(3).getInvokedMethod().getName());
+    }
+
+    @Test
+    public void testResultProxiesReused()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final Builder builder = recorder.proxy(Builder.class);
+        assertSame(builder.child(), builder.child());
+        assertSame(builder.child(), recorder.proxy(Builder.class).child());
+        assertNull(builder.build());
+        assertEquals(0, builder.count());
+    }
+
+    @Test
+    public void testReset()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        recorder.proxy(Builder.class).name("foo");
+        recorder.reset();
+        assertTrue(recorder.getRecordedInvocations().isEmpty());
+        recorder.proxy(Builder.class).size(1);
+        assertEquals(1, recorder.getRecordedInvocations().size());
+    }
+
+    @Test
+    public void testRecordedInvocationsLive()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final List<RecordedInvocation> invocations = recorder.getRecordedInvocations();
+        assertTrue(invocations.isEmpty());
+        recorder.proxy(Builder.class).name("foo").size(1);
+        assertEquals(2, invocations.size());
+        assertEquals("size", invocations.get(1).getInvokedMethod().getName());
+        recorder.reset();
+        assertTrue(invocations.isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRecordedInvocationsUnmodifiable()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        recorder.proxy(Builder.class).name("foo");
+        recorder.getRecordedInvocations().remove(0);
+    }
+
+    @Test
+    public void testSnapshotsArePrefixes() throws InterruptedException
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final Builder builder = recorder.proxy(Builder.class);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 5000; j++)
+                    {
+                        builder.size(j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        List<RecordedInvocation> previous = new ArrayList<RecordedInvocation>();
+        for (int i = 0; i < 50; i++)
+        {
+            final List<RecordedInvocation> current = new ArrayList<RecordedInvocation>(
+                    recorder.getRecordedInvocations());
+            assertTrue(current.size() >= previous.size());
+            assertEquals(previous, current.subList(0, previous.size()));
+            previous = current;
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(20000, recorder.getRecordedInvocations().size());
+    }
+
+    @Test
+    public void testIndexedAccessAcrossChunks()
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final Builder builder = recorder.proxy(Builder.class);
+        for (int i = 0; i < 5000; i++)
+        {
+            builder.size(i);
+        }
+        final List<RecordedInvocation> recorded = recorder.getRecordedInvocations();
+        assertEquals(5000, recorded.size());
+        for (int i = 0; i < 5000; i++)
+        {
+            assertEquals(Integer.valueOf(i), recorded.get(i).getArguments()[0]);
+        }
+    }
+
+    @Test
+    public void testSizeAndGetAgree() throws InterruptedException
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final Builder builder = recorder.proxy(Builder.class);
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 5000; j++)
+                    {
+                        builder.size(j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        final List<RecordedInvocation> recorded = recorder.getRecordedInvocations();
+        for (int i = 0; i < 10000; i++)
+        {
+            final int size = recorded.size();
+            if (size > 0)
+            {
+                assertEquals("size", recorded.get(size - 1).getInvokedMethod().getName());
+            }
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(20000, recorded.size());
+    }
+
+    @Test
+    public void testStreaming()
+    {
+        final List<RecordedInvocation> received = new ArrayList<RecordedInvocation>();
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory(),
+                new InvocationListener()
+                {
+                    @Override
+                    public void invocationRecorded(RecordedInvocation invocation)
+                    {
+                        received.add(invocation);
+                    }
+                });
+        recorder.proxy(Builder.class).name("foo").size(2);
+        assertEquals(2, received.size());
+        assertEquals("size", received.get(1).getInvokedMethod().getName());
+        assertTrue(recorder.getRecordedInvocations().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException
+    {
+        final InvocationRecorder recorder = new InvocationRecorder(ProxyUtils.proxyFactory());
+        final Builder builder = recorder.proxy(Builder.class);
+        final int threadCount = 8;
+        final int callCount = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int j = 0; j < callCount; j++)
+                    {
+                        builder.size(j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(threadCount * callCount, recorder.getRecordedInvocations().size());
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Builder
+    {
+        Builder name(String name);
+
+        Builder child();
+
+        Builder size(int size);
+
+        Product build();
+
+        int count();
+    }
+
+    public static final class Product
+    {
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.proxy2.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.proxy2.AbstractProxyFactoryAgnosticTest;
+import org.apache.commons.proxy2.ObjectProvider;
+import org.junit.Test;
+
+/**
+ * Test a {@link PooledProvider} behind proxies of each {@link org.apache.commons.proxy2.ProxyFactory}.
+ */
+public class PooledProviderProxyTest extends AbstractProxyFactoryAgnosticTest
+{
+    @Test
+    public void testProxyReturnsObjects()
+    {
+        final PooledProvider<Counter> pool = new PooledProvider<Counter>(new CounterFactory(), 1, 0,
+                TimeUnit.MILLISECONDS);
+        final Counter counter = pool.createProxy(proxyFactory, Counter.class);
+        for (int i = 1; i <= 10; i++)
+        {
+            assertEquals(i, counter.increment());
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(10, pool.getBorrowCount());
+    }
+
+    @Test
+    public void testProxyReturnsObjectOnException()
+    {
+        final PooledProvider<Counter> pool = new PooledProvider<Counter>(new CounterFactory(), 1, 0,
+                TimeUnit.MILLISECONDS);
+        final Counter counter = pool.createProxy(proxyFactory, Counter.class);
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                counter.fail();
+            }
+            catch (IllegalStateException e)
+            {
+                assertEquals(0, pool.getActiveCount());
+            }
+        }
+        assertEquals(1, counter.increment());
+    }
+
+    @Test
+    public void testProxyGivesExclusiveAccess() throws Exception
+    {
+        final PooledProvider<Counter> pool = new PooledProvider<Counter>(new CounterFactory(), 2);
+        final Counter counter = pool.createProxy(proxyFactory, Counter.class);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < 4; i++)
+            {
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for (int j = 0; j < 200; j++)
+                        {
+                            counter.increment();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+            {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(pool.getCreatedCount() <= 2);
+        assertEquals(800, pool.getBorrowCount());
+    }
+
+    //******************************************************************************************************************
+    // Inner Classes
+    //******************************************************************************************************************
+
+    public interface Counter
+    {
+        int increment();
+
+        void fail();
+    }
+
+    /**
+     * Not thread-safe: fails when two threads use it at once.
+     */
+    public static class CounterImpl implements Counter
+    {
+        private final AtomicInteger users = new AtomicInteger();
+        private int count;
+
+        @Override
+        public int increment()
+        {
+            if (users.incrementAndGet() != 1)
+            {
+                throw new IllegalStateException("Concurrent use.");
+            }
+            try
+            {
+                return ++count;
+            }
+            finally
+            {
+                users.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void fail()
+        {
+            throw new IllegalStateException("Failure.");
+        }
+    }
+
+    private static class CounterFactory implements ObjectProvider<Counter>
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Counter getObject()
+        {
+            return new CounterImpl();
+        }
+    }
+}
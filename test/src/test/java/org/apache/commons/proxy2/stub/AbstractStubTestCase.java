@@ -241,6 +241,31 @@ public abstract class AbstractStubTestCase extends AbstractProxyFactoryAgnosticT
         assertEquals("World", proxy.one("Whatever"));
     }
 
+    @Test
+    public void testFirstMatchWinsAcrossExactAndMatchingArguments()
+    {
+        final StubInterface proxy = createProxy(new Trainer<StubInterface>()
+        {
+            @Override
+            protected void train(StubInterface trainee)
+            {
+                for (int i = 0; i < 1000; i++)
+                {
+                    when(trainee.three("Hello", String.valueOf(i))).thenReturn("Exact" + i);
+                }
+                when(trainee.three(eq("Hello"), isInstance(String.class))).thenReturn("Matched");
+                when(trainee.three("Hello", "1000")).thenReturn("Shadowed");
+                when(trainee.three("Hello", "0")).thenReturn("Shadowed");
+                when(trainee.three("Goodbye", "0")).thenReturn("Exact");
+            }
+        });
+        assertEquals("Exact0", proxy.three("Hello", "0"));
+        assertEquals("Exact999", proxy.three("Hello", "999"));
+        assertEquals("Matched", proxy.three("Hello", "1000"));
+        assertEquals("Exact", proxy.three("Goodbye", "0"));
+        assertEquals(null, proxy.three("Goodbye", "1"));
+    }
+
     @Test
     public void testWithArrayParameter()
     {
@@ -20,12 +20,16 @@ package org.apache.commons.proxy2.stub;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.proxy2.ObjectProvider;
 import org.junit.Test;
 
 /**
@@ -137,6 +141,103 @@ public class AnnotationBuilderTest
         assertArrayEquals(new FiniteValues[] { FiniteValues.TWO }, nestingAnnotation.children()[1].finiteValues());
     }
 
+    @Test
+    public void testInternedAnnotation()
+    {
+        final AnnotationInterner interner = new AnnotationInterner();
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("annString", "foo");
+        members.put("finiteValues", new FiniteValues[] { FiniteValues.ONE });
+        members.put("someType", Object.class);
+
+        final CustomAnnotation interned = interner.intern(CustomAnnotation.class, members);
+        assertEquals("foo", interned.annString());
+
+        final Map<String, Object> equalMembers = new HashMap<String, Object>(members);
+        equalMembers.put("finiteValues", new FiniteValues[] { FiniteValues.ONE });
+        assertSame(interned, interner.intern(CustomAnnotation.class, equalMembers));
+
+        ((FiniteValues[]) members.get("finiteValues"))[0] = FiniteValues.TWO;
+        assertSame(interned, interner.intern(CustomAnnotation.class, equalMembers));
+        final CustomAnnotation other = interner.intern(CustomAnnotation.class, members);
+        assertNotSame(interned, other);
+        assertTrue(!interned.equals(other));
+        assertEquals(2, interner.size());
+
+        final CustomAnnotation built = AnnotationBuilder.of(CustomAnnotation.class).withMembers(equalMembers).build();
+        assertEquals(built, interned);
+        assertEquals(built.hashCode(), interned.hashCode());
+        assertEquals(built.toString(), interned.toString());
+
+        interner.clear();
+        assertEquals(0, interner.size());
+        assertNotSame(interned, interner.intern(CustomAnnotation.class, equalMembers));
+    }
+
+    @Test
+    public void testInternedAnnotationDefaults()
+    {
+        final AnnotationInterner interner = new AnnotationInterner();
+        final Map<String, Object> explicit = new HashMap<String, Object>();
+        explicit.put("annString", "");
+        explicit.put("finiteValues", new FiniteValues[0]);
+        explicit.put("someType", Object.class);
+
+        final CustomAnnotation interned = interner.intern(CustomAnnotation.class,
+                Collections.singletonMap("someType", Object.class));
+        assertSame(interned, interner.intern(CustomAnnotation.class, explicit));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void testInternedAnnotationArrayMemberCopied()
+    {
+        final AnnotationInterner interner = new AnnotationInterner();
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("finiteValues", new FiniteValues[] { FiniteValues.ONE });
+        members.put("someType", Object.class);
+
+        final CustomAnnotation interned = interner.intern(CustomAnnotation.class, members);
+        final int hashCode = interned.hashCode();
+        interned.finiteValues()[0] = FiniteValues.TWO;
+        assertArrayEquals(new FiniteValues[] { FiniteValues.ONE }, interned.finiteValues());
+        assertNotSame(interned.finiteValues(), interned.finiteValues());
+        assertEquals(hashCode, interned.hashCode());
+
+        assertSame(interned, interner.intern(CustomAnnotation.class, members));
+        members.put("finiteValues", new FiniteValues[] { FiniteValues.TWO });
+        assertNotSame(interned, interner.intern(CustomAnnotation.class, members));
+        assertEquals(2, interner.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInternedAnnotationUnknownMember()
+    {
+        new AnnotationInterner().intern(CustomAnnotation.class, Collections.singletonMap("bogus", "value"));
+    }
+
+    @Test
+    public void testProvidedAnnotationNotCached()
+    {
+        final Map<String, Object> members = new HashMap<String, Object>();
+        members.put("annString", "foo");
+        members.put("someType", Object.class);
+        final SwitchableProvider provider = new SwitchableProvider();
+        provider.current = AnnotationBuilder.of(CustomAnnotation.class).withMembers(members).build();
+        final CustomAnnotation provided = AnnotationBuilder.of(CustomAnnotation.class, provider).build();
+        final int fooHashCode = provided.hashCode();
+        final String fooString = provided.toString();
+        assertEquals(provider.current.hashCode(), fooHashCode);
+
+        members.put("annString", "bar");
+        provider.current = AnnotationBuilder.of(CustomAnnotation.class).withMembers(members).build();
+        assertEquals("bar", provided.annString());
+        assertEquals(provider.current.hashCode(), provided.hashCode());
+        assertEquals(provider.current, provided);
+        assertTrue(fooHashCode != provided.hashCode());
+        assertTrue(!fooString.equals(provided.toString()));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testBadMemberMap()
     {
@@ -162,6 +263,19 @@ public class AnnotationBuilderTest
         Class<?> someType();
     }
 
+    private static class SwitchableProvider implements ObjectProvider<CustomAnnotation>
+    {
+        private static final long serialVersionUID = 1L;
+
+        volatile CustomAnnotation current;
+
+        @Override
+        public CustomAnnotation getObject()
+        {
+            return current;
+        }
+    }
+
     public enum FiniteValues
     {
         ONE, TWO, THREE;
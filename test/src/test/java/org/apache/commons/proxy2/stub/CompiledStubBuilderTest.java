@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.proxy2.Invoker;
+import org.apache.commons.proxy2.invoker.NullInvoker;
+import org.apache.commons.proxy2.provider.ObjectProviderUtils;
+import org.junit.Test;
+
+public class CompiledStubBuilderTest extends AbstractStubTestCase
+{
+    //----------------------------------------------------------------------------------------------------------------------
+    // Other Methods
+    //----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected StubInterface createProxy(Trainer<StubInterface> trainer)
+    {
+        return new StubBuilder<StubInterface>(proxyFactory, StubInterface.class).train(trainer).compile();
+    }
+
+    @Test
+    public void testFallbackToConcreteTarget()
+    {
+        final StubInterface stub = new StubBuilder<StubInterface>(proxyFactory, StubInterface.class,
+                createTarget()).train(new Trainer<StubInterface>()
+        {
+            @Override
+            protected void train(StubInterface trainee)
+            {
+                when(trainee.one("Foo")).thenReturn("Bar");
+            }
+        }).compile();
+        assertEquals("Bar", stub.one("Foo"));
+        assertEquals("Baz", stub.one("Baz"));
+        assertEquals("FooFoo", stub.two("Foo"));
+    }
+
+    @Test
+    public void testFallbackToProvidedTarget()
+    {
+        final StubInterface stub = new StubBuilder<StubInterface>(proxyFactory, StubInterface.class,
+                ObjectProviderUtils.constant(createTarget())).train(new Trainer<StubInterface>()
+        {
+            @Override
+            protected void train(StubInterface trainee)
+            {
+                when(trainee.two(any(String.class))).thenReturn("Bar");
+            }
+        }).compile();
+        assertEquals("Bar", stub.two("Foo"));
+        assertEquals("Baz", stub.one("Baz"));
+    }
+
+    @Test
+    public void testInvokerSerializable() throws Throwable
+    {
+        final StubSwitchInterceptor interceptor = (StubSwitchInterceptor) new StubInterceptorBuilder(proxyFactory)
+                .train(new Trainer<StubInterface>()
+                {
+                    @Override
+                    protected void train(StubInterface trainee)
+                    {
+                        when(trainee.one("Foo")).thenReturn("Bar");
+                        when(trainee.two("Foo")).thenReturn("Baz");
+                    }
+                }).build();
+        final Invoker invoker = SerializationUtils.clone(new CompiledStubInvoker(interceptor, NullInvoker.INSTANCE));
+        assertEquals("Bar", invoker.invoke(null, StubInterface.class.getMethod("one", String.class),
+                new Object[] { "Foo" }));
+        assertEquals("Baz", invoker.invoke(null, StubInterface.class.getMethod("two", String.class),
+                new Object[] { "Foo" }));
+        assertNull(invoker.invoke(null, StubInterface.class.getMethod("one", String.class), new Object[] { "Baz" }));
+    }
+
+    private StubInterface createTarget()
+    {
+        return new StubBuilder<StubInterface>(proxyFactory, StubInterface.class).train(new Trainer<StubInterface>()
+        {
+            @Override
+            protected void train(StubInterface trainee)
+            {
+                when(trainee.one(any(String.class))).thenReturn("Baz");
+                when(trainee.two("Foo")).thenReturn(StringUtils.repeat("Foo", 2));
+            }
+        }).build();
+    }
+}
@@ -21,8 +21,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.proxy2.ObjectProvider;
@@ -131,6 +137,55 @@ public class StubBuilderTest extends AbstractStubTestCase
         assertTrue(stub instanceof Marker);
     }
 
+    @Test
+    public void testParallelTraining() throws Exception
+    {
+        final int threads = 8;
+        final int stubsPerThread = 250;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threads; t++)
+            {
+                final String prefix = "Thread" + t;
+                results.add(executor.submit(new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call() throws Exception
+                    {
+                        int verified = 0;
+                        for (int i = 0; i < stubsPerThread; i++)
+                        {
+                            final String value = prefix + "-" + i;
+                            final StubInterface stub = createProxy(new Trainer<StubInterface>()
+                            {
+                                @Override
+                                protected void train(StubInterface trainee)
+                                {
+                                    when(trainee.one("Hello")).thenReturn(value);
+                                    when(trainee.two(any(String.class))).thenReturn(value);
+                                }
+                            });
+                            assertEquals(value, stub.one("Hello"));
+                            assertEquals(value, stub.two("World"));
+                            verified++;
+                        }
+                        return verified;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results)
+            {
+                assertEquals(stubsPerThread, result.get().intValue());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     //----------------------------------------------------------------------------------------------------------------------
     // Inner Classes
     //----------------------------------------------------------------------------------------------------------------------
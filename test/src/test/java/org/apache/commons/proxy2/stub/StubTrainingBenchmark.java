@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.proxy2.stub;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.proxy2.ProxyFactory;
+import org.apache.commons.proxy2.ProxyUtils;
+
+/**
+ * Measures the throughput of training and building stubs with a {@link StubBuilder}, with 1, 2, 4, ... threads up to
+ * twice the available processors, each building stubs of the same interface with its own return values. Not run as
+ * part of the build; run its {@code main} method with the test classpath, optionally passing the number of stubs per
+ * thread and measurement round.
+ */
+public class StubTrainingBenchmark
+{
+    //******************************************************************************************************************
+    // Fields
+    //******************************************************************************************************************
+
+    private static final int ROUNDS = 5;
+
+    //******************************************************************************************************************
+    // Static Methods
+    //******************************************************************************************************************
+
+    public static void main(String[] args) throws Exception
+    {
+        final int stubs = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final ProxyFactory proxyFactory = ProxyUtils.proxyFactory();
+        // training runs through much code, which takes a while to be compiled:
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            measure(proxyFactory, 1, stubs);
+        }
+        final int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            double best = 0.0;
+            for (int round = 0; round < ROUNDS; round++)
+            {
+                best = Math.max(best, measure(proxyFactory, threads, stubs));
+            }
+            System.out.println(String.format("%2d threads: %10.0f stubs/s", Integer.valueOf(threads),
+                    Double.valueOf(best)));
+        }
+    }
+
+    /**
+     * Train and build {@code stubs} stubs on each of {@code threads} threads at once.
+     * 
+     * @return stubs built per second, over all threads
+     */
+    private static double measure(final ProxyFactory proxyFactory, int threads, final int stubs)
+            throws InterruptedException
+    {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong failures = new AtomicLong();
+        for (int i = 0; i < threads; i++)
+        {
+            final String prefix = "Thread" + i;
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        ready.countDown();
+                        go.await();
+                        for (int j = 0; j < stubs; j++)
+                        {
+                            final String value = prefix + "-" + j;
+                            final StubInterface stub = new StubBuilder<StubInterface>(proxyFactory,
+                                    StubInterface.class).train(new Trainer<StubInterface>()
+                            {
+                                @Override
+                                protected void train(StubInterface trainee)
+                                {
+                                    when(trainee.one("Hello")).thenReturn(value);
+                                    when(trainee.two(any(String.class))).thenReturn(value);
+                                }
+                            }).build();
+                            if (!value.equals(stub.one("Hello")))
+                            {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        t.printStackTrace();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        ready.await();
+        final long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        final long elapsed = System.nanoTime() - start;
+        if (failures.get() > 0L)
+        {
+            throw new IllegalStateException(failures.get() + " stubs returned wrong values.");
+        }
+        return (double) threads * stubs * 1000000000L / elapsed;
+    }
+}